@@ -0,0 +1,133 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Single-threaded cost of every IAccount operation, for each implementation side by side.
+ *
+ * Run with the GC profiler to see the allocation rate per operation:
+ *   java -jar target/benchmarks.jar AccountBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountBenchmark {
+
+    /**
+     * Large enough that accepted withdrawals never run into the overdraft limit during a run
+     */
+    private static final BigDecimal LARGE = new BigDecimal("1000000000000");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.25");
+
+    @Param({"Account", "ConcurrentAccount", "FixedPointAccount"})
+    public String implementation;
+
+    /**
+     * Every withdrawal is within balance + max_overdrawn
+     */
+    private Object funded;
+    /**
+     * Zero balance and no overdraft, so every withdrawal is rejected
+     */
+    private Object empty;
+    private Object sender;
+    private Object receiver;
+    /**
+     * Holds EUR, so every transfer to it from a SEK account is rejected
+     */
+    private Object foreign;
+    private MethodHandle constructor;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        constructor = Accounts.constructor(implementation);
+        funded = Accounts.create(implementation, LARGE, "SEK", LARGE);
+        empty = Accounts.create(implementation, BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        sender = Accounts.create(implementation, AMOUNT, "SEK", BigDecimal.ZERO);
+        receiver = Accounts.create(implementation, BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        foreign = Accounts.create(implementation, BigDecimal.ZERO, "EUR", BigDecimal.ZERO);
+    }
+
+    @Benchmark
+    public BigDecimal withdrawAccepted() throws Throwable {
+        return Accounts.withdraw(funded, AMOUNT);
+    }
+
+    @Benchmark
+    public BigDecimal withdrawRejected() throws Throwable {
+        return Accounts.withdraw(empty, AMOUNT);
+    }
+
+    @Benchmark
+    public BigDecimal deposit() throws Throwable {
+        return Accounts.deposit(funded, AMOUNT);
+    }
+
+    /*
+     * withdrawAll needs a positive balance to do any work, so each call is paired with
+     * the deposit that refills the account
+     */
+    @Benchmark
+    public BigDecimal depositThenWithdrawAll() throws Throwable {
+        Accounts.deposit(empty, AMOUNT);
+        return Accounts.withdrawAll(empty);
+    }
+
+    /*
+     * Converting the same account repeatedly would grow its BigDecimal scale without bound,
+     * so every call converts a freshly created account; compare with createAccount
+     */
+    @Benchmark
+    public Object createAndConvert() throws Throwable {
+        Object account = Accounts.create(constructor, AMOUNT, "USD", BigDecimal.ZERO);
+        Accounts.convertToCurrency(account, "EUR", 0.92);
+        return account;
+    }
+
+    @Benchmark
+    public Object createAccount() throws Throwable {
+        return Accounts.create(constructor, AMOUNT, "USD", BigDecimal.ZERO);
+    }
+
+    /*
+     * Moves the whole balance back and forth, so both calls perform a real transfer
+     */
+    @Benchmark
+    public BigDecimal transferRoundTrip() throws Throwable {
+        Accounts.transferToAccount(sender, receiver);
+        Accounts.transferToAccount(receiver, sender);
+        return Accounts.getBalance(sender);
+    }
+
+    /*
+     * Same round trip through the amount-based transfer, which reports a status
+     */
+    @Benchmark
+    public Object transferAmountRoundTrip() throws Throwable {
+        Accounts.transfer(sender, receiver, AMOUNT);
+        return Accounts.transfer(receiver, sender, AMOUNT);
+    }
+
+    @Benchmark
+    public Object transferRejected() throws Throwable {
+        return Accounts.transfer(funded, foreign, AMOUNT);
+    }
+}
@@ -0,0 +1,83 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * AccountStore.convertAll over a million accounts on a ForkJoinPool of the given size.
+ * Each operation converts every SEK account to EUR and back, so the store returns to the
+ * same currencies for the next one. Both rates have few enough digits for the long fast
+ * path; a rate carried to sixteen digits overflows it and measures BigDecimal instead.
+ *
+ *   java -jar target/benchmarks.jar AccountStoreConversionBenchmark -p threads=1,2,4,8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountStoreConversionBenchmark {
+
+    private static final int ACCOUNTS = 1_000_000;
+    private static final BigDecimal RATE = new BigDecimal("0.087123");
+    private static final BigDecimal INVERSE = new BigDecimal("11.4780");
+
+    private static final Class<?> CURRENCY_CODE = Accounts.load("CurrencyCode");
+
+    private static final MethodHandle NEW_STORE = Accounts.constructorOf("AccountStore", int.class);
+    private static final MethodHandle CREATE = Accounts.method("AccountStore", "create", int.class,
+            BigDecimal.class, String.class, BigDecimal.class);
+    private static final MethodHandle CONVERT_ALL = Accounts.method("AccountStore", "convertAll", int.class,
+            CURRENCY_CODE, CURRENCY_CODE, BigDecimal.class, ForkJoinPool.class);
+    private static final MethodHandle CURRENCY_OF = Accounts.staticMethod("CurrencyCode", "of", CURRENCY_CODE,
+            String.class);
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private Object store;
+    private Object sek;
+    private Object eur;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws Throwable {
+        store = (Object) NEW_STORE.invokeExact(ACCOUNTS);
+        Random random = new Random(42);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            int id = (int) CREATE.invokeExact(store, BigDecimal.valueOf(random.nextInt(1_000_000), 2), "SEK",
+                    BigDecimal.valueOf(random.nextInt(50_000), 2));
+        }
+        sek = (Object) CURRENCY_OF.invokeExact("SEK");
+        eur = (Object) CURRENCY_OF.invokeExact("EUR");
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int convertRoundTrip() throws Throwable {
+        int converted = (int) CONVERT_ALL.invokeExact(store, sek, eur, RATE, pool);
+        return converted + (int) CONVERT_ALL.invokeExact(store, eur, sek, INVERSE, pool);
+    }
+}
@@ -0,0 +1,253 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+/*
+ * Bridge from the benchmarks to the account classes.
+ *
+ * JMH refuses benchmark classes in the default package, and Java does not allow a named
+ * package to reference classes in the default package, where Account and IAccount live.
+ * The benchmarks therefore call IAccount through method handles held in static final
+ * fields. The JIT treats those handles as constants and inlines the target method, so the
+ * measured cost is the cost of the account method itself, as with a direct call.
+ *
+ * Accounts are passed around as Object.
+ */
+public final class Accounts {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final Class<?> IACCOUNT = load("IAccount");
+
+    private static final MethodHandle WITHDRAW = accountMethod("withdraw", BigDecimal.class, BigDecimal.class);
+    private static final MethodHandle TRY_WITHDRAW = accountMethod("tryWithdraw", load("OperationStatus"), BigDecimal.class);
+    private static final MethodHandle WITHDRAW_ALL = accountMethod("withdrawAll", BigDecimal.class);
+    private static final MethodHandle DEPOSIT = accountMethod("deposit", BigDecimal.class, BigDecimal.class);
+    private static final MethodHandle CONVERT = accountMethod("convertToCurrency", void.class, String.class, double.class);
+    private static final MethodHandle TRANSFER = accountMethod("TransferToAccount", void.class, IACCOUNT);
+    private static final MethodHandle TRANSFER_AMOUNT = accountMethod("transfer", load("OperationStatus"),
+            IACCOUNT, BigDecimal.class);
+    private static final MethodHandle GET_BALANCE = accountMethod("getBalance", BigDecimal.class);
+    private static final MethodHandle GET_CURRENCY = accountMethod("getCurrency", String.class);
+    private static final MethodHandle GET_MAX_OVERDRAWN = accountMethod("getMaxOverdrawn", BigDecimal.class);
+
+    private static final MethodHandle NEW_METRICS = metricsConstructor();
+    private static final MethodHandle METERED = meteredConstructor();
+
+    private static final MethodHandle ENCODE_ACCOUNT = codecMethod("encodeAccount", void.class, IACCOUNT, ByteBuffer.class);
+    private static final MethodHandle DECODE_ACCOUNT = codecMethod("decodeAccount", load("Account"), ByteBuffer.class);
+
+    private Accounts() {
+    }
+
+    /*
+     * Constructor handle (BigDecimal balance, String currency, BigDecimal max_overdrawn)
+     * of the named IAccount implementation, e.g. "Account"
+     */
+    public static MethodHandle constructor(String implementation) {
+        try {
+            MethodHandle constructor = LOOKUP.findConstructor(load(implementation),
+                    MethodType.methodType(void.class, BigDecimal.class, String.class, BigDecimal.class));
+            return constructor.asType(constructor.type().changeReturnType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot create " + implementation, e);
+        }
+    }
+
+    public static Object create(MethodHandle constructor, BigDecimal balance, String currency,
+                                BigDecimal max_overdrawn) throws Throwable {
+        return (Object) constructor.invokeExact(balance, currency, max_overdrawn);
+    }
+
+    /*
+     * New AccountMetrics measuring the latency of one call in latencySampleInterval
+     */
+    public static Object newMetrics(int latencySampleInterval) throws Throwable {
+        return (Object) NEW_METRICS.invokeExact(latencySampleInterval);
+    }
+
+    /*
+     * The account wrapped in a MeteredAccount recording into the given AccountMetrics
+     */
+    public static Object metered(Object account, Object metrics) throws Throwable {
+        return (Object) METERED.invokeExact(account, metrics);
+    }
+
+    public static Object create(String implementation, BigDecimal balance, String currency, BigDecimal max_overdrawn) {
+        try {
+            return create(constructor(implementation), balance, currency, max_overdrawn);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Cannot create " + implementation, e);
+        }
+    }
+
+    public static BigDecimal withdraw(Object account, BigDecimal amount) throws Throwable {
+        return (BigDecimal) WITHDRAW.invokeExact(account, amount);
+    }
+
+    /*
+     * Returns the OperationStatus of the withdrawal
+     */
+    public static Object tryWithdraw(Object account, BigDecimal amount) throws Throwable {
+        return (Object) TRY_WITHDRAW.invokeExact(account, amount);
+    }
+
+    public static BigDecimal withdrawAll(Object account) throws Throwable {
+        return (BigDecimal) WITHDRAW_ALL.invokeExact(account);
+    }
+
+    public static BigDecimal deposit(Object account, BigDecimal amount) throws Throwable {
+        return (BigDecimal) DEPOSIT.invokeExact(account, amount);
+    }
+
+    public static void convertToCurrency(Object account, String currency, double rate) throws Throwable {
+        CONVERT.invokeExact(account, currency, rate);
+    }
+
+    public static void transferToAccount(Object from, Object to) throws Throwable {
+        TRANSFER.invokeExact(from, to);
+    }
+
+    /*
+     * Returns the OperationStatus of the transfer
+     */
+    public static Object transfer(Object from, Object to, BigDecimal amount) throws Throwable {
+        return (Object) TRANSFER_AMOUNT.invokeExact(from, to, amount);
+    }
+
+    public static BigDecimal getBalance(Object account) throws Throwable {
+        return (BigDecimal) GET_BALANCE.invokeExact(account);
+    }
+
+    public static String getCurrency(Object account) throws Throwable {
+        return (String) GET_CURRENCY.invokeExact(account);
+    }
+
+    public static BigDecimal getMaxOverdrawn(Object account) throws Throwable {
+        return (BigDecimal) GET_MAX_OVERDRAWN.invokeExact(account);
+    }
+
+    /*
+     * AccountCodec.encodeAccount(account, out)
+     */
+    public static void encodeAccount(Object account, ByteBuffer out) throws Throwable {
+        ENCODE_ACCOUNT.invokeExact(account, out);
+    }
+
+    /*
+     * AccountCodec.decodeAccount(in), returning a new Account
+     */
+    public static Object decodeAccount(ByteBuffer in) throws Throwable {
+        return (Object) DECODE_ACCOUNT.invokeExact(in);
+    }
+
+    static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("No class " + name, e);
+        }
+    }
+
+    /*
+     * Handle for an IAccount method with every default-package type widened to Object,
+     * so it can be called with invokeExact on accounts typed as Object
+     */
+    private static MethodHandle accountMethod(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            MethodHandle handle = LOOKUP.findVirtual(IACCOUNT, name, MethodType.methodType(returnType, parameterTypes));
+            return handle.asType(MethodType.methodType(widen(returnType), widen(parameterTypes))
+                    .insertParameterTypes(0, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /*
+     * Handle for a public instance method of another default-package class, widened like
+     * accountMethod, for benchmarks of the classes built on the accounts. Parameter types
+     * from the default package are given with load, e.g. load("CurrencyCode").
+     */
+    static MethodHandle method(String owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            MethodHandle handle = LOOKUP.findVirtual(load(owner), name, MethodType.methodType(returnType, parameterTypes));
+            return handle.asType(MethodType.methodType(widen(returnType), widen(parameterTypes))
+                    .insertParameterTypes(0, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("No method " + owner + "." + name, e);
+        }
+    }
+
+    /*
+     * Handle for a public static method of another default-package class, widened the same way
+     */
+    static MethodHandle staticMethod(String owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            MethodHandle handle = LOOKUP.findStatic(load(owner), name, MethodType.methodType(returnType, parameterTypes));
+            return handle.asType(MethodType.methodType(widen(returnType), widen(parameterTypes)));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("No method " + owner + "." + name, e);
+        }
+    }
+
+    /*
+     * Handle for a public constructor of another default-package class, returning Object
+     */
+    static MethodHandle constructorOf(String owner, Class<?>... parameterTypes) {
+        try {
+            MethodHandle constructor = LOOKUP.findConstructor(load(owner), MethodType.methodType(void.class, parameterTypes));
+            return constructor.asType(MethodType.methodType(Object.class, widen(parameterTypes)));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("No constructor for " + owner, e);
+        }
+    }
+
+    /*
+     * Handle for a static AccountCodec method, widened like accountMethod
+     */
+    private static MethodHandle codecMethod(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            MethodHandle handle = LOOKUP.findStatic(load("AccountCodec"), name, MethodType.methodType(returnType, parameterTypes));
+            return handle.asType(MethodType.methodType(widen(returnType), widen(parameterTypes)));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle metricsConstructor() {
+        try {
+            MethodHandle constructor = LOOKUP.findConstructor(load("AccountMetrics"),
+                    MethodType.methodType(void.class, int.class));
+            return constructor.asType(MethodType.methodType(Object.class, int.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle meteredConstructor() {
+        try {
+            MethodHandle constructor = LOOKUP.findConstructor(load("MeteredAccount"),
+                    MethodType.methodType(void.class, IACCOUNT, load("AccountMetrics")));
+            return constructor.asType(MethodType.methodType(Object.class, Object.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static Class<?>[] widen(Class<?>[] parameterTypes) {
+        Class<?>[] widened = parameterTypes.clone();
+        for (int i = 0; i < widened.length; i++) {
+            widened[i] = widen(widened[i]);
+        }
+        return widened;
+    }
+
+    private static Class<?> widen(Class<?> type) {
+        return type.isPrimitive() || type.getName().indexOf('.') >= 0 ? type : Object.class;
+    }
+}
@@ -0,0 +1,119 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Throughput of the thread-safe IAccount implementations when several threads hit the
+ * same accounts at once. FixedPointAccount is not thread-safe and is left out.
+ *
+ *   java -jar target/benchmarks.jar ContendedAccountBenchmark -t 8 -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContendedAccountBenchmark {
+
+    private static final BigDecimal LARGE = new BigDecimal("1000000000000");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.25");
+    private static final BigDecimal REFILL = new BigDecimal("2.50");
+
+    @Param({"Account", "ConcurrentAccount"})
+    public String implementation;
+
+    private Object shared;
+    private Object empty;
+    private Object pot;
+    private Object a;
+    private Object b;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        shared = Accounts.create(implementation, LARGE, "SEK", LARGE);
+        empty = Accounts.create(implementation, BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        pot = Accounts.create(implementation, LARGE, "SEK", BigDecimal.ZERO);
+        a = Accounts.create(implementation, LARGE, "SEK", BigDecimal.ZERO);
+        b = Accounts.create(implementation, LARGE, "SEK", BigDecimal.ZERO);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BigDecimal withdrawAccepted() throws Throwable {
+        return Accounts.withdraw(shared, AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BigDecimal withdrawRejected() throws Throwable {
+        return Accounts.withdraw(empty, AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BigDecimal deposit() throws Throwable {
+        return Accounts.deposit(shared, AMOUNT);
+    }
+
+    /*
+     * Two threads deposit, two withdraw and one sweeps the balance with withdrawAll, all
+     * on the same account without overdraft. Deposits are twice the withdrawals, so money
+     * keeps arriving for withdrawAll to take, and withdrawals are accepted whenever the
+     * sweep has not just emptied the account.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public BigDecimal mixedDeposit() throws Throwable {
+        return Accounts.deposit(pot, REFILL);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public BigDecimal mixedWithdraw() throws Throwable {
+        return Accounts.withdraw(pot, AMOUNT);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public BigDecimal mixedWithdrawAll() throws Throwable {
+        return Accounts.withdrawAll(pot);
+    }
+
+    /*
+     * Transfers in opposite directions between the same pair of accounts
+     */
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(2)
+    public void transferAtoB() throws Throwable {
+        Accounts.transferToAccount(a, b);
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(2)
+    public void transferBtoA() throws Throwable {
+        Accounts.transferToAccount(b, a);
+    }
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Historical balance queries on an EventSourcedAccount with 100,000 events. Each query
+ * replays from the nearest snapshot at or before the requested time, so its cost follows
+ * snapshotInterval rather than the length of the history.
+ *
+ *   java -jar target/benchmarks.jar EventSourcedAccountBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventSourcedAccountBenchmark {
+
+    private static final int EVENTS = 100_000;
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private static final MethodHandle NEW_ACCOUNT = Accounts.constructorOf("EventSourcedAccount",
+            BigDecimal.class, String.class, BigDecimal.class, Clock.class, int.class);
+    private static final MethodHandle BALANCE_AT = Accounts.method("EventSourcedAccount", "balanceAt",
+            BigDecimal.class, Instant.class);
+
+    @Param({"64", "1024"})
+    public int snapshotInterval;
+
+    private Object account;
+    private final Instant[] times = new Instant[1024];
+    private int next;
+
+    @Setup
+    public void setUp() throws Throwable {
+        SteppingClock clock = new SteppingClock();
+        account = (Object) NEW_ACCOUNT.invokeExact(new BigDecimal("1000"), "SEK", new BigDecimal("1000"),
+                (Clock) clock, snapshotInterval);
+        Random random = new Random(42);
+        for (int i = 0; i < EVENTS; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(10_000), 2);
+            if (random.nextBoolean()) {
+                Accounts.deposit(account, amount);
+            } else {
+                Accounts.withdraw(account, amount);
+            }
+        }
+        for (int i = 0; i < times.length; i++) {
+            times[i] = START.plusMillis(random.nextInt(EVENTS));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal balanceAt() throws Throwable {
+        return (BigDecimal) BALANCE_AT.invokeExact(account, times[next++ & (times.length - 1)]);
+    }
+
+    /*
+     * Advances one millisecond every time it is read, so every event gets its own time.
+     * Copies for other zones advance the same counter.
+     */
+    private static final class SteppingClock extends Clock {
+
+        private final ZoneId zone;
+        /**
+         * The clock whose counter is advanced: this one, or the one it was copied from
+         */
+        private final SteppingClock steps;
+        private long millis;
+
+        SteppingClock() {
+            this.zone = ZoneOffset.UTC;
+            this.steps = this;
+        }
+
+        private SteppingClock(ZoneId zone, SteppingClock steps) {
+            this.zone = zone;
+            this.steps = steps;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return zone.equals(this.zone) ? this : new SteppingClock(zone, steps);
+        }
+
+        @Override
+        public Instant instant() {
+            return START.plusMillis(steps.millis++);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * HeadroomIndex queries against the scan over every account of the store they replace.
+ * The index answers from sorted sets, so its cost follows the number of matches rather
+ * than the number of accounts.
+ *
+ *   java -jar target/benchmarks.jar HeadroomIndexBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeadroomIndexBenchmark {
+
+    private static final Class<?> CURRENCY_CODE = Accounts.load("CurrencyCode");
+
+    private static final MethodHandle NEW_STORE = Accounts.constructorOf("AccountStore");
+    private static final MethodHandle CREATE = Accounts.method("AccountStore", "create", int.class,
+            BigDecimal.class, String.class, BigDecimal.class);
+    private static final MethodHandle HEADROOM_INDEX = Accounts.method("AccountStore", "headroomIndex",
+            Accounts.load("HeadroomIndex"));
+    private static final MethodHandle CURRENCY = Accounts.method("AccountStore", "currency", CURRENCY_CODE, int.class);
+    private static final MethodHandle BALANCE = Accounts.method("AccountStore", "balanceMinor", long.class, int.class);
+    private static final MethodHandle MAX_OVERDRAWN = Accounts.method("AccountStore", "maxOverdrawnMinor",
+            long.class, int.class);
+    private static final MethodHandle WITHIN_HEADROOM = Accounts.method("HeadroomIndex", "withinHeadroom",
+            int[].class, CURRENCY_CODE, BigDecimal.class);
+    private static final MethodHandle CLOSEST_TO_LIMIT = Accounts.method("HeadroomIndex", "closestToLimit",
+            int[].class, CURRENCY_CODE, int.class);
+    private static final MethodHandle CURRENCY_OF = Accounts.staticMethod("CurrencyCode", "of", CURRENCY_CODE,
+            String.class);
+
+    @Param({"100000"})
+    public int accounts;
+
+    private Object store;
+    private Object index;
+    private Object sek;
+
+    @Setup
+    public void setUp() throws Throwable {
+        store = (Object) NEW_STORE.invokeExact();
+        Random random = new Random(42);
+        for (int i = 0; i < accounts; i++) {
+            String currency = i % 5 == 0 ? "EUR" : "SEK";
+            int id = (int) CREATE.invokeExact(store, BigDecimal.valueOf(random.nextInt(100_000), 2),
+                    currency, BigDecimal.valueOf(random.nextInt(50_000), 2));
+        }
+        index = (Object) HEADROOM_INDEX.invokeExact(store);
+        sek = (Object) CURRENCY_OF.invokeExact("SEK");
+    }
+
+    @Benchmark
+    public Object indexedWithinHeadroom() throws Throwable {
+        return (Object) WITHIN_HEADROOM.invokeExact(index, sek, BigDecimal.ONE);
+    }
+
+    @Benchmark
+    public Object indexedClosestToLimit() throws Throwable {
+        return (Object) CLOSEST_TO_LIMIT.invokeExact(index, sek, 10);
+    }
+
+    /*
+     * The same question as indexedWithinHeadroom, answered by reading every account
+     */
+    @Benchmark
+    public int scanWithinHeadroom() throws Throwable {
+        int found = 0;
+        for (int id = 0; id < accounts; id++) {
+            if ((Object) CURRENCY.invokeExact(store, id) == sek
+                    && (long) BALANCE.invokeExact(store, id) + (long) MAX_OVERDRAWN.invokeExact(store, id) <= 100) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+ * IdempotencyCache.execute from several threads: firstDelivery always uses a new key, so
+ * the operation runs and its result is stored (evicting the oldest keys once the cache is
+ * full); duplicate repeats keys the cache already holds, so the stored result is returned.
+ *
+ *   java -jar target/benchmarks.jar IdempotencyCacheBenchmark -t 8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class IdempotencyCacheBenchmark {
+
+    private static final int MAX_KEYS = 100_000;
+    private static final int DUPLICATES = 1024;
+    private static final Object REQUEST = "request";
+    private static final Supplier<Object> OPERATION = () -> REQUEST;
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private static final MethodHandle NEW_CACHE = Accounts.constructorOf("IdempotencyCache", int.class, long.class);
+    private static final MethodHandle EXECUTE = Accounts.method("IdempotencyCache", "execute", Object.class,
+            String.class, Object.class, Supplier.class);
+
+    private Object cache;
+    private final String[] duplicates = new String[DUPLICATES];
+
+    @State(Scope.Thread)
+    public static class Keys {
+        final String prefix = "key-" + THREADS.incrementAndGet() + "-";
+        int next;
+    }
+
+    @Setup
+    public void setUp() throws Throwable {
+        cache = (Object) NEW_CACHE.invokeExact(MAX_KEYS, TimeUnit.HOURS.toMillis(1));
+        for (int i = 0; i < DUPLICATES; i++) {
+            duplicates[i] = "duplicate-" + i;
+            Object result = (Object) EXECUTE.invokeExact(cache, duplicates[i], REQUEST, OPERATION);
+        }
+    }
+
+    @Benchmark
+    public Object firstDelivery(Keys keys) throws Throwable {
+        return (Object) EXECUTE.invokeExact(cache, keys.prefix + keys.next++, REQUEST, OPERATION);
+    }
+
+    @Benchmark
+    public Object duplicate(Keys keys) throws Throwable {
+        return (Object) EXECUTE.invokeExact(cache, duplicates[keys.next++ & (DUPLICATES - 1)], REQUEST, OPERATION);
+    }
+}
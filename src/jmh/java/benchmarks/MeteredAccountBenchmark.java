@@ -0,0 +1,93 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Overhead of MeteredAccount: the same operations on a bare account (metrics=none), on
+ * the account wrapped with metrics that only count outcomes (counted, the default) and
+ * with latency also sampled for 1 call in 16 (timed). Compare the scores for each
+ * implementation; with -prof gc the allocation rate per operation should be the same
+ * for all three.
+ *
+ *   java -jar target/benchmarks.jar MeteredAccountBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeteredAccountBenchmark {
+
+    private static final BigDecimal LARGE = new BigDecimal("1000000000000");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.25");
+
+    @Param({"Account", "ConcurrentAccount", "FixedPointAccount"})
+    public String implementation;
+
+    @Param({"none", "counted", "timed"})
+    public String metrics;
+
+    private Object funded;
+    private Object empty;
+    private Object sender;
+    private Object receiver;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Throwable {
+        Object shared = Accounts.newMetrics(metrics.equals("timed") ? 16 : 0);
+        funded = wrap(Accounts.create(implementation, LARGE, "SEK", LARGE), shared);
+        empty = wrap(Accounts.create(implementation, BigDecimal.ZERO, "SEK", BigDecimal.ZERO), shared);
+        sender = wrap(Accounts.create(implementation, AMOUNT, "SEK", BigDecimal.ZERO), shared);
+        receiver = wrap(Accounts.create(implementation, BigDecimal.ZERO, "SEK", BigDecimal.ZERO), shared);
+    }
+
+    private Object wrap(Object account, Object shared) throws Throwable {
+        return metrics.equals("none") ? account : Accounts.metered(account, shared);
+    }
+
+    @Benchmark
+    public BigDecimal withdrawAccepted() throws Throwable {
+        return Accounts.withdraw(funded, AMOUNT);
+    }
+
+    @Benchmark
+    public BigDecimal withdrawRejected() throws Throwable {
+        return Accounts.withdraw(empty, AMOUNT);
+    }
+
+    @Benchmark
+    public Object tryWithdrawAccepted() throws Throwable {
+        return Accounts.tryWithdraw(funded, AMOUNT);
+    }
+
+    @Benchmark
+    public Object tryWithdrawRejected() throws Throwable {
+        return Accounts.tryWithdraw(empty, AMOUNT);
+    }
+
+    @Benchmark
+    public BigDecimal deposit() throws Throwable {
+        return Accounts.deposit(funded, AMOUNT);
+    }
+
+    @Benchmark
+    public Object transferAmountRoundTrip() throws Throwable {
+        Accounts.transfer(sender, receiver, AMOUNT);
+        return Accounts.transfer(receiver, sender, AMOUNT);
+    }
+}
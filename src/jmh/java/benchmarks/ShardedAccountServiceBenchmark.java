@@ -0,0 +1,77 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Transfers between random accounts through ShardedAccountService, each caller waiting
+ * for its transfer to complete. Most transfers cross shards, so this includes the
+ * hand-off between shard workers.
+ *
+ *   java -jar target/benchmarks.jar ShardedAccountServiceBenchmark -t 8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ShardedAccountServiceBenchmark {
+
+    private static final int ACCOUNTS = 1024;
+    private static final BigDecimal LARGE = new BigDecimal("1000000000000");
+    private static final BigDecimal AMOUNT = new BigDecimal("3");
+
+    private static final MethodHandle NEW_SERVICE = Accounts.constructorOf("ShardedAccountService",
+            int.class, int.class);
+    private static final MethodHandle OPEN = Accounts.method("ShardedAccountService", "open",
+            CompletableFuture.class, long.class, Accounts.load("IAccount"));
+    private static final MethodHandle TRANSFER = Accounts.method("ShardedAccountService", "transfer",
+            CompletableFuture.class, long.class, long.class, BigDecimal.class);
+    private static final MethodHandle CLOSE = Accounts.method("ShardedAccountService", "close", void.class);
+
+    @Param({"2", "4"})
+    public int shards;
+
+    private Object service;
+
+    @Setup
+    public void setUp() throws Throwable {
+        service = (Object) NEW_SERVICE.invokeExact(shards, 256);
+        for (long id = 0; id < ACCOUNTS; id++) {
+            Object account = Accounts.create("Account", LARGE, "SEK", BigDecimal.ZERO);
+            ((CompletableFuture<?>) OPEN.invokeExact(service, id, account)).join();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Throwable {
+        CLOSE.invokeExact(service);
+    }
+
+    @Benchmark
+    public Object transfer() throws Throwable {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long from = random.nextInt(ACCOUNTS);
+        long to = random.nextInt(ACCOUNTS);
+        return ((CompletableFuture<?>) TRANSFER.invokeExact(service, from, to, AMOUNT)).join();
+    }
+}
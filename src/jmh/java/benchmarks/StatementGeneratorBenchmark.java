@@ -0,0 +1,133 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Statements for a journal of 500 accounts and 50,000 operations, with everything sorted
+ * in memory and with a 100-line buffer that spills hundreds of runs and merges them in
+ * several passes. The output is discarded, so this measures replaying, sorting and
+ * formatting rather than the writer.
+ *
+ *   java -jar target/benchmarks.jar StatementGeneratorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementGeneratorBenchmark {
+
+    private static final int ACCOUNTS = 500;
+    private static final int OPERATIONS = 50_000;
+
+    private static final Class<?> JOURNAL = Accounts.load("TransactionJournal");
+    private static final Class<?> FACTORY = Accounts.load("JournalReplayer$AccountFactory");
+
+    private static final MethodHandle OPEN = Accounts.staticMethod("TransactionJournal", "open", JOURNAL, Path.class);
+    private static final MethodHandle APPEND_OPEN = Accounts.method("TransactionJournal", "appendOpen", long.class,
+            long.class, BigDecimal.class, String.class, BigDecimal.class);
+    private static final MethodHandle APPEND_DEPOSIT = Accounts.method("TransactionJournal", "appendDeposit",
+            long.class, long.class, BigDecimal.class);
+    private static final MethodHandle APPEND_WITHDRAW = Accounts.method("TransactionJournal", "appendWithdraw",
+            long.class, long.class, BigDecimal.class);
+    private static final MethodHandle APPEND_TRANSFER = Accounts.method("TransactionJournal", "appendTransfer",
+            long.class, long.class, long.class, BigDecimal.class);
+    private static final MethodHandle AWAIT_DURABLE = Accounts.method("TransactionJournal", "awaitDurable",
+            void.class, long.class);
+    private static final MethodHandle CLOSE = Accounts.method("TransactionJournal", "close", void.class);
+    private static final MethodHandle NEW_GENERATOR = Accounts.constructorOf("StatementGenerator",
+            FACTORY, int.class, Path.class);
+    private static final MethodHandle GENERATE = Accounts.method("StatementGenerator", "generate", long.class,
+            Path.class, Writer.class);
+
+    @Param({"100", "1000000"})
+    public int maxBufferedLines;
+
+    private Path directory;
+    private Path file;
+    private Object generator;
+
+    @Setup
+    public void setUp() throws Throwable {
+        directory = Files.createTempDirectory("statements");
+        file = directory.resolve("benchmark.journal");
+        Object journal = (Object) OPEN.invokeExact(file);
+        Random random = new Random(42);
+        long sequence = 0;
+        for (long id = 0; id < ACCOUNTS; id++) {
+            String currency = id % 7 == 0 ? "EUR" : "SEK";
+            sequence = (long) APPEND_OPEN.invokeExact(journal, id, BigDecimal.valueOf(random.nextInt(10_000), 2),
+                    currency, BigDecimal.valueOf(random.nextInt(5_000), 2));
+        }
+        for (int i = 0; i < OPERATIONS; i++) {
+            long id = random.nextInt(ACCOUNTS);
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(10_000), 2);
+            switch (random.nextInt(3)) {
+                case 0:
+                    sequence = (long) APPEND_DEPOSIT.invokeExact(journal, id, amount);
+                    break;
+                case 1:
+                    sequence = (long) APPEND_WITHDRAW.invokeExact(journal, id, amount);
+                    break;
+                default:
+                    sequence = (long) APPEND_TRANSFER.invokeExact(journal, id, (long) random.nextInt(ACCOUNTS), amount);
+            }
+        }
+        AWAIT_DURABLE.invokeExact(journal, sequence);
+        CLOSE.invokeExact(journal);
+
+        Object factory = MethodHandleProxies.asInterfaceInstance(FACTORY, Accounts.constructor("Account"));
+        generator = (Object) NEW_GENERATOR.invokeExact(factory, maxBufferedLines, directory);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long generate() throws Throwable {
+        return (long) GENERATE.invokeExact(generator, file, (Writer) new DiscardingWriter());
+    }
+
+    private static final class DiscardingWriter extends Writer {
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void write(String text) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
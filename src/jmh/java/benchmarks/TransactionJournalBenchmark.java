@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Durable appends to a TransactionJournal: every operation appends a deposit and waits
+ * until it has been fsynced. Concurrent writers share fsyncs through the group commit, so
+ * throughput should grow with the thread count even though each fsync costs the same.
+ *
+ *   java -jar target/benchmarks.jar TransactionJournalBenchmark -t 1
+ *   java -jar target/benchmarks.jar TransactionJournalBenchmark -t 8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class TransactionJournalBenchmark {
+
+    private static final Class<?> JOURNAL = Accounts.load("TransactionJournal");
+
+    private static final MethodHandle OPEN = Accounts.staticMethod("TransactionJournal", "open", JOURNAL, Path.class);
+    private static final MethodHandle APPEND_OPEN = Accounts.method("TransactionJournal", "appendOpen", long.class,
+            long.class, BigDecimal.class, String.class, BigDecimal.class);
+    private static final MethodHandle APPEND_DEPOSIT = Accounts.method("TransactionJournal", "appendDeposit",
+            long.class, long.class, BigDecimal.class);
+    private static final MethodHandle AWAIT_DURABLE = Accounts.method("TransactionJournal", "awaitDurable",
+            void.class, long.class);
+    private static final MethodHandle CLOSE = Accounts.method("TransactionJournal", "close", void.class);
+
+    private Path file;
+    private Object journal;
+
+    @Setup
+    public void setUp() throws Throwable {
+        file = Files.createTempFile("benchmark", ".journal");
+        journal = (Object) OPEN.invokeExact(file);
+        long sequence = (long) APPEND_OPEN.invokeExact(journal, 0L, BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        AWAIT_DURABLE.invokeExact(journal, sequence);
+    }
+
+    @TearDown
+    public void tearDown() throws Throwable {
+        CLOSE.invokeExact(journal);
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long durableDeposit() throws Throwable {
+        long sequence = (long) APPEND_DEPOSIT.invokeExact(journal, 0L, BigDecimal.ONE);
+        AWAIT_DURABLE.invokeExact(journal, sequence);
+        return sequence;
+    }
+}
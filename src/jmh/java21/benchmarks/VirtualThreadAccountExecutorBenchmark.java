@@ -0,0 +1,95 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * VirtualThreadAccountExecutor with 100,000 operations submitted at once against 100
+ * shared Accounts, each one depositing and withdrawing after blocking for blockMillis as
+ * if waiting on I/O. With 1 ms nearly all of them are in flight together, which is what
+ * the executor is for; with 0 the score is the cost of a virtual thread per operation.
+ *
+ * Needs a JDK 21 or newer:
+ *
+ *   mvn -Pjava21,benchmarks package -DskipTests
+ *   java -jar target/benchmarks.jar VirtualThreadAccountExecutorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadAccountExecutorBenchmark {
+
+    private static final int OPERATIONS = 100_000;
+    private static final int ACCOUNTS = 100;
+    private static final BigDecimal TWO = new BigDecimal("2");
+
+    private static final MethodHandle NEW_EXECUTOR = Accounts.constructorOf("VirtualThreadAccountExecutor", int.class);
+    private static final MethodHandle SUBMIT = Accounts.method("VirtualThreadAccountExecutor", "submit",
+            CompletableFuture.class, Callable.class);
+    private static final MethodHandle CLOSE = Accounts.method("VirtualThreadAccountExecutor", "close", void.class);
+
+    @Param({"0", "1"})
+    public int blockMillis;
+
+    private Object executor;
+    private final Object[] accounts = new Object[ACCOUNTS];
+    private final CompletableFuture<?>[] results = new CompletableFuture<?>[OPERATIONS];
+
+    @Setup
+    public void setUp() throws Throwable {
+        executor = (Object) NEW_EXECUTOR.invokeExact(OPERATIONS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = Accounts.create("Account", BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Throwable {
+        CLOSE.invokeExact(executor);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void depositAndWithdraw() throws Throwable {
+        for (int n = 0; n < OPERATIONS; n++) {
+            results[n] = (CompletableFuture<?>) SUBMIT.invokeExact(executor, operation(accounts[n % ACCOUNTS]));
+        }
+        CompletableFuture.allOf(results).join();
+    }
+
+    private Callable<BigDecimal> operation(Object account) {
+        return () -> {
+            if (blockMillis > 0) {
+                Thread.sleep(blockMillis);
+            }
+            try {
+                Accounts.deposit(account, TWO);
+                return Accounts.withdraw(account, BigDecimal.ONE);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+}
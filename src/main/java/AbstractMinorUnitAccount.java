@@ -0,0 +1,260 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/*
+ * IAccount rules implemented on top of a balance and max_overdrawn held as scaled long
+ * minor units (öre, cents, ...). Subclasses only decide where those numbers are stored:
+ * in fields (FixedPointAccount) or in shared columns (AccountStore).
+ *
+ * The withdrawMinor/depositMinor methods are allocation-free and are meant for hot paths.
+ * The IAccount methods stay compatible with Account by converting BigDecimal amounts at
+ * the boundary. Arithmetic that would overflow a long throws ArithmeticException and
+ * leaves the account unchanged, as do amounts with more decimals than the currency has.
+ */
+public abstract class AbstractMinorUnitAccount implements IAccount {
+
+    /*
+     * Current balance in minor units of the currency
+     */
+    public abstract long getBalanceMinor();
+
+    /*
+     * Non-negative number of minor units the account can be "in the red"
+     */
+    public abstract long getMaxOverdrawnMinor();
+
+    @Override
+    public abstract CurrencyCode getCurrencyCode();
+
+    /*
+     * Number of decimals of the currency's minor unit, 2 for SEK
+     */
+    public int getScale() {
+        return getCurrencyCode().scale();
+    }
+
+    @Override
+    public String getCurrency() {
+        return getCurrencyCode().name();
+    }
+
+    protected abstract void storeBalance(long balance);
+
+    protected abstract void storeMaxOverdrawn(long max_overdrawn);
+
+    /*
+     * Replaces currency, balance and limit together, used by convertToCurrency
+     */
+    protected abstract void storeConversion(CurrencyCode currency, long balance, long max_overdrawn);
+
+    /*
+     * Stores both new balances of a transfer from this account to another minor-unit
+     * account, the target's first. Storage that must never show half a transfer, even
+     * after a crash, overrides this to write both together.
+     */
+    protected void storeTransfer(AbstractMinorUnitAccount to_account, long targetBalance, long balance) {
+        to_account.storeBalance(targetBalance);
+        storeBalance(balance);
+    }
+
+    @Override
+    public BigDecimal getBalance() {
+        return MinorUnits.toDecimal(getBalanceMinor(), getScale());
+    }
+
+    @Override
+    public BigDecimal getMaxOverdrawn() {
+        return MinorUnits.toDecimal(getMaxOverdrawnMinor(), getScale());
+    }
+
+    public void setMaxOverdrawn(BigDecimal max_overdrawn) {
+        storeMaxOverdrawn(Math.max(0L, MinorUnits.toMinor(max_overdrawn, getScale())));
+    }
+
+    public void setBalance(BigDecimal balance) {
+        long newBalance = MinorUnits.toMinor(balance, getScale());
+        // Allow only if balance >= -max_overdrawn
+        if (newBalance >= -getMaxOverdrawnMinor()) {
+            storeBalance(newBalance);
+        }
+    }
+
+    /*
+     * Withdraws the given number of minor units if the balance stays at or above
+     * -max_overdrawn, and returns the (possibly unchanged) balance in minor units.
+     */
+    public long withdrawMinor(long requestedAmount) {
+        long balance = getBalanceMinor();
+        long newBalance = Math.subtractExact(balance, requestedAmount);
+        if (newBalance >= -getMaxOverdrawnMinor()) {
+            storeBalance(newBalance);
+            return newBalance;
+        }
+        return balance;
+    }
+
+    /*
+     * Deposits the given number of minor units and returns the new balance in minor units.
+     * Negative deposits are ignored.
+     */
+    public long depositMinor(long amount_to_deposit) {
+        long balance = getBalanceMinor();
+        if (amount_to_deposit < 0) {
+            return balance;
+        }
+        long newBalance = Math.addExact(balance, amount_to_deposit);
+        storeBalance(newBalance);
+        return newBalance;
+    }
+
+    @Override
+    public BigDecimal withdraw(BigDecimal requestedAmount) {
+        int scale = getScale();
+        return MinorUnits.toDecimal(withdrawMinor(MinorUnits.toMinor(requestedAmount, scale)), scale);
+    }
+
+    @Override
+    public OperationStatus tryWithdraw(BigDecimal requestedAmount) {
+        long balance = getBalanceMinor();
+        long newBalance = Math.subtractExact(balance, MinorUnits.toMinor(requestedAmount, getScale()));
+        if (newBalance < -getMaxOverdrawnMinor()) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        storeBalance(newBalance);
+        return OperationStatus.OK;
+    }
+
+    @Override
+    public BigDecimal deposit(BigDecimal amount_to_deposit) {
+        if (amount_to_deposit.signum() < 0) {
+            return getBalance(); // ignore negative deposits
+        }
+        int scale = getScale();
+        return MinorUnits.toDecimal(depositMinor(MinorUnits.toMinor(amount_to_deposit, scale)), scale);
+    }
+
+    @Override
+    public BigDecimal withdrawAll() {
+        // Withdraw only if the account has a positive balance
+        long balance = getBalanceMinor();
+        if (balance > 0) {
+            storeBalance(0);
+            return MinorUnits.toDecimal(balance, getScale());
+        }
+        return BigDecimal.ZERO;
+    }
+
+    /*
+     * Converts the balance with the given rate, rounded half-even to the minor unit of
+     * the new currency. max_overdrawn keeps its amount, truncated to the new minor unit
+     * so the limit is never loosened by rounding.
+     */
+    @Override
+    public void convertToCurrency(String currencyCode, double rate) {
+        if (rate <= 0) {
+            return; // invalid rate
+        }
+        CurrencyCode target = CurrencyCode.of(currencyCode);
+        BigDecimal converted = getBalance().multiply(BigDecimal.valueOf(rate))
+                .setScale(target.scale(), RoundingMode.HALF_EVEN);
+        storeConversion(target, converted);
+    }
+
+    /*
+     * Converts the balance using the cached rate from the given table, rounded half-even
+     * to the minor unit of the new currency, with the same limit handling as above
+     */
+    public void convertToCurrency(String currencyCode, ExchangeRates rates) {
+        CurrencyCode target = CurrencyCode.of(currencyCode);
+        storeConversion(target, rates.convert(getBalance(), getCurrencyCode(), target));
+    }
+
+    private void storeConversion(CurrencyCode target, BigDecimal converted) {
+        BigDecimal limit = getMaxOverdrawn().setScale(target.scale(), RoundingMode.DOWN);
+
+        // Compute everything first so an overflow leaves the account untouched
+        long newBalance = MinorUnits.toMinor(converted, target.scale());
+        long newLimit = MinorUnits.toMinor(limit, target.scale());
+        storeConversion(target, newBalance, newLimit);
+    }
+
+    /*
+     * Transfers all available funds to another account holding the same currency.
+     * Nothing happens if the balance is zero or negative or the currencies differ.
+     */
+    @Override
+    public void TransferToAccount(IAccount to_account) {
+        tryTransferToAccount(to_account);
+    }
+
+    @Override
+    public OperationStatus tryTransferToAccount(IAccount to_account) {
+        if (getCurrencyCode() != to_account.getCurrencyCode()) {
+            return OperationStatus.CURRENCY_MISMATCH;
+        }
+        long balance = getBalanceMinor();
+        if (balance <= 0 || this.equals(to_account)) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        return credit(to_account, balance, 0);
+    }
+
+    /*
+     * Moves the given amount to another account, see IAccount.transfer.
+     * Amounts with more decimals than the currency has are rejected as INVALID_AMOUNT.
+     */
+    @Override
+    public OperationStatus transfer(IAccount to_account, BigDecimal amount) {
+        long minorAmount;
+        try {
+            minorAmount = MinorUnits.toMinor(amount, getScale());
+        } catch (ArithmeticException e) {
+            return OperationStatus.INVALID_AMOUNT;
+        }
+        return transferMinor(to_account, minorAmount);
+    }
+
+    /*
+     * Allocation-free transfer of the given number of minor units when the target also
+     * holds minor units, with the same rules and result codes as transfer.
+     */
+    public OperationStatus transferMinor(IAccount to_account, long amount) {
+        if (amount <= 0) {
+            return OperationStatus.INVALID_AMOUNT;
+        }
+        if (this.equals(to_account)) {
+            return OperationStatus.OK;
+        }
+        if (getCurrencyCode() != to_account.getCurrencyCode()) {
+            return OperationStatus.CURRENCY_MISMATCH;
+        }
+        long balance = getBalanceMinor();
+        long newBalance = balance - amount; // amount > 0, so this only overflows far below any floor
+        if (newBalance > balance || newBalance < -getMaxOverdrawnMinor()) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        return credit(to_account, amount, newBalance);
+    }
+
+    /*
+     * Credits the target with the given number of minor units and only then stores this
+     * account's new balance, so nothing the target throws can leave this account debited:
+     * there is never anything to refund. INVALID_AMOUNT is returned if the target can not
+     * hold the amount (ArithmeticException, e.g. an overflow), anything else it throws is
+     * rethrown with both accounts unchanged.
+     */
+    private OperationStatus credit(IAccount to_account, long amount, long newBalance) {
+        try {
+            if (to_account instanceof AbstractMinorUnitAccount) {
+                AbstractMinorUnitAccount target = (AbstractMinorUnitAccount) to_account;
+                storeTransfer(target, Math.addExact(target.getBalanceMinor(), amount), newBalance);
+                return OperationStatus.OK;
+            }
+            to_account.deposit(MinorUnits.toDecimal(amount, getScale()));
+        } catch (ArithmeticException e) {
+            return OperationStatus.INVALID_AMOUNT;
+        }
+        storeBalance(newBalance);
+        return OperationStatus.OK;
+    }
+}
@@ -7,20 +7,21 @@ public class Account implements IAccount {
      */
     private BigDecimal balance;
     /**
-     * Currency used in this account, can be "SEK", "EUR", or "USD"
+     * Currency used in this account, e.g. SEK, EUR or USD
      */
-    private String currency;
+    private CurrencyCode currency;
     /**
      * max_overdrawn is a non-negative number indicating how much the account can be "in the red"
      * The minimum balance of the account is -1 * max_overdrawn
      */
     private BigDecimal max_overdrawn;
 
-    public BigDecimal getMaxOverdrawn() {
+    @Override
+    public synchronized BigDecimal getMaxOverdrawn() {
         return this.max_overdrawn;
     }
 
-    public void setMaxOverdrawn(BigDecimal max_overdrawn) {
+    public synchronized void setMaxOverdrawn(BigDecimal max_overdrawn) {
         if (max_overdrawn.compareTo(BigDecimal.ZERO) <= 0) {
             this.max_overdrawn = BigDecimal.ZERO;
         } else {
@@ -28,15 +29,24 @@ public class Account implements IAccount {
         }
     }
 
-    public String getCurrency() {
+    @Override
+    public synchronized String getCurrency() {
+        return currency.name();
+    }
+
+    @Override
+    public synchronized CurrencyCode getCurrencyCode() {
         return currency;
     }
 
-    public void setCurrency(String currency) {
-        this.currency = currency;
+    /*
+     * Throws IllegalArgumentException if the code is not a supported currency
+     */
+    public synchronized void setCurrency(String currency) {
+        this.currency = CurrencyCode.of(currency);
     }
 
-    public void setBalance(BigDecimal balance) {
+    public synchronized void setBalance(BigDecimal balance) {
         // Allow only if balance >= -max_overdrawn
         if (balance.compareTo(this.max_overdrawn.negate()) >= 0) {
             this.balance = balance;
@@ -44,19 +54,20 @@ public class Account implements IAccount {
         // else do nothing (reject setting beyond overdraft)
     }
 
-    public BigDecimal getBalance() {
+    @Override
+    public synchronized BigDecimal getBalance() {
         return balance;
     }
 
     public Account() {
         this.balance = BigDecimal.ZERO;
-        this.currency = "SEK";
+        this.currency = CurrencyCode.SEK;
         this.max_overdrawn = BigDecimal.ZERO;
     }
 
     public Account(BigDecimal starting_balance, String currency, BigDecimal max_overdrawn) {
         this.balance = starting_balance;
-        this.currency = currency;
+        this.currency = CurrencyCode.of(currency);
         if (max_overdrawn.compareTo(BigDecimal.ZERO) <= 0) {
             this.max_overdrawn = BigDecimal.ZERO;
         } else {
@@ -65,7 +76,13 @@ public class Account implements IAccount {
     }
 
     @Override
-    public BigDecimal withdraw(BigDecimal requestedAmount) {
+    public synchronized BigDecimal withdraw(BigDecimal requestedAmount) {
+        tryWithdraw(requestedAmount);
+        return this.balance;
+    }
+
+    @Override
+    public synchronized OperationStatus tryWithdraw(BigDecimal requestedAmount) {
         // Calculate the lowest allowed balance (-max_overdrawn)
         BigDecimal allowedLimit = this.max_overdrawn.negate();
         BigDecimal newBalance = this.balance.subtract(requestedAmount);
@@ -73,16 +90,16 @@ public class Account implements IAccount {
         // Only update balance if it doesn't exceed allowed overdraft
         if (newBalance.compareTo(allowedLimit) >= 0) {
             this.balance = newBalance;  // Update balance
-            return this.balance;
+            return OperationStatus.OK;
         } else {
             // Withdrawal rejected, balance unchanged
-            return this.balance;
+            return OperationStatus.INSUFFICIENT_FUNDS;
         }
     }
 // Fix: Original code did not check max_overdrawn or update balance
 
     @Override
-    public BigDecimal deposit(BigDecimal amount_to_deposit) {
+    public synchronized BigDecimal deposit(BigDecimal amount_to_deposit) {
         // Prevent negative deposits
         if (amount_to_deposit.compareTo(BigDecimal.ZERO) < 0) {
             return this.balance; // ignore negative deposits
@@ -97,7 +114,7 @@ public class Account implements IAccount {
 //It doesn’t prevent negative deposits.
 
     @Override
-    public void convertToCurrency(String currencyCode, double rate) {
+    public synchronized void convertToCurrency(String currencyCode, double rate) {
         /*
          * Expected behavior:
          *   Converts the account balance based on the given rate and updates
@@ -115,10 +132,22 @@ public class Account implements IAccount {
         if (rate <= 0) {
             return; // invalid rate
         }
-        this.currency = currencyCode;
+        this.currency = CurrencyCode.of(currencyCode);
         this.balance = this.balance.multiply(BigDecimal.valueOf(rate));
     }
 
+    /*
+     * Converts the account balance into another currency using the cached rate from
+     * the given table, rounded to the minor unit of the new currency.
+     * Unlike convertToCurrency(String, double) no double rate is involved, so the
+     * result is exact up to that rounding.
+     */
+    public synchronized void convertToCurrency(String currencyCode, ExchangeRates rates) {
+        CurrencyCode target = CurrencyCode.of(currencyCode);
+        this.balance = rates.convert(this.balance, this.currency, target);
+        this.currency = target;
+    }
+
     /*
      * Transfers all available funds from this account to another account.
      *
@@ -141,29 +170,158 @@ public class Account implements IAccount {
      */
     @Override
     public void TransferToAccount(IAccount to_account) {
+        tryTransferToAccount(to_account);
+    }
 
-        // Ensure the provided account is of type Account to access currency
+    /*
+     * TransferToAccount reporting whether anything was moved, see IAccount.
+     *
+     * Towards another Account both accounts are locked, as in transfer. Any other target
+     * gets the balance the same way transfer sends it there: this account is emptied under
+     * its own lock, the target credited afterwards, and the balance refunded if the
+     * target throws.
+     */
+    @Override
+    public OperationStatus tryTransferToAccount(IAccount to_account) {
+        if (to_account == this) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
         if (to_account instanceof Account) {
-            Account targetAccount = (Account) to_account;
+            final Account targetAccount = (Account) to_account;
 
-            // Do not allow transfer from empty or negative balance accounts
-            if (this.balance.compareTo(BigDecimal.ZERO) <= 0) {
-                System.out.println("Transfer failed: Negative or zero balance.");
-                return;
+            // Lock both accounts in a global order so that concurrent transfers in
+            // opposite directions can neither deadlock nor move the same money twice
+            return TransferEngine.lockInOrder(this, targetAccount, () -> transferAllTo(targetAccount));
+        }
+        CurrencyCode targetCurrency = to_account.getCurrencyCode();
+        BigDecimal moved;
+        synchronized (this) {
+            OperationStatus status = checkAll(targetCurrency);
+            if (status != OperationStatus.OK) {
+                return status;
             }
+            moved = this.balance;
+            this.balance = BigDecimal.ZERO;
+        }
+        return credit(to_account, moved, moved, BigDecimal.ZERO);
+    }
+
+    /*
+     * Body of TransferToAccount, called while holding the locks of both accounts.
+     */
+    private OperationStatus transferAllTo(Account targetAccount) {
+        OperationStatus status = checkAll(targetAccount.currency);
+        if (status != OperationStatus.OK) {
+            return status;
+        }
+
+        // Perform the transfer
+        targetAccount.deposit(this.balance);
+
+        // Set the sender's balance to zero
+        this.balance = BigDecimal.ZERO;
+        return OperationStatus.OK;
+    }
 
-            // Only transfer if both accounts use the same currency
-            if (this.currency.equals(targetAccount.getCurrency())) {
-                // Perform the transfer
-                targetAccount.deposit(this.balance);
+    /*
+     * Whether this account can send its whole balance to an account holding the given
+     * currency, called while holding this account's lock
+     */
+    private OperationStatus checkAll(CurrencyCode targetCurrency) {
+        // Only transfer if both accounts use the same currency
+        if (this.currency != targetCurrency) {
+            return OperationStatus.CURRENCY_MISMATCH;
+        }
+        // Do not allow transfer from empty or negative balance accounts
+        if (this.balance.compareTo(BigDecimal.ZERO) <= 0) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        return OperationStatus.OK;
+    }
 
-                // Set the sender's balance to zero
-                this.balance = BigDecimal.ZERO;
+    /*
+     * Moves the given amount to another account, see IAccount.transfer.
+     *
+     * Towards another Account both accounts are locked in the same global order as
+     * TransferToAccount, so the transfer is atomic. Other implementations do not guard
+     * their state with their monitor, so for them this account is debited under its own
+     * lock and the target credited afterwards, without holding it. Failures are reported
+     * through the returned status only; nothing is printed, so rejected transfers cost no
+     * more than accepted ones.
+     */
+    @Override
+    public OperationStatus transfer(final IAccount to_account, final BigDecimal amount) {
+        if (amount.signum() <= 0) {
+            return OperationStatus.INVALID_AMOUNT;
+        }
+        if (to_account == this) {
+            return OperationStatus.OK;
+        }
+        if (to_account instanceof Account) {
+            return TransferEngine.lockInOrder(this, to_account, () -> transferLocked(to_account, amount));
+        }
+        CurrencyCode targetCurrency = to_account.getCurrencyCode();
+        BigDecimal before;
+        BigDecimal after;
+        synchronized (this) {
+            OperationStatus status = check(targetCurrency, amount);
+            if (status != OperationStatus.OK) {
+                return status;
+            }
+            before = this.balance;
+            after = before.subtract(amount);
+            this.balance = after;
+        }
+        return credit(to_account, amount, before, after);
+    }
 
-            } else {
-                System.out.println("Transfer failed: currencies do not match.");
+    /*
+     * Deposits an amount already taken from this account, which changed its balance from
+     * before to after, into a target of another type. If the target throws, the amount is
+     * refunded: INVALID_AMOUNT is returned if it could not hold the amount
+     * (ArithmeticException), anything else it threw is rethrown.
+     */
+    private OperationStatus credit(IAccount to_account, BigDecimal amount, BigDecimal before, BigDecimal after) {
+        try {
+            to_account.deposit(amount);
+        } catch (RuntimeException e) {
+            // The target did not take the amount: refund it, restoring the exact old
+            // balance if nothing happened in between
+            synchronized (this) {
+                this.balance = this.balance == after ? before : this.balance.add(amount);
             }
+            if (e instanceof ArithmeticException) {
+                return OperationStatus.INVALID_AMOUNT; // e.g. more decimals than its minor unit
+            }
+            throw e;
+        }
+        return OperationStatus.OK;
+    }
+
+    /*
+     * Body of transfer between two Account objects, called while holding both locks.
+     */
+    private OperationStatus transferLocked(IAccount to_account, BigDecimal amount) {
+        OperationStatus status = check(to_account.getCurrencyCode(), amount);
+        if (status == OperationStatus.OK) {
+            to_account.deposit(amount);
+            this.balance = this.balance.subtract(amount);
+        }
+        return status;
+    }
+
+    /*
+     * Whether this account can send the amount to an account holding the given currency,
+     * called while holding this account's lock
+     */
+    private OperationStatus check(CurrencyCode targetCurrency, BigDecimal amount) {
+        if (this.currency != targetCurrency) {
+            return OperationStatus.CURRENCY_MISMATCH;
+        }
+        if (this.balance.subtract(amount).compareTo(this.max_overdrawn.negate()) < 0) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
         }
+        return OperationStatus.OK;
     }
 
 
@@ -187,7 +345,7 @@ public class Account implements IAccount {
      *  - Returns the amount withdrawn for confirmation.
      */
     @Override
-    public BigDecimal withdrawAll() {
+    public synchronized BigDecimal withdrawAll() {
         // Withdraw only if the account has a positive balance
         if (this.balance.compareTo(BigDecimal.ZERO) > 0) {
             BigDecimal withdrawn = this.balance;
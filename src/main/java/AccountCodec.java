@@ -0,0 +1,208 @@
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Compact binary format for account state and batch operations, for sending them between
+ * processes.
+ *
+ * Every record starts with one header byte: the format version in the high four bits and
+ * the record kind in the low four. The fields follow as LEB128 varints, so small values
+ * take one byte:
+ *
+ *   account:    currency ordinal, balance (zigzag), max_overdrawn
+ *   deposit:    account id, amount (zigzag)
+ *   withdraw:   account id, amount (zigzag)
+ *   transfer:   account id, target id, amount (zigzag)
+ *
+ * Amounts are in minor units of the account's currency, as in AccountStore, and signed
+ * amounts are zigzag encoded so that -1 takes one byte, not ten. An account with a
+ * balance of 1234.50 SEK and a 500 SEK limit takes 8 bytes.
+ *
+ * Records are written straight into and read straight out of the caller's ByteBuffer,
+ * heap or direct, at its position; nothing is allocated in between. A buffer with less
+ * than MAX_ACCOUNT_SIZE or MAX_OPERATION_SIZE bytes remaining may throw
+ * BufferOverflowException, and a truncated record BufferUnderflowException. A record
+ * with an unknown version or kind throws IllegalArgumentException.
+ */
+public final class AccountCodec {
+
+    public static final int VERSION = 1;
+
+    public static final int MAX_ACCOUNT_SIZE = 1 + 5 + 10 + 10;
+    public static final int MAX_OPERATION_SIZE = 1 + 5 + 5 + 10;
+
+    static final int ACCOUNT = 0;
+    static final int DEPOSIT = 1;
+    static final int WITHDRAW = 2;
+    static final int TRANSFER = 3;
+
+    private AccountCodec() {
+    }
+
+    /*
+     * Writes the state of any account. Throws ArithmeticException if the balance or limit
+     * has more decimals than the currency's minor unit, as an Account balance can after
+     * convertToCurrency with a double rate.
+     */
+    public static void encodeAccount(IAccount account, ByteBuffer out) {
+        CurrencyCode currency = account.getCurrencyCode();
+        if (account instanceof AbstractMinorUnitAccount) {
+            AbstractMinorUnitAccount minor = (AbstractMinorUnitAccount) account;
+            encodeAccount(currency, minor.getBalanceMinor(), minor.getMaxOverdrawnMinor(), out);
+        } else {
+            encodeAccount(currency, MinorUnits.toMinor(account.getBalance(), currency.scale()),
+                    MinorUnits.toMinor(account.getMaxOverdrawn(), currency.scale()), out);
+        }
+    }
+
+    /*
+     * Writes the state of one account given in minor units; max_overdrawn must not be negative
+     */
+    public static void encodeAccount(CurrencyCode currency, long balance, long max_overdrawn, ByteBuffer out) {
+        if (max_overdrawn < 0) {
+            throw new IllegalArgumentException("max_overdrawn must not be negative");
+        }
+        out.put(header(ACCOUNT));
+        putVarLong(out, currency.ordinal());
+        putVarLong(out, zigzag(balance));
+        putVarLong(out, max_overdrawn);
+    }
+
+    /*
+     * Reads one account record into a new Account
+     */
+    public static Account decodeAccount(ByteBuffer in) {
+        expect(in, ACCOUNT);
+        CurrencyCode currency = CurrencyCode.ofOrdinal(getVarInt(in));
+        BigDecimal balance = MinorUnits.toDecimal(unzigzag(getVarLong(in)), currency.scale());
+        BigDecimal limit = MinorUnits.toDecimal(getVarLong(in), currency.scale());
+        return new Account(balance, currency.name(), limit);
+    }
+
+    /*
+     * Reads one account record into a new row of the store and returns its id, without
+     * going through BigDecimal
+     */
+    public static int decodeAccount(ByteBuffer in, AccountStore store) {
+        expect(in, ACCOUNT);
+        CurrencyCode currency = CurrencyCode.ofOrdinal(getVarInt(in));
+        long balance = unzigzag(getVarLong(in));
+        return store.createMinor(balance, currency, getVarLong(in));
+    }
+
+    public static void encodeOperation(Operation operation, ByteBuffer out) {
+        switch (operation.getType()) {
+            case DEPOSIT:
+                out.put(header(DEPOSIT));
+                putVarLong(out, operation.getAccount() & 0xFFFFFFFFL);
+                break;
+            case WITHDRAW:
+                out.put(header(WITHDRAW));
+                putVarLong(out, operation.getAccount() & 0xFFFFFFFFL);
+                break;
+            case TRANSFER:
+            default:
+                out.put(header(TRANSFER));
+                putVarLong(out, operation.getAccount() & 0xFFFFFFFFL);
+                putVarLong(out, operation.getTarget() & 0xFFFFFFFFL);
+        }
+        putVarLong(out, zigzag(operation.getAmount()));
+    }
+
+    public static Operation decodeOperation(ByteBuffer in) {
+        int header = in.get() & 0xFF;
+        checkVersion(header);
+        int account = getVarInt(in);
+        switch (header & 0x0F) {
+            case DEPOSIT:
+                return Operation.deposit(account, unzigzag(getVarLong(in)));
+            case WITHDRAW:
+                return Operation.withdraw(account, unzigzag(getVarLong(in)));
+            case TRANSFER:
+                int target = getVarInt(in);
+                return Operation.transfer(account, target, unzigzag(getVarLong(in)));
+            default:
+                throw new IllegalArgumentException("Not an operation record: kind " + (header & 0x0F));
+        }
+    }
+
+    public static void encodeOperations(List<Operation> operations, ByteBuffer out) {
+        for (Operation operation : operations) {
+            encodeOperation(operation, out);
+        }
+    }
+
+    /*
+     * Reads operation records until the buffer has no bytes remaining
+     */
+    public static List<Operation> decodeOperations(ByteBuffer in) {
+        List<Operation> operations = new ArrayList<>();
+        while (in.hasRemaining()) {
+            operations.add(decodeOperation(in));
+        }
+        return operations;
+    }
+
+    private static byte header(int kind) {
+        return (byte) (VERSION << 4 | kind);
+    }
+
+    private static void expect(ByteBuffer in, int kind) {
+        int header = in.get() & 0xFF;
+        checkVersion(header);
+        if ((header & 0x0F) != kind) {
+            throw new IllegalArgumentException("Expected record kind " + kind + " but found " + (header & 0x0F));
+        }
+    }
+
+    private static void checkVersion(int header) {
+        if (header >>> 4 != VERSION) {
+            throw new IllegalArgumentException("Unsupported codec version " + (header >>> 4));
+        }
+    }
+
+    /*
+     * Maps signed values to unsigned so that small magnitudes stay small: 0, -1, 1, -2 ...
+     * become 0, 1, 2, 3 ...
+     */
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /*
+     * Unsigned LEB128: seven bits per byte, lowest first, high bit set on all but the last
+     */
+    static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint: more than 10 bytes");
+    }
+
+    private static int getVarInt(ByteBuffer in) {
+        long value = getVarLong(in);
+        if (value >>> 32 != 0) {
+            throw new IllegalArgumentException("Varint out of int range: " + value);
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,98 @@
+import java.math.BigDecimal;
+
+/*
+ * Immutable record of one accepted change to an EventSourcedAccount.
+ *
+ * Rejected operations produce no event. Replaying the events of an account in order,
+ * starting from OPENED, rebuilds its balance, currency and max_overdrawn at any point.
+ */
+public final class AccountEvent {
+
+    public enum Type {
+        /**
+         * Amount is the starting balance, value the max_overdrawn
+         */
+        OPENED,
+        DEPOSITED,
+        WITHDRAWN,
+        /**
+         * Funds sent to another account by TransferToAccount or transfer
+         */
+        TRANSFERRED_OUT,
+        /**
+         * Funds received from another EventSourcedAccount
+         */
+        TRANSFERRED_IN,
+        /**
+         * Balance multiplied by value, currency replaced
+         */
+        CONVERTED,
+        /**
+         * Value is the new max_overdrawn
+         */
+        MAX_OVERDRAWN_CHANGED
+    }
+
+    private final Type type;
+    private final long timestamp;
+    private final BigDecimal amount;
+    private final BigDecimal value;
+    private final CurrencyCode currency;
+
+    private AccountEvent(Type type, long timestamp, BigDecimal amount, BigDecimal value, CurrencyCode currency) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.amount = amount;
+        this.value = value;
+        this.currency = currency;
+    }
+
+    static AccountEvent opened(long timestamp, BigDecimal balance, CurrencyCode currency, BigDecimal max_overdrawn) {
+        return new AccountEvent(Type.OPENED, timestamp, balance, max_overdrawn, currency);
+    }
+
+    static AccountEvent of(Type type, long timestamp, BigDecimal amount) {
+        return new AccountEvent(type, timestamp, amount, null, null);
+    }
+
+    static AccountEvent converted(long timestamp, CurrencyCode currency, BigDecimal rate) {
+        return new AccountEvent(Type.CONVERTED, timestamp, null, rate, currency);
+    }
+
+    static AccountEvent maxOverdrawnChanged(long timestamp, BigDecimal max_overdrawn) {
+        return new AccountEvent(Type.MAX_OVERDRAWN_CHANGED, timestamp, null, max_overdrawn, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /*
+     * When the event happened, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /*
+     * Amount deposited, withdrawn or transferred, or the starting balance;
+     * null for CONVERTED and MAX_OVERDRAWN_CHANGED
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    /*
+     * Conversion rate, or max_overdrawn for OPENED and MAX_OVERDRAWN_CHANGED; null otherwise
+     */
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    /*
+     * Currency after OPENED or CONVERTED; null otherwise
+     */
+    public CurrencyCode getCurrency() {
+        return currency;
+    }
+}
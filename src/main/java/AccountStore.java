@@ -0,0 +1,643 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Holds a large number of accounts in struct-of-arrays form.
+ *
+ * Every account is an int id into three parallel columns: a long balance and a long
+ * max_overdrawn (both in minor units of the currency) and the CurrencyCode ordinal as a
+ * byte. That is 17 bytes per account, compared with several hundred bytes for an Account
+ * with its BigDecimal and String fields, and bulk scans walk contiguous primitive arrays.
+ *
+ * account(id) returns a lightweight IAccount view over one row; the view holds no state of
+ * its own, so any number of views can be created and dropped without copying data.
+ *
+ * applyBatch runs many deposits, withdrawals and transfers in one pass over the columns,
+ * optionally splitting independent accounts across a ForkJoinPool. convertAll converts
+ * every account of one currency with a single exact rate, optionally on a ForkJoinPool.
+ *
+ * headroomIndex() starts keeping a HeadroomIndex of the accounts by distance to their
+ * overdraft floor, which every write path below then updates.
+ *
+ * Not thread-safe: callers that share a store between threads must synchronize access.
+ */
+public class AccountStore {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final byte OK = (byte) OperationStatus.OK.ordinal();
+    /**
+     * Accounts converted by one fork/join leaf; smaller ranges are not worth a task
+     */
+    private static final int CONVERSION_CHUNK = 1 << 14;
+
+    private long[] balances;
+    private long[] limits;
+    private byte[] currencies;
+    private int size;
+    /**
+     * Null until headroomIndex() is first called
+     */
+    private HeadroomIndex index;
+
+    public AccountStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AccountStore(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.balances = new long[capacity];
+        this.limits = new long[capacity];
+        this.currencies = new byte[capacity];
+    }
+
+    /*
+     * Adds an account and returns its id. Ids are assigned consecutively from 0.
+     */
+    public int create(BigDecimal starting_balance, String currency, BigDecimal max_overdrawn) {
+        CurrencyCode code = CurrencyCode.of(currency);
+        int scale = code.scale();
+        return createMinor(MinorUnits.toMinor(starting_balance, scale), code, MinorUnits.toMinor(max_overdrawn, scale));
+    }
+
+    /*
+     * Adds an account with the balance and limit given in minor units of the currency
+     * and returns its id
+     */
+    public int createMinor(long balance, CurrencyCode currency, long max_overdrawn) {
+        long limit = Math.max(0L, max_overdrawn);
+        if (size == balances.length) {
+            int capacity = size * 2;
+            balances = Arrays.copyOf(balances, capacity);
+            limits = Arrays.copyOf(limits, capacity);
+            currencies = Arrays.copyOf(currencies, capacity);
+        }
+        balances[size] = balance;
+        limits[size] = limit;
+        currencies[size] = (byte) currency.ordinal();
+        reindex(size);
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Returns an IAccount view of the account with the given id
+     */
+    public AbstractMinorUnitAccount account(int id) {
+        checkId(id);
+        return new View(id);
+    }
+
+    public long balanceMinor(int id) {
+        checkId(id);
+        return balances[id];
+    }
+
+    public long maxOverdrawnMinor(int id) {
+        checkId(id);
+        return limits[id];
+    }
+
+    public CurrencyCode currency(int id) {
+        checkId(id);
+        return CurrencyCode.ofOrdinal(currencies[id]);
+    }
+
+    /*
+     * Sum of the balances of all accounts holding the given currency
+     */
+    public BigDecimal totalBalance(CurrencyCode currency) {
+        byte code = (byte) currency.ordinal();
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            if (currencies[i] == code) {
+                total = Math.addExact(total, balances[i]);
+            }
+        }
+        return MinorUnits.toDecimal(total, currency.scale());
+    }
+
+    /*
+     * Number of accounts with a negative balance
+     */
+    public int countOverdrawn() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (balances[i] < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*
+     * Index of the accounts by headroom (balance + max_overdrawn). The first call builds it
+     * from all accounts; from then on it is kept up to date by every change to the store.
+     */
+    public HeadroomIndex headroomIndex() {
+        if (index == null) {
+            index = new HeadroomIndex(balances.length);
+            for (int id = 0; id < size; id++) {
+                reindex(id);
+            }
+        }
+        return index;
+    }
+
+    private void reindex(int id) {
+        if (index != null) {
+            index.update(id, currencies[id], balances[id], limits[id]);
+        }
+    }
+
+    /*
+     * Updates the index for the accounts touched by the accepted operations of a batch
+     */
+    private void reindex(List<Operation> operations, byte[] statuses) {
+        if (index == null) {
+            return;
+        }
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == OK) {
+                reindex(operations.get(i).getAccount());
+                reindex(operations.get(i).getTarget());
+            }
+        }
+    }
+
+    /*
+     * Applies the operations in order and returns the outcome of each one.
+     *
+     * The whole batch is validated first (account ids, non-negative amounts, transfer
+     * currencies), then the valid operations are applied in a single pass, each one
+     * checked against the overdraft limit at that point in the batch. A rejected
+     * operation leaves the balances untouched and does not stop the rest of the batch.
+     */
+    public BatchResult applyBatch(List<Operation> operations) {
+        byte[] statuses = validate(operations);
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == OK) {
+                statuses[i] = apply(operations.get(i));
+            }
+        }
+        reindex(operations, statuses);
+        return new BatchResult(statuses);
+    }
+
+    /*
+     * Same result as applyBatch(operations), but operations on unrelated accounts are
+     * applied in parallel on the given pool. Accounts linked by a transfer always end up
+     * in the same partition, and each partition keeps the batch order, so every account
+     * sees its operations in the same order as in the sequential version.
+     */
+    public BatchResult applyBatch(final List<Operation> operations, ForkJoinPool pool) {
+        final byte[] statuses = validate(operations);
+        int partitionCount = Math.max(1, pool.getParallelism() * 4);
+        final int[][] partitions = partition(operations, statuses, partitionCount);
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions.length);
+        for (final int[] partition : partitions) {
+            if (partition.length > 0) {
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    for (int index : partition) {
+                        statuses[index] = apply(operations.get(index));
+                    }
+                }));
+            }
+        }
+        pool.invoke(ForkJoinTask.adapt((Runnable) () -> ForkJoinTask.invokeAll(tasks)));
+        reindex(operations, statuses); // the index is not thread-safe, so it is updated afterwards
+        return new BatchResult(statuses);
+    }
+
+    /*
+     * Converts every account holding the from-currency to the to-currency, where 1 unit of
+     * the from-currency is worth rate units of the to-currency, and returns the number of
+     * accounts converted.
+     *
+     * Balances are rounded half-even to the minor unit of the to-currency and limits are
+     * truncated, exactly as AbstractMinorUnitAccount.convertToCurrency does for a single
+     * account. An account whose converted balance does not fit in a long keeps its old
+     * currency and balance and is not counted.
+     */
+    public int convertAll(CurrencyCode from, CurrencyCode to, BigDecimal rate) {
+        int converted = convertRange(new Conversion(from, to, rate), 0, size);
+        reindex(to);
+        return converted;
+    }
+
+    /*
+     * Same result as convertAll(from, to, rate), but the id range is split into chunks
+     * that are converted in parallel on the given pool. Each account is converted on its
+     * own, so the chunks share nothing but the read-only rate.
+     */
+    public int convertAll(CurrencyCode from, CurrencyCode to, BigDecimal rate, ForkJoinPool pool) {
+        int converted = pool.invoke(new ConversionTask(new Conversion(from, to, rate), 0, size));
+        reindex(to);
+        return converted;
+    }
+
+    /*
+     * Updates the index for every account now holding the currency; the index skips
+     * accounts that have not changed
+     */
+    private void reindex(CurrencyCode currency) {
+        if (index == null) {
+            return;
+        }
+        byte code = (byte) currency.ordinal();
+        for (int id = 0; id < size; id++) {
+            if (currencies[id] == code) {
+                reindex(id);
+            }
+        }
+    }
+
+    private int convertRange(Conversion conversion, int start, int end) {
+        byte from = (byte) conversion.from.ordinal();
+        byte to = (byte) conversion.to.ordinal();
+        int converted = 0;
+        for (int i = start; i < end; i++) {
+            if (currencies[i] != from) {
+                continue;
+            }
+            try {
+                long balance = conversion.apply(balances[i], RoundingMode.HALF_EVEN);
+                long limit = conversion.apply(limits[i], RoundingMode.DOWN);
+                balances[i] = balance;
+                limits[i] = limit;
+                currencies[i] = to;
+                converted++;
+            } catch (ArithmeticException e) {
+                // does not fit in a long: leave the account as it was
+            }
+        }
+        return converted;
+    }
+
+    /*
+     * Splits the id range in halves until it is at most CONVERSION_CHUNK accounts long
+     */
+    private final class ConversionTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Conversion conversion;
+        private final int start;
+        private final int end;
+
+        ConversionTask(Conversion conversion, int start, int end) {
+            this.conversion = conversion;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (end - start <= CONVERSION_CHUNK) {
+                return convertRange(conversion, start, end);
+            }
+            int middle = (start + end) >>> 1;
+            ConversionTask left = new ConversionTask(conversion, start, middle);
+            left.fork();
+            int right = new ConversionTask(conversion, middle, end).compute();
+            return left.join() + right;
+        }
+    }
+
+    /*
+     * One exchange rate applied to amounts in minor units.
+     *
+     * A minor-unit amount of the from-currency is multiplied by the rate and shifted to
+     * the scale of the to-currency, which is a single multiplication by the exact factor
+     * numerator / denominator. When both fit in a long the result is computed in long
+     * arithmetic with the rounding done by hand, so the common case allocates nothing;
+     * otherwise, and when the product overflows, it falls back to BigDecimal.
+     */
+    private static final class Conversion {
+
+        private final CurrencyCode from;
+        private final CurrencyCode to;
+        private final BigDecimal factor;
+        private final long numerator;
+        /**
+         * A power of ten, or 0 if the factor does not fit the long fast path
+         */
+        private final long denominator;
+
+        Conversion(CurrencyCode from, CurrencyCode to, BigDecimal rate) {
+            if (rate.signum() <= 0) {
+                throw new IllegalArgumentException("Rate must be positive: " + rate);
+            }
+            this.from = from;
+            this.to = to;
+            BigDecimal exact = rate.movePointRight(to.scale() - from.scale()).stripTrailingZeros();
+            if (exact.scale() < 0) {
+                exact = exact.setScale(0);
+            }
+            this.factor = exact;
+            long fastNumerator = 0;
+            long fastDenominator = 0;
+            if (exact.scale() <= 18 && exact.unscaledValue().bitLength() < 64) {
+                fastNumerator = exact.unscaledValue().longValue();
+                fastDenominator = powerOfTen(exact.scale());
+            }
+            this.numerator = fastNumerator;
+            this.denominator = fastDenominator;
+        }
+
+        /*
+         * The converted amount. Throws ArithmeticException if it does not fit in a long.
+         */
+        long apply(long amount, RoundingMode rounding) {
+            if (denominator != 0) {
+                try {
+                    return divide(Math.multiplyExact(amount, numerator), denominator, rounding);
+                } catch (ArithmeticException e) {
+                    // product overflows a long, fall through to BigDecimal
+                }
+            }
+            return BigDecimal.valueOf(amount).multiply(factor).setScale(0, rounding).longValueExact();
+        }
+
+        /*
+         * dividend / divisor rounded half-even or towards zero, for a positive divisor
+         */
+        private static long divide(long dividend, long divisor, RoundingMode rounding) {
+            long quotient = dividend / divisor;
+            long remainder = dividend % divisor;
+            if (remainder == 0 || rounding == RoundingMode.DOWN) {
+                return quotient;
+            }
+            long twice = Math.abs(remainder) * 2; // remainder < 10^18, so no overflow
+            if (twice > divisor || (twice == divisor && (quotient & 1) != 0)) {
+                return quotient + Long.signum(dividend);
+            }
+            return quotient;
+        }
+
+        private static long powerOfTen(int exponent) {
+            long power = 1;
+            for (int i = 0; i < exponent; i++) {
+                power *= 10;
+            }
+            return power;
+        }
+    }
+
+    private byte[] validate(List<Operation> operations) {
+        byte[] statuses = new byte[operations.size()];
+        for (int i = 0; i < statuses.length; i++) {
+            Operation operation = operations.get(i);
+            OperationStatus status = OperationStatus.OK;
+            if (!exists(operation.getAccount()) || !exists(operation.getTarget())) {
+                status = OperationStatus.UNKNOWN_ACCOUNT;
+            } else if (operation.getAmount() < 0) {
+                status = OperationStatus.INVALID_AMOUNT;
+            } else if (currencies[operation.getAccount()] != currencies[operation.getTarget()]) {
+                status = OperationStatus.CURRENCY_MISMATCH;
+            }
+            statuses[i] = (byte) status.ordinal();
+        }
+        return statuses;
+    }
+
+    private boolean exists(int id) {
+        return id >= 0 && id < size;
+    }
+
+    /*
+     * Applies one validated operation directly to the columns
+     */
+    private byte apply(Operation operation) {
+        int from = operation.getAccount();
+        long amount = operation.getAmount();
+        long balance = balances[from];
+        switch (operation.getType()) {
+            case DEPOSIT:
+                if (balance > Long.MAX_VALUE - amount) {
+                    return (byte) OperationStatus.INVALID_AMOUNT.ordinal();
+                }
+                balances[from] = balance + amount;
+                return OK;
+            case WITHDRAW:
+                if (!withinOverdraft(balance, amount, limits[from])) {
+                    return (byte) OperationStatus.INSUFFICIENT_FUNDS.ordinal();
+                }
+                balances[from] = balance - amount;
+                return OK;
+            case TRANSFER:
+            default:
+                int to = operation.getTarget();
+                if (from == to) {
+                    return OK;
+                }
+                if (!withinOverdraft(balance, amount, limits[from])) {
+                    return (byte) OperationStatus.INSUFFICIENT_FUNDS.ordinal();
+                }
+                if (balances[to] > Long.MAX_VALUE - amount) {
+                    return (byte) OperationStatus.INVALID_AMOUNT.ordinal();
+                }
+                balances[from] = balance - amount;
+                balances[to] += amount;
+                return OK;
+        }
+    }
+
+    /*
+     * True if balance - amount stays at or above -limit; a subtraction that overflows
+     * is always far below any limit
+     */
+    private static boolean withinOverdraft(long balance, long amount, long limit) {
+        long newBalance = balance - amount;
+        boolean overflow = ((balance ^ amount) & (balance ^ newBalance)) < 0;
+        return !overflow && newBalance >= -limit;
+    }
+
+    /*
+     * Splits the valid operations into partitions that share no account, keeping batch order
+     * within each partition. Accounts connected by transfers are merged with union-find, and
+     * each connected group is assigned to a partition by the id of its representative.
+     *
+     * Union-find runs over slots numbered in the order accounts first appear in the batch,
+     * so the work and memory depend on the batch, not on the size of the store.
+     */
+    private int[][] partition(List<Operation> operations, byte[] statuses, int partitionCount) {
+        SlotMap slots = new SlotMap(statuses.length * 2);
+        int[] accountSlot = new int[statuses.length];
+        int[] targetSlot = new int[statuses.length];
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == OK) {
+                Operation operation = operations.get(i);
+                accountSlot[i] = slots.slot(operation.getAccount());
+                targetSlot[i] = slots.slot(operation.getTarget());
+            }
+        }
+
+        int[] parent = new int[slots.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == OK && accountSlot[i] != targetSlot[i]) {
+                int a = find(parent, accountSlot[i]);
+                int b = find(parent, targetSlot[i]);
+                if (a != b) {
+                    parent[a] = b;
+                }
+            }
+        }
+
+        int[] partitionOf = accountSlot; // reused: each operation's slot is read once more below
+        int[] counts = new int[partitionCount];
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == OK) {
+                int p = slots.accountOf(find(parent, accountSlot[i])) % partitionCount;
+                partitionOf[i] = p;
+                counts[p]++;
+            }
+        }
+        int[][] partitions = new int[partitionCount][];
+        for (int p = 0; p < partitionCount; p++) {
+            partitions[p] = new int[counts[p]];
+            counts[p] = 0;
+        }
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == OK) {
+                int p = partitionOf[i];
+                partitions[p][counts[p]++] = i;
+            }
+        }
+        return partitions;
+    }
+
+    private static int find(int[] parent, int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]]; // path halving
+            id = parent[id];
+        }
+        return id;
+    }
+
+    /*
+     * Open-addressing map from account id to a dense slot number, sized for at most
+     * maxAccounts distinct ids
+     */
+    private static final class SlotMap {
+
+        private final int[] keys;
+        private final int[] values;
+        private final int[] accounts;
+        private int size;
+
+        SlotMap(int maxAccounts) {
+            int capacity = Integer.highestOneBit(Math.max(2, maxAccounts) * 2 - 1) << 1;
+            this.keys = new int[capacity];
+            this.values = new int[capacity];
+            this.accounts = new int[Math.max(1, maxAccounts)];
+            Arrays.fill(keys, -1);
+        }
+
+        /*
+         * Slot of the account, assigning the next free one on first sight
+         */
+        int slot(int account) {
+            int mask = keys.length - 1;
+            int hash = account * 0x9E3779B9;
+            int i = (hash ^ hash >>> 16) & mask;
+            while (keys[i] != -1) {
+                if (keys[i] == account) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = account;
+            values[i] = size;
+            accounts[size] = account;
+            return size++;
+        }
+
+        int accountOf(int slot) {
+            return accounts[slot];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No account with id " + id);
+        }
+    }
+
+    /*
+     * Flyweight IAccount over one row of the store
+     */
+    private final class View extends AbstractMinorUnitAccount {
+
+        private final int id;
+
+        View(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public long getBalanceMinor() {
+            return balances[id];
+        }
+
+        @Override
+        public long getMaxOverdrawnMinor() {
+            return limits[id];
+        }
+
+        @Override
+        public CurrencyCode getCurrencyCode() {
+            return CurrencyCode.ofOrdinal(currencies[id]);
+        }
+
+        @Override
+        protected void storeBalance(long balance) {
+            balances[id] = balance;
+            reindex(id);
+        }
+
+        @Override
+        protected void storeMaxOverdrawn(long max_overdrawn) {
+            limits[id] = max_overdrawn;
+            reindex(id);
+        }
+
+        @Override
+        protected void storeConversion(CurrencyCode currency, long balance, long max_overdrawn) {
+            currencies[id] = (byte) currency.ordinal();
+            balances[id] = balance;
+            limits[id] = max_overdrawn;
+            reindex(id);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof View && ((View) other).id == id && ((View) other).store() == AccountStore.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        private AccountStore store() {
+            return AccountStore.this;
+        }
+    }
+}
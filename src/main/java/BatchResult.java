@@ -0,0 +1,37 @@
+/*
+ * Per-operation outcome of a batch, stored compactly as one byte per operation.
+ */
+public final class BatchResult {
+
+    private final byte[] statuses;
+
+    BatchResult(byte[] statuses) {
+        this.statuses = statuses;
+    }
+
+    public int size() {
+        return statuses.length;
+    }
+
+    /*
+     * Outcome of the operation at the given index of the batch
+     */
+    public OperationStatus status(int index) {
+        return OperationStatus.ofOrdinal(statuses[index]);
+    }
+
+    public boolean allOk() {
+        return count(OperationStatus.OK) == statuses.length;
+    }
+
+    public int count(OperationStatus status) {
+        byte code = (byte) status.ordinal();
+        int count = 0;
+        for (byte s : statuses) {
+            if (s == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
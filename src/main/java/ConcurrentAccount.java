@@ -0,0 +1,279 @@
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Thread-safe, lock-free variant of Account.
+ *
+ * All mutable state (balance, currency and max_overdrawn) lives in one immutable
+ * State object that is swapped with compare-and-set. Every update therefore sees
+ * a consistent balance/limit pair, so the -max_overdrawn floor is enforced atomically
+ * even when setMaxOverdrawn races with withdrawals, and no deposit or withdrawal is
+ * lost when several threads update the same account.
+ */
+public class ConcurrentAccount implements IAccount {
+
+    /**
+     * Immutable snapshot of the account, replaced as a whole on every update
+     */
+    private static final class State {
+        final BigDecimal balance;
+        final CurrencyCode currency;
+        final BigDecimal max_overdrawn;
+        /**
+         * Lowest allowed balance (-max_overdrawn), computed once per limit change
+         * instead of on every withdrawal
+         */
+        final BigDecimal floor;
+
+        State(BigDecimal balance, CurrencyCode currency, BigDecimal max_overdrawn) {
+            this.balance = balance;
+            this.currency = currency;
+            this.max_overdrawn = max_overdrawn;
+            this.floor = max_overdrawn.negate();
+        }
+
+        private State(BigDecimal balance, State previous) {
+            this.balance = balance;
+            this.currency = previous.currency;
+            this.max_overdrawn = previous.max_overdrawn;
+            this.floor = previous.floor;
+        }
+
+        State withBalance(BigDecimal newBalance) {
+            return new State(newBalance, this);
+        }
+    }
+
+    private final AtomicReference<State> state;
+
+    public ConcurrentAccount() {
+        this(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+    }
+
+    public ConcurrentAccount(BigDecimal starting_balance, String currency, BigDecimal max_overdrawn) {
+        this.state = new AtomicReference<>(new State(starting_balance, CurrencyCode.of(currency), nonNegative(max_overdrawn)));
+    }
+
+    private static BigDecimal nonNegative(BigDecimal max_overdrawn) {
+        return max_overdrawn.compareTo(BigDecimal.ZERO) <= 0 ? BigDecimal.ZERO : max_overdrawn;
+    }
+
+    @Override
+    public BigDecimal getBalance() {
+        return state.get().balance;
+    }
+
+    @Override
+    public String getCurrency() {
+        return state.get().currency.name();
+    }
+
+    @Override
+    public CurrencyCode getCurrencyCode() {
+        return state.get().currency;
+    }
+
+    @Override
+    public BigDecimal getMaxOverdrawn() {
+        return state.get().max_overdrawn;
+    }
+
+    public void setMaxOverdrawn(BigDecimal max_overdrawn) {
+        BigDecimal limit = nonNegative(max_overdrawn);
+        State current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, new State(current.balance, current.currency, limit)));
+    }
+
+    public void setCurrency(String currency) {
+        CurrencyCode code = CurrencyCode.of(currency);
+        State current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, new State(current.balance, code, current.max_overdrawn)));
+    }
+
+    public void setBalance(BigDecimal balance) {
+        State current;
+        do {
+            current = state.get();
+            // Allow only if balance >= -max_overdrawn, else do nothing
+            if (balance.compareTo(current.floor) < 0) {
+                return;
+            }
+        } while (!state.compareAndSet(current, current.withBalance(balance)));
+    }
+
+    @Override
+    public BigDecimal withdraw(BigDecimal requestedAmount) {
+        State current;
+        BigDecimal newBalance;
+        do {
+            current = state.get();
+            newBalance = current.balance.subtract(requestedAmount);
+            // Withdrawal rejected, balance unchanged
+            if (newBalance.compareTo(current.floor) < 0) {
+                return current.balance;
+            }
+        } while (!state.compareAndSet(current, current.withBalance(newBalance)));
+        return newBalance;
+    }
+
+    @Override
+    public OperationStatus tryWithdraw(BigDecimal requestedAmount) {
+        State current;
+        BigDecimal newBalance;
+        do {
+            current = state.get();
+            newBalance = current.balance.subtract(requestedAmount);
+            if (newBalance.compareTo(current.floor) < 0) {
+                return OperationStatus.INSUFFICIENT_FUNDS;
+            }
+        } while (!state.compareAndSet(current, current.withBalance(newBalance)));
+        return OperationStatus.OK;
+    }
+
+    @Override
+    public BigDecimal deposit(BigDecimal amount_to_deposit) {
+        // Prevent negative deposits
+        if (amount_to_deposit.compareTo(BigDecimal.ZERO) < 0) {
+            return getBalance();
+        }
+        State current;
+        BigDecimal newBalance;
+        do {
+            current = state.get();
+            newBalance = current.balance.add(amount_to_deposit);
+        } while (!state.compareAndSet(current, current.withBalance(newBalance)));
+        return newBalance;
+    }
+
+    @Override
+    public void convertToCurrency(String currencyCode, double rate) {
+        if (rate <= 0) {
+            return; // invalid rate
+        }
+        CurrencyCode code = CurrencyCode.of(currencyCode);
+        BigDecimal factor = BigDecimal.valueOf(rate);
+        State current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current,
+                new State(current.balance.multiply(factor), code, current.max_overdrawn)));
+    }
+
+    /*
+     * Converts the balance into another currency using the cached rate from the given
+     * table, rounded to the minor unit of the new currency, as Account does. The rate is
+     * looked up again if another update wins the compare-and-set, since the currency
+     * being converted from may have changed.
+     */
+    public void convertToCurrency(String currencyCode, ExchangeRates rates) {
+        CurrencyCode target = CurrencyCode.of(currencyCode);
+        State current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current,
+                new State(rates.convert(current.balance, current.currency, target), target, current.max_overdrawn)));
+    }
+
+    /*
+     * Transfers all available funds from this account to another account.
+     *
+     * The sender is emptied with a single compare-and-set, so two concurrent transfers
+     * (or a transfer racing with withdrawals) can never move the same money twice.
+     * The funds are then deposited into the target, which must hold the same currency.
+     * If the target throws, the funds are refunded, see credit.
+     */
+    @Override
+    public void TransferToAccount(IAccount to_account) {
+        tryTransferToAccount(to_account);
+    }
+
+    @Override
+    public OperationStatus tryTransferToAccount(IAccount to_account) {
+        CurrencyCode targetCurrency = to_account.getCurrencyCode();
+        State current;
+        State emptied;
+        do {
+            current = state.get();
+            // Only transfer if both accounts use the same currency,
+            // and do not allow transfer from empty or negative balance accounts
+            if (current.currency != targetCurrency) {
+                return OperationStatus.CURRENCY_MISMATCH;
+            }
+            if (current.balance.compareTo(BigDecimal.ZERO) <= 0 || to_account == this) {
+                return OperationStatus.INSUFFICIENT_FUNDS;
+            }
+            emptied = current.withBalance(BigDecimal.ZERO);
+        } while (!state.compareAndSet(current, emptied));
+        return credit(to_account, current.balance, current, emptied);
+    }
+
+    /*
+     * Moves the given amount to another account, see IAccount.transfer.
+     *
+     * The amount is debited with a single compare-and-set and then deposited into the
+     * target. If the target throws, the debit is refunded, see credit.
+     */
+    @Override
+    public OperationStatus transfer(IAccount to_account, BigDecimal amount) {
+        if (amount.signum() <= 0) {
+            return OperationStatus.INVALID_AMOUNT;
+        }
+        if (to_account == this) {
+            return OperationStatus.OK;
+        }
+        CurrencyCode targetCurrency = to_account.getCurrencyCode();
+        State current;
+        State debited;
+        do {
+            current = state.get();
+            if (current.currency != targetCurrency) {
+                return OperationStatus.CURRENCY_MISMATCH;
+            }
+            BigDecimal newBalance = current.balance.subtract(amount);
+            if (newBalance.compareTo(current.floor) < 0) {
+                return OperationStatus.INSUFFICIENT_FUNDS;
+            }
+            debited = current.withBalance(newBalance);
+        } while (!state.compareAndSet(current, debited));
+        return credit(to_account, amount, current, debited);
+    }
+
+    /*
+     * Deposits an amount into the target after the compare-and-set from before to debited
+     * has taken it from this account. If the target throws, the amount is refunded: the
+     * old state is restored exactly if nothing happened in between, otherwise the amount
+     * is deposited back. INVALID_AMOUNT is returned if the target could not hold the
+     * amount (ArithmeticException), anything else it threw is rethrown.
+     */
+    private OperationStatus credit(IAccount to_account, BigDecimal amount, State before, State debited) {
+        try {
+            to_account.deposit(amount);
+            return OperationStatus.OK;
+        } catch (RuntimeException e) {
+            if (!state.compareAndSet(debited, before)) {
+                deposit(amount);
+            }
+            if (e instanceof ArithmeticException) {
+                return OperationStatus.INVALID_AMOUNT; // e.g. more decimals than its minor unit
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public BigDecimal withdrawAll() {
+        State current;
+        do {
+            current = state.get();
+            // If balance is zero or negative, no withdrawal possible
+            if (current.balance.compareTo(BigDecimal.ZERO) <= 0) {
+                return BigDecimal.ZERO;
+            }
+        } while (!state.compareAndSet(current, current.withBalance(BigDecimal.ZERO)));
+        return current.balance;
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Registry of the currencies accounts can hold, with the number of decimals of each
+ * currency's minor unit (ISO 4217).
+ *
+ * Accounts keep a CurrencyCode instead of a free-form String, so checking that two
+ * accounts hold the same currency is a single reference comparison, and an unknown code
+ * is rejected with IllegalArgumentException as soon as it enters the system.
+ *
+ * The ordinal is used as a compact currency id (for example the byte column in
+ * AccountStore), so new currencies must be added at the end.
+ */
+public enum CurrencyCode {
+    SEK(2),
+    EUR(2),
+    USD(2),
+    GBP(2),
+    NOK(2),
+    DKK(2),
+    CHF(2),
+    JPY(0),
+    CNY(2),
+    KWD(3);
+
+    private static final CurrencyCode[] VALUES = values();
+    private static final Map<String, CurrencyCode> BY_CODE = new HashMap<>();
+
+    static {
+        for (CurrencyCode currency : VALUES) {
+            BY_CODE.put(currency.name(), currency);
+        }
+    }
+
+    /**
+     * Number of decimals of the minor unit, 2 for SEK (öre)
+     */
+    private final int scale;
+
+    CurrencyCode(int scale) {
+        this.scale = scale;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    /*
+     * Looks up an ISO currency code such as "SEK".
+     * Throws IllegalArgumentException for codes that are not in the registry.
+     */
+    public static CurrencyCode of(String code) {
+        CurrencyCode currency = code == null ? null : BY_CODE.get(code);
+        if (currency == null) {
+            throw new IllegalArgumentException("Unsupported currency code: " + code);
+        }
+        return currency;
+    }
+
+    /*
+     * Inverse of ordinal(), for currency ids stored in compact form
+     */
+    public static CurrencyCode ofOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown currency id: " + ordinal);
+        }
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,410 @@
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Account that keeps every accepted change as an immutable AccountEvent, so its balance
+ * can be asked for at any past point in time ("what was the balance at 14:00?").
+ *
+ * The rules are those of Account; rejected operations leave no event. The current state
+ * is kept up to date as well, so ordinary operations never replay anything.
+ *
+ * Historical queries binary-search the event timestamps for the last event at or before
+ * the requested time, then start from the nearest snapshot before it and replay only the
+ * events in between. A snapshot of the state is taken after every snapshotInterval events,
+ * so a query replays fewer than snapshotInterval events however long the history is.
+ * Timestamps come from the given Clock and never go backwards within one account.
+ */
+public class EventSourcedAccount implements IAccount {
+
+    private static final int DEFAULT_SNAPSHOT_INTERVAL = 64;
+
+    private final Clock clock;
+    private final int snapshotInterval;
+
+    private BigDecimal balance;
+    private CurrencyCode currency;
+    private BigDecimal max_overdrawn;
+
+    private final List<AccountEvent> events = new ArrayList<>();
+    /**
+     * Timestamp of every event, in a primitive array so the binary search does not
+     * touch the event objects
+     */
+    private long[] timestamps = new long[16];
+    /**
+     * Element k is the state after the first (k + 1) * snapshotInterval events
+     */
+    private final List<State> snapshots = new ArrayList<>();
+
+    public EventSourcedAccount() {
+        this(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+    }
+
+    public EventSourcedAccount(BigDecimal starting_balance, String currency, BigDecimal max_overdrawn) {
+        this(starting_balance, currency, max_overdrawn, Clock.systemUTC(), DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    public EventSourcedAccount(BigDecimal starting_balance, String currency, BigDecimal max_overdrawn,
+                               Clock clock, int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("snapshotInterval must be positive");
+        }
+        this.clock = clock;
+        this.snapshotInterval = snapshotInterval;
+        this.balance = starting_balance;
+        this.currency = CurrencyCode.of(currency);
+        this.max_overdrawn = nonNegative(max_overdrawn);
+        append(AccountEvent.opened(clock.millis(), this.balance, this.currency, this.max_overdrawn));
+    }
+
+    private static BigDecimal nonNegative(BigDecimal max_overdrawn) {
+        return max_overdrawn.compareTo(BigDecimal.ZERO) <= 0 ? BigDecimal.ZERO : max_overdrawn;
+    }
+
+    @Override
+    public synchronized BigDecimal getBalance() {
+        return balance;
+    }
+
+    @Override
+    public synchronized String getCurrency() {
+        return currency.name();
+    }
+
+    @Override
+    public synchronized CurrencyCode getCurrencyCode() {
+        return currency;
+    }
+
+    @Override
+    public synchronized BigDecimal getMaxOverdrawn() {
+        return max_overdrawn;
+    }
+
+    public synchronized void setMaxOverdrawn(BigDecimal max_overdrawn) {
+        this.max_overdrawn = nonNegative(max_overdrawn);
+        append(AccountEvent.maxOverdrawnChanged(now(), this.max_overdrawn));
+    }
+
+    @Override
+    public synchronized BigDecimal withdraw(BigDecimal requested_amount) {
+        tryWithdraw(requested_amount);
+        return balance;
+    }
+
+    @Override
+    public synchronized OperationStatus tryWithdraw(BigDecimal requested_amount) {
+        BigDecimal newBalance = balance.subtract(requested_amount);
+        if (newBalance.compareTo(max_overdrawn.negate()) < 0) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        balance = newBalance;
+        append(AccountEvent.of(AccountEvent.Type.WITHDRAWN, now(), requested_amount));
+        return OperationStatus.OK;
+    }
+
+    @Override
+    public synchronized BigDecimal withdrawAll() {
+        if (balance.compareTo(BigDecimal.ZERO) <= 0) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal withdrawn = balance;
+        balance = BigDecimal.ZERO;
+        append(AccountEvent.of(AccountEvent.Type.WITHDRAWN, now(), withdrawn));
+        return withdrawn;
+    }
+
+    @Override
+    public synchronized BigDecimal deposit(BigDecimal amount_to_deposit) {
+        if (amount_to_deposit.compareTo(BigDecimal.ZERO) < 0) {
+            return balance; // ignore negative deposits
+        }
+        balance = balance.add(amount_to_deposit);
+        append(AccountEvent.of(AccountEvent.Type.DEPOSITED, now(), amount_to_deposit));
+        return balance;
+    }
+
+    @Override
+    public synchronized void convertToCurrency(String currency_code, double rate) {
+        if (rate <= 0) {
+            return; // invalid rate
+        }
+        CurrencyCode target = CurrencyCode.of(currency_code);
+        BigDecimal factor = BigDecimal.valueOf(rate);
+        balance = balance.multiply(factor);
+        currency = target;
+        append(AccountEvent.converted(now(), target, factor));
+    }
+
+    /*
+     * Transfers all available funds, with the rules of Account.TransferToAccount.
+     * Works towards any IAccount; an EventSourcedAccount target records TRANSFERRED_IN.
+     * As in Account, only a transfer between two EventSourcedAccounts locks both; towards
+     * anything else this account is emptied first and the target credited afterwards.
+     */
+    @Override
+    public void TransferToAccount(final IAccount to_account) {
+        tryTransferToAccount(to_account);
+    }
+
+    @Override
+    public OperationStatus tryTransferToAccount(final IAccount to_account) {
+        if (to_account == this) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        if (to_account instanceof EventSourcedAccount) {
+            final EventSourcedAccount target = (EventSourcedAccount) to_account;
+            return TransferEngine.lockInOrder(this, target, () -> {
+                OperationStatus status = checkAll(target.currency);
+                if (status == OperationStatus.OK) {
+                    BigDecimal moved = balance;
+                    target.receive(moved);
+                    debit(moved);
+                }
+                return status;
+            });
+        }
+        BigDecimal moved;
+        CurrencyCode targetCurrency = to_account.getCurrencyCode();
+        synchronized (this) {
+            OperationStatus status = checkAll(targetCurrency);
+            if (status != OperationStatus.OK) {
+                return status;
+            }
+            moved = balance;
+            debit(moved);
+        }
+        return credit(to_account, moved) ? OperationStatus.OK : OperationStatus.INVALID_AMOUNT;
+    }
+
+    /*
+     * Whether this account can send its whole balance to an account holding the given
+     * currency, called while holding this account's lock
+     */
+    private OperationStatus checkAll(CurrencyCode targetCurrency) {
+        if (currency != targetCurrency) {
+            return OperationStatus.CURRENCY_MISMATCH;
+        }
+        if (balance.compareTo(BigDecimal.ZERO) <= 0) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        return OperationStatus.OK;
+    }
+
+    /*
+     * Moves the given amount to another account, see IAccount.transfer
+     */
+    @Override
+    public OperationStatus transfer(final IAccount to_account, final BigDecimal amount) {
+        if (amount.signum() <= 0) {
+            return OperationStatus.INVALID_AMOUNT;
+        }
+        if (to_account == this) {
+            return OperationStatus.OK;
+        }
+        if (to_account instanceof EventSourcedAccount) {
+            final EventSourcedAccount target = (EventSourcedAccount) to_account;
+            return TransferEngine.lockInOrder(this, target, () -> {
+                OperationStatus status = check(target.currency, amount);
+                if (status == OperationStatus.OK) {
+                    target.receive(amount);
+                    debit(amount);
+                }
+                return status;
+            });
+        }
+        CurrencyCode targetCurrency = to_account.getCurrencyCode();
+        synchronized (this) {
+            OperationStatus status = check(targetCurrency, amount);
+            if (status != OperationStatus.OK) {
+                return status;
+            }
+            debit(amount);
+        }
+        return credit(to_account, amount) ? OperationStatus.OK : OperationStatus.INVALID_AMOUNT;
+    }
+
+    private OperationStatus check(CurrencyCode targetCurrency, BigDecimal amount) {
+        if (currency != targetCurrency) {
+            return OperationStatus.CURRENCY_MISMATCH;
+        }
+        if (balance.subtract(amount).compareTo(max_overdrawn.negate()) < 0) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        return OperationStatus.OK;
+    }
+
+    /*
+     * Called while holding this account's lock
+     */
+    private void debit(BigDecimal amount) {
+        balance = balance.subtract(amount);
+        append(AccountEvent.of(AccountEvent.Type.TRANSFERRED_OUT, now(), amount));
+    }
+
+    /*
+     * Deposits an amount already debited from this account into a target of another
+     * type. If the target does not take it, it is refunded; false is returned if the
+     * target could not hold it, anything else it threw is rethrown.
+     */
+    private boolean credit(IAccount to_account, BigDecimal amount) {
+        try {
+            to_account.deposit(amount);
+            return true;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                receive(amount);
+            }
+            if (e instanceof ArithmeticException) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private void receive(BigDecimal amount) {
+        balance = balance.add(amount);
+        append(AccountEvent.of(AccountEvent.Type.TRANSFERRED_IN, now(), amount));
+    }
+
+    /*
+     * Balance as it was at the given time.
+     * Throws IllegalArgumentException if the account did not exist yet.
+     */
+    public BigDecimal balanceAt(Instant time) {
+        return stateAt(time).getBalance();
+    }
+
+    /*
+     * Balance, currency and max_overdrawn as they were at the given time.
+     * Throws IllegalArgumentException if the account did not exist yet.
+     */
+    public synchronized State stateAt(Instant time) {
+        int count = eventsAtOrBefore(time.toEpochMilli());
+        if (count == 0) {
+            throw new IllegalArgumentException("Account did not exist at " + time);
+        }
+        int snapshot = count / snapshotInterval;
+        if (snapshot == 0) {
+            return replay(null, 0, count);
+        }
+        return replay(snapshots.get(snapshot - 1), snapshot * snapshotInterval, count);
+    }
+
+    /*
+     * Number of events with a timestamp at or before the given time
+     */
+    private int eventsAtOrBefore(long time) {
+        int low = 0;
+        int high = events.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Applies events [from, to) to the given state; a null state means before OPENED
+     */
+    private State replay(State start, int from, int to) {
+        BigDecimal replayedBalance = start == null ? null : start.balance;
+        CurrencyCode replayedCurrency = start == null ? null : start.currency;
+        BigDecimal replayedLimit = start == null ? null : start.max_overdrawn;
+        for (int i = from; i < to; i++) {
+            AccountEvent event = events.get(i);
+            switch (event.getType()) {
+                case OPENED:
+                    replayedBalance = event.getAmount();
+                    replayedCurrency = event.getCurrency();
+                    replayedLimit = event.getValue();
+                    break;
+                case DEPOSITED:
+                case TRANSFERRED_IN:
+                    replayedBalance = replayedBalance.add(event.getAmount());
+                    break;
+                case WITHDRAWN:
+                case TRANSFERRED_OUT:
+                    replayedBalance = replayedBalance.subtract(event.getAmount());
+                    break;
+                case CONVERTED:
+                    replayedBalance = replayedBalance.multiply(event.getValue());
+                    replayedCurrency = event.getCurrency();
+                    break;
+                case MAX_OVERDRAWN_CHANGED:
+                    replayedLimit = event.getValue();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event type " + event.getType());
+            }
+        }
+        return new State(replayedBalance, replayedCurrency, replayedLimit);
+    }
+
+    /*
+     * Copy of the event history, oldest first
+     */
+    public synchronized List<AccountEvent> getEvents() {
+        return Collections.unmodifiableList(new ArrayList<>(events));
+    }
+
+    public synchronized int snapshotCount() {
+        return snapshots.size();
+    }
+
+    private long now() {
+        return Math.max(clock.millis(), timestamps[events.size() - 1]);
+    }
+
+    /*
+     * Records an event whose effect has already been applied to the current state
+     */
+    private void append(AccountEvent event) {
+        int index = events.size();
+        if (index == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, index * 2);
+        }
+        timestamps[index] = event.getTimestamp();
+        events.add(event);
+        if (events.size() % snapshotInterval == 0) {
+            snapshots.add(new State(balance, currency, max_overdrawn));
+        }
+    }
+
+    /*
+     * Immutable account state at one point in time
+     */
+    public static final class State {
+
+        private final BigDecimal balance;
+        private final CurrencyCode currency;
+        private final BigDecimal max_overdrawn;
+
+        State(BigDecimal balance, CurrencyCode currency, BigDecimal max_overdrawn) {
+            this.balance = balance;
+            this.currency = currency;
+            this.max_overdrawn = max_overdrawn;
+        }
+
+        public BigDecimal getBalance() {
+            return balance;
+        }
+
+        public CurrencyCode getCurrency() {
+            return currency;
+        }
+
+        public BigDecimal getMaxOverdrawn() {
+            return max_overdrawn;
+        }
+    }
+}
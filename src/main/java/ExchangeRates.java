@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Cache of BigDecimal exchange rates, refreshed from a RateSource.
+ *
+ * Rates are kept in a from-currency x to-currency table indexed by CurrencyCode ordinal,
+ * so looking up a pair neither hashes nor allocates. Pairs the source does not quote are
+ * derived on first use and then memoized in the same table: the inverse of a quoted rate
+ * (SEK->EUR from EUR->SEK), or a cross rate through the pivot currency
+ * (SEK->USD = SEK->EUR * EUR->USD). Quoted rates are kept exactly as the source gives
+ * them; derived rates are rounded to DECIMAL128 (34 significant digits). Quotes for codes
+ * that are not in CurrencyCode are ignored, since no account can hold those currencies.
+ *
+ * The table is reloaded from the source once it is older than the time-to-live. Reloads
+ * replace the whole table at once, so derived rates never mix old and new quotes. If a
+ * reload fails, the previous rates keep being served and the reload is retried after
+ * another time-to-live.
+ */
+public class ExchangeRates {
+
+    /**
+     * Precision of derived rates, both inverse and cross rates; quoted rates are kept exact
+     */
+    private static final MathContext RATE_CONTEXT = MathContext.DECIMAL128;
+
+    private static final int CURRENCIES = CurrencyCode.values().length;
+
+    private final RateSource source;
+    private final CurrencyCode pivot;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    private volatile Table table;
+
+    public ExchangeRates(RateSource source, String pivot, long ttlMillis) throws IOException {
+        this(source, pivot, ttlMillis, Clock.systemUTC());
+    }
+
+    public ExchangeRates(RateSource source, String pivot, long ttlMillis, Clock clock) throws IOException {
+        this.source = source;
+        this.pivot = CurrencyCode.of(pivot);
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.table = new Table(source.loadRates(), clock.millis());
+    }
+
+    /*
+     * Value of 1 unit of the from-currency in the to-currency.
+     * Throws IllegalArgumentException if a code is unknown or the rate can not be quoted
+     * or derived.
+     */
+    public BigDecimal rate(String from, String to) {
+        return rate(CurrencyCode.of(from), CurrencyCode.of(to));
+    }
+
+    public BigDecimal rate(CurrencyCode from, CurrencyCode to) {
+        if (from == to) {
+            return BigDecimal.ONE;
+        }
+        Table current = currentTable();
+        BigDecimal rate = current.lookup(from, to);
+        if (rate == null) {
+            rate = current.derive(from, to, pivot);
+        }
+        return rate;
+    }
+
+    /*
+     * Converts an amount between currencies, rounded half-even to the minor unit
+     * of the to-currency
+     */
+    public BigDecimal convert(BigDecimal amount, String from, String to) {
+        return convert(amount, CurrencyCode.of(from), CurrencyCode.of(to));
+    }
+
+    public BigDecimal convert(BigDecimal amount, CurrencyCode from, CurrencyCode to) {
+        return amount.multiply(rate(from, to)).setScale(to.scale(), RoundingMode.HALF_EVEN);
+    }
+
+    /*
+     * Reloads the rates from the source now, regardless of their age
+     */
+    public void refresh() throws IOException {
+        table = new Table(source.loadRates(), clock.millis());
+    }
+
+    private Table currentTable() {
+        Table current = table;
+        if (clock.millis() - current.loadedAt < ttlMillis) {
+            return current;
+        }
+        synchronized (this) {
+            current = table;
+            long now = clock.millis();
+            if (now - current.loadedAt >= ttlMillis) {
+                try {
+                    current = new Table(source.loadRates(), now);
+                } catch (IOException | RuntimeException e) {
+                    current = current.retainedUntil(now); // keep serving the old rates
+                }
+                table = current;
+            }
+        }
+        return current;
+    }
+
+    /*
+     * One generation of rates: the quotes from the source plus everything derived from
+     * them, the rate from a to b at a.ordinal() * CURRENCIES + b.ordinal()
+     */
+    private static final class Table {
+
+        private final AtomicReferenceArray<BigDecimal> rates;
+        private final long loadedAt;
+
+        Table(Map<String, Map<String, BigDecimal>> quotes, long loadedAt) {
+            this.rates = new AtomicReferenceArray<>(CURRENCIES * CURRENCIES);
+            for (Map.Entry<String, Map<String, BigDecimal>> from : quotes.entrySet()) {
+                CurrencyCode fromCode = known(from.getKey());
+                if (fromCode == null) {
+                    continue;
+                }
+                for (Map.Entry<String, BigDecimal> to : from.getValue().entrySet()) {
+                    CurrencyCode toCode = known(to.getKey());
+                    if (toCode != null) {
+                        rates.set(index(fromCode, toCode), to.getValue());
+                    }
+                }
+            }
+            this.loadedAt = loadedAt;
+        }
+
+        private Table(Table previous, long loadedAt) {
+            this.rates = previous.rates;
+            this.loadedAt = loadedAt;
+        }
+
+        private static CurrencyCode known(String code) {
+            try {
+                return CurrencyCode.of(code);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static int index(CurrencyCode from, CurrencyCode to) {
+            return from.ordinal() * CURRENCIES + to.ordinal();
+        }
+
+        Table retainedUntil(long now) {
+            return new Table(this, now);
+        }
+
+        BigDecimal lookup(CurrencyCode from, CurrencyCode to) {
+            return rates.get(index(from, to));
+        }
+
+        BigDecimal derive(CurrencyCode from, CurrencyCode to, CurrencyCode pivot) {
+            BigDecimal rate = quotedOrInverse(from, to);
+            if (rate == null && from != pivot && to != pivot) {
+                BigDecimal toPivot = quotedOrInverse(from, pivot);
+                BigDecimal fromPivot = quotedOrInverse(pivot, to);
+                if (toPivot != null && fromPivot != null) {
+                    rate = toPivot.multiply(fromPivot, RATE_CONTEXT);
+                }
+            }
+            if (rate == null) {
+                throw new IllegalArgumentException("No exchange rate for " + from + "/" + to);
+            }
+            // Keep the first memoized value, so every caller sees the same instance
+            rates.compareAndSet(index(from, to), null, rate);
+            return rates.get(index(from, to));
+        }
+
+        private BigDecimal quotedOrInverse(CurrencyCode from, CurrencyCode to) {
+            BigDecimal rate = lookup(from, to);
+            if (rate == null) {
+                BigDecimal inverse = lookup(to, from);
+                if (inverse != null) {
+                    rate = BigDecimal.ONE.divide(inverse, RATE_CONTEXT);
+                }
+            }
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/*
+ * Reads exchange rates from a local properties file with one quote per line, e.g.
+ *
+ *   EUR/SEK=11.4705
+ *   EUR/USD=1.0832
+ *
+ * meaning 1 EUR = 11.4705 SEK. Rates are parsed straight into BigDecimal, so they are
+ * exactly what the file says.
+ */
+public class FileRateSource implements RateSource {
+
+    private final Path file;
+
+    public FileRateSource(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public Map<String, Map<String, BigDecimal>> loadRates() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, Map<String, BigDecimal>> rates = new HashMap<>();
+        for (String pair : properties.stringPropertyNames()) {
+            int slash = pair.indexOf('/');
+            if (slash <= 0 || slash == pair.length() - 1) {
+                throw new IOException("Invalid currency pair '" + pair + "' in " + file);
+            }
+            BigDecimal rate;
+            try {
+                rate = new BigDecimal(properties.getProperty(pair).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid rate for " + pair + " in " + file, e);
+            }
+            if (rate.signum() <= 0) {
+                throw new IOException("Rate for " + pair + " must be positive in " + file);
+            }
+            String from = pair.substring(0, slash).trim();
+            String to = pair.substring(slash + 1).trim();
+            rates.computeIfAbsent(from, currency -> new HashMap<>()).put(to, rate);
+        }
+        return rates;
+    }
+}
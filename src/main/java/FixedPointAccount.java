@@ -0,0 +1,66 @@
+import java.math.BigDecimal;
+
+/*
+ * Account that stores its balance and max_overdrawn as scaled long minor units
+ * (öre, cents, ...) in its own fields instead of BigDecimal.
+ *
+ * See AbstractMinorUnitAccount for the withdraw/deposit rules and overflow handling.
+ */
+public class FixedPointAccount extends AbstractMinorUnitAccount {
+
+    /**
+     * Current balance in minor units of the currency
+     */
+    private long balance;
+    /**
+     * Currency used in this account, e.g. SEK, EUR or USD
+     */
+    private CurrencyCode currency;
+    /**
+     * Non-negative number of minor units the account can be "in the red"
+     */
+    private long max_overdrawn;
+
+    public FixedPointAccount() {
+        this(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+    }
+
+    public FixedPointAccount(BigDecimal starting_balance, String currency, BigDecimal max_overdrawn) {
+        this.currency = CurrencyCode.of(currency);
+        int scale = this.currency.scale();
+        this.balance = MinorUnits.toMinor(starting_balance, scale);
+        this.max_overdrawn = Math.max(0L, MinorUnits.toMinor(max_overdrawn, scale));
+    }
+
+    @Override
+    public long getBalanceMinor() {
+        return balance;
+    }
+
+    @Override
+    public long getMaxOverdrawnMinor() {
+        return max_overdrawn;
+    }
+
+    @Override
+    public CurrencyCode getCurrencyCode() {
+        return currency;
+    }
+
+    @Override
+    protected void storeBalance(long balance) {
+        this.balance = balance;
+    }
+
+    @Override
+    protected void storeMaxOverdrawn(long max_overdrawn) {
+        this.max_overdrawn = max_overdrawn;
+    }
+
+    @Override
+    protected void storeConversion(CurrencyCode currency, long balance, long max_overdrawn) {
+        this.currency = currency;
+        this.balance = balance;
+        this.max_overdrawn = max_overdrawn;
+    }
+}
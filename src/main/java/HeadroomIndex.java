@@ -0,0 +1,187 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/*
+ * Index of the accounts in an AccountStore by how close they are to their overdraft floor,
+ * for risk queries that would otherwise scan every account.
+ *
+ * The headroom of an account is balance + max_overdrawn: how much more can be withdrawn
+ * before a withdrawal is rejected. Amounts in different currencies can not be compared,
+ * so every currency has its own pair of sorted sets, one by headroom and one by balance.
+ * The store updates the index after each change, so an update and the start of a query
+ * both take O(log n); a range query then costs O(log n + number of accounts returned).
+ *
+ * Obtained from AccountStore.headroomIndex() and, like the store, not thread-safe.
+ */
+public final class HeadroomIndex {
+
+    private static final Comparator<Entry> BY_HEADROOM = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            int order = Long.compare(a.headroom, b.headroom);
+            return order != 0 ? order : Integer.compare(a.id, b.id);
+        }
+    };
+
+    private static final Comparator<Entry> BY_BALANCE = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            int order = Long.compare(a.balance, b.balance);
+            return order != 0 ? order : Integer.compare(a.id, b.id);
+        }
+    };
+
+    private final Sets[] byCurrency = new Sets[CurrencyCode.values().length];
+    /**
+     * Current entry of every account, indexed by id
+     */
+    private Entry[] entries;
+
+    HeadroomIndex(int capacity) {
+        for (int i = 0; i < byCurrency.length; i++) {
+            byCurrency[i] = new Sets();
+        }
+        this.entries = new Entry[Math.max(1, capacity)];
+    }
+
+    /*
+     * Records the current state of an account, moving it within or between the sets if
+     * anything the index sorts on has changed
+     */
+    void update(int id, byte currency, long balance, long max_overdrawn) {
+        if (id >= entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(id + 1, entries.length * 2));
+        }
+        long headroom = headroom(balance, max_overdrawn);
+        Entry old = entries[id];
+        if (old != null) {
+            if (old.currency == currency && old.balance == balance && old.headroom == headroom) {
+                return;
+            }
+            Sets sets = byCurrency[old.currency];
+            sets.byHeadroom.remove(old);
+            sets.byBalance.remove(old);
+        }
+        Entry entry = new Entry(id, currency, balance, headroom);
+        entries[id] = entry;
+        Sets sets = byCurrency[currency];
+        sets.byHeadroom.add(entry);
+        sets.byBalance.add(entry);
+    }
+
+    /*
+     * Ids of the accounts holding the currency whose headroom is at most max_headroom,
+     * closest to the floor first. A headroom of zero means the account is at its floor.
+     */
+    public int[] withinHeadroom(CurrencyCode currency, BigDecimal max_headroom) {
+        long max = toMinor(max_headroom, currency, RoundingMode.FLOOR);
+        return ids(byCurrency[currency.ordinal()].byHeadroom.headSet(upper(max), true));
+    }
+
+    /*
+     * Ids of the accounts holding the currency with low <= headroom <= high, lowest first
+     */
+    public int[] headroomBetween(CurrencyCode currency, BigDecimal low, BigDecimal high) {
+        long from = toMinor(low, currency, RoundingMode.CEILING);
+        long to = toMinor(high, currency, RoundingMode.FLOOR);
+        if (from > to) {
+            return new int[0];
+        }
+        return ids(byCurrency[currency.ordinal()].byHeadroom.subSet(lower(from), true, upper(to), true));
+    }
+
+    /*
+     * Ids of the k accounts holding the currency with the least headroom, closest first
+     */
+    public int[] closestToLimit(CurrencyCode currency, int k) {
+        NavigableSet<Entry> set = byCurrency[currency.ordinal()].byHeadroom;
+        int[] ids = new int[Math.max(0, Math.min(k, set.size()))];
+        Iterator<Entry> iterator = set.iterator();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = iterator.next().id;
+        }
+        return ids;
+    }
+
+    /*
+     * Ids of the accounts holding the currency with a negative balance, most negative first
+     */
+    public int[] overdrawn(CurrencyCode currency) {
+        return ids(byCurrency[currency.ordinal()].byBalance.headSet(lower(0), false));
+    }
+
+    /*
+     * Number of accounts holding the currency
+     */
+    public int size(CurrencyCode currency) {
+        return byCurrency[currency.ordinal()].byHeadroom.size();
+    }
+
+    /*
+     * balance + max_overdrawn, capped at Long.MAX_VALUE; max_overdrawn is never negative
+     */
+    static long headroom(long balance, long max_overdrawn) {
+        long headroom = balance + max_overdrawn;
+        return headroom < balance ? Long.MAX_VALUE : headroom;
+    }
+
+    private static long toMinor(BigDecimal amount, CurrencyCode currency, RoundingMode rounding) {
+        BigDecimal minor = amount.setScale(currency.scale(), rounding).movePointRight(currency.scale());
+        if (minor.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0) {
+            return Long.MAX_VALUE;
+        }
+        if (minor.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0) {
+            return Long.MIN_VALUE;
+        }
+        return minor.longValue();
+    }
+
+    /*
+     * Search keys sorting before or after every account with the given values
+     */
+    private static Entry lower(long headroomOrBalance) {
+        return new Entry(Integer.MIN_VALUE, (byte) 0, headroomOrBalance, headroomOrBalance);
+    }
+
+    private static Entry upper(long headroomOrBalance) {
+        return new Entry(Integer.MAX_VALUE, (byte) 0, headroomOrBalance, headroomOrBalance);
+    }
+
+    private static int[] ids(NavigableSet<Entry> entries) {
+        int[] ids = new int[entries.size()];
+        int i = 0;
+        for (Entry entry : entries) {
+            ids[i++] = entry.id;
+        }
+        return ids;
+    }
+
+    private static final class Sets {
+
+        final NavigableSet<Entry> byHeadroom = new TreeSet<>(BY_HEADROOM);
+        final NavigableSet<Entry> byBalance = new TreeSet<>(BY_BALANCE);
+    }
+
+    /*
+     * Immutable, so an entry never moves while it is in a set
+     */
+    private static final class Entry {
+
+        final int id;
+        final byte currency;
+        final long balance;
+        final long headroom;
+
+        Entry(int id, byte currency, long balance, long headroom) {
+            this.id = id;
+            this.currency = currency;
+            this.balance = balance;
+            this.headroom = headroom;
+        }
+    }
+}
@@ -10,6 +10,12 @@ public interface IAccount {
      * */
     public abstract BigDecimal withdraw(BigDecimal requested_amount);
 
+    /*
+     * Same as withdraw, but returns whether the withdrawal was performed instead of the
+     * balance: OK, or INSUFFICIENT_FUNDS if it would take the balance below -max_overdrawn.
+     * */
+    public abstract OperationStatus tryWithdraw(BigDecimal requested_amount);
+
     /*
      * Method that withdraws all the money from the account
      * */
@@ -34,4 +40,43 @@ public interface IAccount {
      * */
 
     public abstract void TransferToAccount(IAccount account);
+
+    /*
+     * Same as TransferToAccount, but returns whether anything was moved: OK, otherwise
+     * CURRENCY_MISMATCH if the accounts hold different currencies, INVALID_AMOUNT if the
+     * target can not hold the balance, and INSUFFICIENT_FUNDS for anything else.
+     * */
+    public abstract OperationStatus tryTransferToAccount(IAccount account);
+
+    /*
+     * Method that moves the given amount from this account to another account.
+     * The transfer is performed if and only if the amount is positive and representable
+     * in both accounts, both accounts hold the same currency, and this account's balance
+     * stays at or above -max_overdrawn. Otherwise neither balance changes.
+     *
+     * Returns OK, or the first of INVALID_AMOUNT, CURRENCY_MISMATCH and
+     * INSUFFICIENT_FUNDS that applies. Transferring to the account itself moves nothing.
+     * */
+    public abstract OperationStatus transfer(IAccount to_account, BigDecimal amount);
+
+    /*
+     * Returns the current balance of the account
+     * */
+    public abstract BigDecimal getBalance();
+
+    /*
+     * Returns the currency code the account holds, e.g. "SEK", "EUR" or "USD"
+     * */
+    public abstract String getCurrency();
+
+    /*
+     * Returns the currency the account holds as a registry entry, for cheap comparisons
+     * */
+    public abstract CurrencyCode getCurrencyCode();
+
+    /*
+     * Returns how much the account can be "in the red"
+     * The minimum balance of the account is -1 * max_overdrawn
+     * */
+    public abstract BigDecimal getMaxOverdrawn();
 }
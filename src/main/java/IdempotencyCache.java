@@ -0,0 +1,142 @@
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+ * Remembers the result of every operation run under an idempotency key, so that a retried
+ * request carrying the same key gets the original result instead of running again.
+ *
+ * Keys live in a ConcurrentHashMap, so a lookup is O(1) and threads handling different
+ * keys never block each other. When two requests with the same key race, one runs the
+ * operation and the other waits for its result. If the operation throws, the key is
+ * forgotten so that a retry runs it again.
+ *
+ * Memory is bounded: completed keys are also queued in completion order, and once there
+ * are more than maxKeys of them the oldest are evicted. A key is also forgotten ttlMillis
+ * after its operation completed; expired keys are dropped from the head of the same
+ * queue, which is in time order. A key whose operation is still running never expires,
+ * however long it takes, so a retry waits for it instead of running it a second time.
+ * Eviction is O(1) per key. Each entry costs roughly 150 bytes plus the key, so a few
+ * million keys fit in a few hundred megabytes.
+ */
+public final class IdempotencyCache {
+
+    private final ConcurrentHashMap<String, Entry> entries;
+    /**
+     * Completed entries, oldest first; only polled while holding its monitor
+     */
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int maxKeys;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    public IdempotencyCache(int maxKeys, long ttlMillis) {
+        this(maxKeys, ttlMillis, Clock.systemUTC());
+    }
+
+    public IdempotencyCache(int maxKeys, long ttlMillis, Clock clock) {
+        if (maxKeys < 1 || ttlMillis < 1) {
+            throw new IllegalArgumentException("maxKeys and ttlMillis must be positive");
+        }
+        this.entries = new ConcurrentHashMap<>(Math.min(maxKeys, 1 << 16));
+        this.maxKeys = maxKeys;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /*
+     * Runs the operation unless the key has been seen before, and returns its result.
+     *
+     * A replay returns the stored result of the first call; if that call is still running,
+     * it waits for it. request describes what the key was used for (compared with equals),
+     * and a replay with a different request throws IllegalArgumentException, since the
+     * caller reused a key for something else.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Object request, Supplier<T> operation) {
+        while (true) {
+            long now = clock.millis();
+            Entry existing = entries.get(key);
+            if (existing != null && existing.result.isDone() && now - existing.completedAt >= ttlMillis) {
+                entries.remove(key, existing);
+                existing = null;
+            }
+            if (existing == null) {
+                Entry entry = new Entry(key, request);
+                existing = entries.putIfAbsent(key, entry);
+                if (existing == null) {
+                    return (T) run(entry, operation);
+                }
+            }
+            if (!existing.request.equals(request)) {
+                throw new IllegalArgumentException("Idempotency key " + key + " was used for a different request");
+            }
+            try {
+                return (T) existing.result.join();
+            } catch (CompletionException e) {
+                // The first call failed and its key has been removed: try again
+            }
+        }
+    }
+
+    private Object run(Entry entry, Supplier<?> operation) {
+        Object value;
+        try {
+            value = operation.get();
+        } catch (RuntimeException | Error e) {
+            entries.remove(entry.key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        long now = clock.millis();
+        entry.completedAt = now; // published to other threads by complete
+        entry.result.complete(value);
+        order.add(entry);
+        queued.incrementAndGet();
+        evict(now);
+        return value;
+    }
+
+    /*
+     * Drops the oldest entries while there are too many, then any that have expired
+     */
+    private void evict(long now) {
+        synchronized (order) {
+            Entry head;
+            while ((head = order.peek()) != null
+                    && (queued.get() > maxKeys || now - head.completedAt >= ttlMillis)) {
+                order.poll();
+                queued.decrementAndGet();
+                entries.remove(head.key, head);
+            }
+        }
+    }
+
+    /*
+     * Number of keys currently remembered, including expired keys not yet evicted
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+
+        final String key;
+        final Object request;
+        /**
+         * When the operation returned, written before result is completed
+         */
+        long completedAt;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Entry(String key, Object request) {
+            this.key = key;
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import java.math.BigDecimal;
+
+/*
+ * IAccount decorator that accepts an idempotency key with withdraw, withdrawAll, deposit
+ * and transfer, so a request delivered twice is only applied once.
+ *
+ * The first call with a key runs on the wrapped account, and its result is kept in the
+ * IdempotencyCache. Any later call with the same key, while the cache still remembers it,
+ * returns that same result without touching the account again, even if the balance has
+ * changed since. Reusing a key for a different operation, amount or account throws
+ * IllegalArgumentException. One cache can be shared by many accounts, in which case the
+ * keys must be unique across all of them.
+ *
+ * The IAccount methods without a key are passed straight through.
+ */
+public class IdempotentAccount implements IAccount {
+
+    private final IAccount delegate;
+    private final IdempotencyCache cache;
+
+    public IdempotentAccount(IAccount delegate, IdempotencyCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    public IAccount getDelegate() {
+        return delegate;
+    }
+
+    /*
+     * withdraw(requested_amount), applied at most once per key
+     */
+    public BigDecimal withdraw(String key, final BigDecimal requested_amount) {
+        return cache.execute(key, new Request(delegate, "withdraw", requested_amount, null),
+                () -> delegate.withdraw(requested_amount));
+    }
+
+    /*
+     * withdrawAll(), applied at most once per key
+     */
+    public BigDecimal withdrawAll(String key) {
+        return cache.execute(key, new Request(delegate, "withdrawAll", null, null), delegate::withdrawAll);
+    }
+
+    /*
+     * deposit(amount_to_deposit), applied at most once per key
+     */
+    public BigDecimal deposit(String key, final BigDecimal amount_to_deposit) {
+        return cache.execute(key, new Request(delegate, "deposit", amount_to_deposit, null),
+                () -> delegate.deposit(amount_to_deposit));
+    }
+
+    /*
+     * transfer(to_account, amount), applied at most once per key
+     */
+    public OperationStatus transfer(String key, final IAccount to_account, final BigDecimal amount) {
+        return cache.execute(key, new Request(delegate, "transfer", amount, to_account),
+                () -> delegate.transfer(to_account, amount));
+    }
+
+    @Override
+    public BigDecimal withdraw(BigDecimal requested_amount) {
+        return delegate.withdraw(requested_amount);
+    }
+
+    @Override
+    public OperationStatus tryWithdraw(BigDecimal requested_amount) {
+        return delegate.tryWithdraw(requested_amount);
+    }
+
+    @Override
+    public BigDecimal withdrawAll() {
+        return delegate.withdrawAll();
+    }
+
+    @Override
+    public BigDecimal deposit(BigDecimal amount_to_deposit) {
+        return delegate.deposit(amount_to_deposit);
+    }
+
+    @Override
+    public void convertToCurrency(String currency_code, double rate) {
+        delegate.convertToCurrency(currency_code, rate);
+    }
+
+    @Override
+    public void TransferToAccount(IAccount account) {
+        delegate.TransferToAccount(account);
+    }
+
+    @Override
+    public OperationStatus tryTransferToAccount(IAccount account) {
+        return delegate.tryTransferToAccount(account);
+    }
+
+    @Override
+    public OperationStatus transfer(IAccount to_account, BigDecimal amount) {
+        return delegate.transfer(to_account, amount);
+    }
+
+    @Override
+    public BigDecimal getBalance() {
+        return delegate.getBalance();
+    }
+
+    @Override
+    public String getCurrency() {
+        return delegate.getCurrency();
+    }
+
+    @Override
+    public CurrencyCode getCurrencyCode() {
+        return delegate.getCurrencyCode();
+    }
+
+    @Override
+    public BigDecimal getMaxOverdrawn() {
+        return delegate.getMaxOverdrawn();
+    }
+
+    /*
+     * What a key was used for. Accounts are compared by identity and amounts by value,
+     * so 10 and 10.00 are the same request.
+     */
+    private static final class Request {
+
+        private final IAccount account;
+        private final String operation;
+        private final BigDecimal amount;
+        private final IAccount target;
+
+        Request(IAccount account, String operation, BigDecimal amount, IAccount target) {
+            this.account = account;
+            this.operation = operation;
+            this.amount = amount == null ? null : amount.stripTrailingZeros();
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Request)) {
+                return false;
+            }
+            Request request = (Request) other;
+            return account == request.account && target == request.target && operation.equals(request.operation)
+                    && (amount == null ? request.amount == null : amount.equals(request.amount));
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(account) * 31 + operation.hashCode();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/*
+ * Rebuilds account state by replaying a TransactionJournal file from the start.
+ *
+ * Entries are applied in file order through the normal IAccount methods, so rejected
+ * withdrawals, invalid rates and failed transfers are rejected again exactly as they were
+ * originally. An operation that threw when it was first applied (e.g. an overflow in a
+ * FixedPointAccount) throws again on replay and is skipped the same way, leaving the
+ * account unchanged. StatementGenerator applies entries through the same apply method.
+ * Replay stops at the first truncated entry or entry with a bad checksum, which is where
+ * a crash interrupted the last write.
+ *
+ * Usage: java JournalReplayer <journal file>
+ */
+public class JournalReplayer {
+
+    /*
+     * Creates the account an OPEN entry describes, e.g. Account::new
+     */
+    public interface AccountFactory {
+        IAccount create(BigDecimal balance, String currency, BigDecimal max_overdrawn);
+    }
+
+    private JournalReplayer() {
+    }
+
+    /*
+     * Receives the entries of a journal file in order; sequence numbers start at 1, as
+     * returned by the TransactionJournal append methods
+     */
+    interface EntryHandler {
+        void accept(long sequence, ByteBuffer entry) throws IOException;
+    }
+
+    public static Map<Long, IAccount> replay(Path journal, AccountFactory factory) throws IOException {
+        final Map<Long, IAccount> accounts = new LinkedHashMap<>();
+        final Applied applied = new Applied();
+        read(journal, (sequence, entry) -> apply(entry, accounts, factory, applied));
+        return accounts;
+    }
+
+    /*
+     * Streams the valid entries of a journal file to the handler, stopping at the first
+     * truncated or corrupt one, and returns the length in bytes of those valid entries.
+     * The buffer passed to the handler is reused for the next entry, so it must not be kept.
+     */
+    static long read(Path journal, EntryHandler handler) throws IOException {
+        CRC32 crc = new CRC32();
+        long sequence = 0;
+        long valid = 0;
+        try (InputStream file = Files.newInputStream(journal);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 64 * 1024))) {
+            byte[] payload = new byte[256];
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    if (length <= 0) {
+                        break; // zero-filled or corrupt tail
+                    }
+                    if (length > payload.length) {
+                        payload = new byte[length];
+                    }
+                    in.readFully(payload, 0, length);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break; // last entry was only partially written
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                handler.accept(++sequence, ByteBuffer.wrap(payload, 0, length));
+                valid += 4 + length + 4;
+            }
+        }
+        return valid;
+    }
+
+    /*
+     * One journal entry as applied by apply: what it did and to which accounts. A single
+     * instance is reused for every entry of a journal, so it must not be kept.
+     */
+    static final class Applied {
+
+        /**
+         * Entry type, one of the TransactionJournal constants
+         */
+        byte type;
+        long id;
+        IAccount account;
+        /**
+         * The other account of a transfer, -1 and null for every other entry
+         */
+        long targetId;
+        IAccount target;
+        /**
+         * The journaled amount; the rate for CONVERT, the opening balance for OPEN and
+         * what was actually moved for WITHDRAW_ALL and TRANSFER
+         */
+        BigDecimal amount;
+        OperationStatus status;
+    }
+
+    /*
+     * Decodes one entry and applies it to the accounts through the normal IAccount
+     * methods, creating the account for OPEN entries, and describes the result in applied.
+     * An operation that throws ArithmeticException or IllegalArgumentException is reported
+     * as INVALID_AMOUNT. That relies on every IAccount leaving both accounts unchanged when
+     * it throws: a transfer that has already debited the sender refunds it before the
+     * target's exception leaves it, see Account.transfer. Throws IOException for an
+     * unknown entry type or an account that has not been opened.
+     */
+    static void apply(ByteBuffer entry, Map<Long, IAccount> accounts, AccountFactory factory, Applied applied)
+            throws IOException {
+        byte type = entry.get();
+        long id = entry.getLong();
+        applied.type = type;
+        applied.id = id;
+        applied.targetId = -1;
+        applied.target = null;
+        applied.amount = BigDecimal.ZERO;
+
+        if (type == TransactionJournal.OPEN) {
+            BigDecimal balance = TransactionJournal.getDecimal(entry);
+            BigDecimal max_overdrawn = TransactionJournal.getDecimal(entry);
+            String currency = TransactionJournal.getString(entry);
+            applied.account = factory.create(balance, currency, max_overdrawn);
+            applied.amount = balance;
+            applied.status = OperationStatus.OK;
+            accounts.put(id, applied.account);
+            return;
+        }
+
+        IAccount account = account(accounts, id);
+        applied.account = account;
+        if (type == TransactionJournal.TRANSFER || type == TransactionJournal.TRANSFER_AMOUNT) {
+            applied.targetId = entry.getLong();
+            applied.target = account(accounts, applied.targetId);
+        }
+        try {
+            applied.status = applyTo(account, type, entry, applied);
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            // The operation threw when it was journaled too, and changed nothing then either
+            applied.status = OperationStatus.INVALID_AMOUNT;
+        }
+    }
+
+    private static OperationStatus applyTo(IAccount account, byte type, ByteBuffer entry, Applied applied)
+            throws IOException {
+        switch (type) {
+            case TransactionJournal.DEPOSIT:
+                applied.amount = TransactionJournal.getDecimal(entry);
+                account.deposit(applied.amount);
+                return applied.amount.signum() < 0 ? OperationStatus.INVALID_AMOUNT : OperationStatus.OK;
+            case TransactionJournal.WITHDRAW:
+                applied.amount = TransactionJournal.getDecimal(entry);
+                return account.tryWithdraw(applied.amount);
+            case TransactionJournal.WITHDRAW_ALL:
+                applied.amount = account.withdrawAll();
+                return applied.amount.signum() > 0 ? OperationStatus.OK : OperationStatus.INSUFFICIENT_FUNDS;
+            case TransactionJournal.CONVERT:
+                double rate = entry.getDouble();
+                applied.amount = BigDecimal.valueOf(rate);
+                account.convertToCurrency(TransactionJournal.getString(entry), rate);
+                return rate <= 0 ? OperationStatus.INVALID_AMOUNT : OperationStatus.OK;
+            case TransactionJournal.TRANSFER:
+                BigDecimal before = account.getBalance();
+                OperationStatus status = account.tryTransferToAccount(applied.target);
+                applied.amount = before.subtract(account.getBalance());
+                return status;
+            case TransactionJournal.TRANSFER_AMOUNT:
+                applied.amount = TransactionJournal.getDecimal(entry);
+                return account.transfer(applied.target, applied.amount);
+            default:
+                throw new IOException("Unknown journal entry type " + type);
+        }
+    }
+
+    private static IAccount account(Map<Long, IAccount> accounts, long id) throws IOException {
+        IAccount account = accounts.get(id);
+        if (account == null) {
+            throw new IOException("Journal entry for account " + id + " before it was opened");
+        }
+        return account;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java JournalReplayer <journal file>");
+            System.exit(2);
+        }
+        Map<Long, IAccount> accounts = replay(Paths.get(args[0]), Account::new);
+        for (Map.Entry<Long, IAccount> entry : accounts.entrySet()) {
+            IAccount account = entry.getValue();
+            System.out.println(entry.getKey() + "\t" + account.getBalance().toPlainString()
+                    + "\t" + account.getCurrency() + "\t" + account.getMaxOverdrawn().toPlainString());
+        }
+    }
+}
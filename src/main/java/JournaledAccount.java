@@ -0,0 +1,129 @@
+import java.math.BigDecimal;
+
+/*
+ * IAccount decorator that writes every mutation to a TransactionJournal before applying it.
+ *
+ * Each operation appends its journal entry, waits until the entry is durable and only then
+ * calls the wrapped account, all while holding this account's lock. Entries for one account
+ * are therefore journaled in exactly the order they are applied, which is what lets
+ * JournalReplayer rebuild the same state. Operations on different accounts run in parallel
+ * and share fsyncs through the journal's group commit.
+ *
+ * Arguments that are invalid whatever the balance (an unknown currency code) are rejected
+ * before anything is journaled. An operation the wrapped account can only reject by
+ * throwing, such as an overflow in a FixedPointAccount, is journaled first and throws to
+ * the caller; replaying it throws again and JournalReplayer skips it like any other
+ * rejected operation.
+ */
+public class JournaledAccount implements IAccount {
+
+    private final long id;
+    private final IAccount delegate;
+    private final TransactionJournal journal;
+
+    private JournaledAccount(long id, IAccount delegate, TransactionJournal journal) {
+        this.id = id;
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    /*
+     * Journals the current state of the account as opened under the given id,
+     * and returns the journaled wrapper to use for all further operations.
+     */
+    public static JournaledAccount open(long id, IAccount account, TransactionJournal journal) {
+        journal.awaitDurable(journal.appendOpen(id, account.getBalance(), account.getCurrency(), account.getMaxOverdrawn()));
+        return new JournaledAccount(id, account, journal);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public synchronized BigDecimal withdraw(BigDecimal requested_amount) {
+        journal.awaitDurable(journal.appendWithdraw(id, requested_amount));
+        return delegate.withdraw(requested_amount);
+    }
+
+    @Override
+    public synchronized OperationStatus tryWithdraw(BigDecimal requested_amount) {
+        journal.awaitDurable(journal.appendWithdraw(id, requested_amount));
+        return delegate.tryWithdraw(requested_amount);
+    }
+
+    @Override
+    public synchronized BigDecimal withdrawAll() {
+        journal.awaitDurable(journal.appendWithdrawAll(id));
+        return delegate.withdrawAll();
+    }
+
+    @Override
+    public synchronized BigDecimal deposit(BigDecimal amount_to_deposit) {
+        journal.awaitDurable(journal.appendDeposit(id, amount_to_deposit));
+        return delegate.deposit(amount_to_deposit);
+    }
+
+    @Override
+    public synchronized void convertToCurrency(String currency_code, double rate) {
+        CurrencyCode.of(currency_code); // throws before journaling an unknown currency
+        journal.awaitDurable(journal.appendConvert(id, currency_code, rate));
+        delegate.convertToCurrency(currency_code, rate);
+    }
+
+    /*
+     * Both accounts must be journaled, otherwise the transfer could not be replayed.
+     */
+    @Override
+    public void TransferToAccount(IAccount account) {
+        tryTransferToAccount(account);
+    }
+
+    @Override
+    public OperationStatus tryTransferToAccount(IAccount account) {
+        if (!(account instanceof JournaledAccount)) {
+            throw new IllegalArgumentException("Target account is not journaled");
+        }
+        final JournaledAccount target = (JournaledAccount) account;
+        return TransferEngine.lockInOrder(this, target, () -> {
+            journal.awaitDurable(journal.appendTransfer(id, target.id));
+            return delegate.tryTransferToAccount(target.delegate);
+        });
+    }
+
+    /*
+     * Both accounts must be journaled, as above. The entry is written even if the transfer
+     * is then rejected; replaying it rejects it again, since it sees the same balances.
+     */
+    @Override
+    public OperationStatus transfer(IAccount account, final BigDecimal amount) {
+        if (!(account instanceof JournaledAccount)) {
+            throw new IllegalArgumentException("Target account is not journaled");
+        }
+        final JournaledAccount target = (JournaledAccount) account;
+        return TransferEngine.lockInOrder(this, target, () -> {
+            journal.awaitDurable(journal.appendTransfer(id, target.id, amount));
+            return delegate.transfer(target.delegate, amount);
+        });
+    }
+
+    @Override
+    public synchronized BigDecimal getBalance() {
+        return delegate.getBalance();
+    }
+
+    @Override
+    public synchronized String getCurrency() {
+        return delegate.getCurrency();
+    }
+
+    @Override
+    public synchronized CurrencyCode getCurrencyCode() {
+        return delegate.getCurrencyCode();
+    }
+
+    @Override
+    public synchronized BigDecimal getMaxOverdrawn() {
+        return delegate.getMaxOverdrawn();
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Concurrent latency histogram with fixed, logarithmically sized buckets (HDR-style).
+ *
+ * Values 0-7 get a bucket each; above that, every power of two is split into 8 equal
+ * sub-buckets, so any recorded value is reported within 12.5% of its true value, from
+ * nanoseconds up to Long.MAX_VALUE, in 488 buckets. All buckets are allocated up front and
+ * each one is a LongAdder, so record() never allocates and threads recording at the same
+ * time do not contend on one counter.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /*
+     * Records one value, typically a duration in nanoseconds. Negative values count as 0.
+     */
+    public void record(long value) {
+        long v = Math.max(0L, value);
+        buckets[bucketOf(v)].increment();
+        max.accumulate(v);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /*
+     * Smallest value that falls into the given bucket
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /*
+     * Largest value that falls into the given bucket
+     */
+    static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+
+    /*
+     * Copies the current counts. Values recorded while the copy is taken may or may not
+     * be included, but every bucket count is exact at some point during the call.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(counts, max.get());
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        max.reset();
+    }
+
+    /*
+     * Immutable copy of the bucket counts
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        Snapshot(long[] counts, long max) {
+            this.counts = counts;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+            this.max = max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        /*
+         * Largest recorded value, exact
+         */
+        public long max() {
+            return max;
+        }
+
+        /*
+         * Value below or at which the given percentage (0-100) of the recorded values
+         * lie, rounded up to the end of its bucket. 0 if nothing was recorded.
+         */
+        public long valueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        public double mean() {
+            if (count == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    // Midpoint of the bucket, as the exact values are not kept
+                    sum += counts[i] * ((double) lowerBound(i) + Math.min(upperBound(i), max)) / 2;
+                }
+            }
+            return sum / count;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Account storage backed by a memory-mapped file.
+ *
+ * Balances, limits and currencies live in the file itself, not on the heap, so opening a
+ * ledger with millions of accounts only maps the file and reads a 128-byte header; no
+ * account is loaded until it is used. Accounts are fixed-size records addressed by int id,
+ * and account(id) returns an IAccount view that reads and writes the mapped record.
+ *
+ * Crash of the JVM process: every update goes straight to the OS page cache, so it
+ * survives, and no update is ever seen half done after a restart. A new account only
+ * becomes part of the ledger when the account count in the header is written, after its
+ * record. An update that writes more than one field or record (a transfer between two
+ * accounts of the ledger, a currency conversion) first writes the new images of the
+ * records to a redo area in the header and publishes them by setting the redo count;
+ * open() finishes an update whose redo count is still set.
+ *
+ * Power loss or OS crash: updates made before force() returned are on disk, but force()
+ * writes dirty pages in no particular order and not atomically, so updates made since the
+ * previous force() may be partly on disk. The ledger is not crash-safe against that; pair
+ * it with a TransactionJournal where it must be.
+ *
+ * The file is locked while open, so a second process (or a second open in this one)
+ * fails with IOException instead of mapping the same records. The minor unit of each
+ * record's currency is stored with it and checked against CurrencyCode when account(id)
+ * first reads the record, so a changed scale is never silently misread.
+ *
+ * File layout (big-endian):
+ *   header  magic int, version int, capacity int, size int, redo count int, 4 reserved bytes,
+ *           2 redo entries of record offset int + record image, reserved up to 128 bytes
+ *   record  balance long, max_overdrawn long, currency 3 ASCII bytes, scale byte, 4 reserved bytes
+ *
+ * Not thread-safe: callers that share a ledger between threads must synchronize access.
+ */
+public class MappedAccountLedger implements Closeable {
+
+    static final int MAGIC = 0x4143434C; // "ACCL"
+    static final int VERSION = 2;
+
+    static final int HEADER_SIZE = 128;
+    static final int RECORD_SIZE = 24;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    static final int REDO_COUNT_OFFSET = 16;
+    private static final int REDO_OFFSET = 24;
+    private static final int REDO_ENTRY_SIZE = 4 + 20;
+    private static final int MAX_REDO_ENTRIES = 2;
+
+    static final int BALANCE_OFFSET = 0;
+    private static final int LIMIT_OFFSET = 8;
+    private static final int CURRENCY_OFFSET = 16;
+    static final int SCALE_OFFSET = 19;
+
+    /**
+     * Largest capacity whose file still fits in a single mapped buffer
+     */
+    static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    /**
+     * The 3 ASCII letters of each CurrencyCode packed into an int, indexed by ordinal,
+     * so reading a record's currency neither allocates nor depends on enum order
+     */
+    private static final CurrencyCode[] CURRENCIES = CurrencyCode.values();
+    private static final int[] PACKED_CODES = new int[CURRENCIES.length];
+
+    static {
+        for (CurrencyCode currency : CURRENCIES) {
+            String code = currency.name();
+            PACKED_CODES[currency.ordinal()] = code.charAt(0) << 16 | code.charAt(1) << 8 | code.charAt(2);
+        }
+    }
+
+    /*
+     * The currency and scale bytes of a record as one int
+     */
+    private static int packedCurrency(CurrencyCode currency) {
+        return PACKED_CODES[currency.ordinal()] << 8 | currency.scale();
+    }
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    private MappedAccountLedger(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /*
+     * Opens the ledger stored in the given file, creating it with room for
+     * initialCapacity accounts if it does not exist yet.
+     */
+    public static MappedAccountLedger open(Path file, int initialCapacity) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedAccountLedger ledger = new MappedAccountLedger(channel);
+        try {
+            try {
+                if (channel.tryLock() == null) {
+                    throw new IOException("Ledger is already open in another process: " + file);
+                }
+            } catch (OverlappingFileLockException e) {
+                throw new IOException("Ledger is already open: " + file, e);
+            }
+            if (channel.size() == 0) {
+                ledger.initialize(Math.max(1, Math.min(initialCapacity, MAX_CAPACITY)));
+            } else {
+                ledger.load();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return ledger;
+    }
+
+    private void initialize(int initialCapacity) throws IOException {
+        map(initialCapacity);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(SIZE_OFFSET, 0);
+        buffer.putInt(REDO_COUNT_OFFSET, 0);
+        buffer.force();
+    }
+
+    private void load() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            throw new IOException("Not an account ledger: file too small");
+        }
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not an account ledger: bad magic number");
+        }
+        if (header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Unsupported ledger version " + header.getInt(VERSION_OFFSET));
+        }
+        int storedCapacity = header.getInt(CAPACITY_OFFSET);
+        int storedSize = header.getInt(SIZE_OFFSET);
+        if (storedSize < 0 || storedSize > storedCapacity
+                || channel.size() < HEADER_SIZE + (long) storedCapacity * RECORD_SIZE) {
+            throw new IOException("Corrupt ledger header");
+        }
+        map(storedCapacity);
+        this.size = storedSize;
+        recover();
+    }
+
+    /*
+     * Finishes an update that was interrupted after its redo entries were published
+     */
+    private void recover() throws IOException {
+        int entries = buffer.getInt(REDO_COUNT_OFFSET);
+        if (entries == 0) {
+            return;
+        }
+        if (entries < 0 || entries > MAX_REDO_ENTRIES) {
+            throw new IOException("Corrupt ledger header: redo count " + entries);
+        }
+        for (int i = 0; i < entries; i++) {
+            int offset = buffer.getInt(REDO_OFFSET + i * REDO_ENTRY_SIZE);
+            if (offset < HEADER_SIZE || offset >= offset(size) || (offset - HEADER_SIZE) % RECORD_SIZE != 0) {
+                throw new IOException("Corrupt ledger header: redo entry for offset " + offset);
+            }
+        }
+        applyRedo();
+        buffer.force();
+    }
+
+    private void map(int newCapacity) throws IOException {
+        long length = HEADER_SIZE + (long) newCapacity * RECORD_SIZE;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        this.capacity = newCapacity;
+        buffer.putInt(CAPACITY_OFFSET, newCapacity);
+    }
+
+    /*
+     * Adds an account and returns its id. Ids are assigned consecutively from 0.
+     */
+    public int create(BigDecimal starting_balance, String currency, BigDecimal max_overdrawn) throws IOException {
+        CurrencyCode code = CurrencyCode.of(currency);
+        int scale = code.scale();
+        long balance = MinorUnits.toMinor(starting_balance, scale);
+        long limit = Math.max(0L, MinorUnits.toMinor(max_overdrawn, scale));
+
+        if (size == capacity) {
+            if (capacity == MAX_CAPACITY) {
+                throw new IllegalStateException("Ledger is full");
+            }
+            map((int) Math.min((long) capacity * 2, MAX_CAPACITY));
+        }
+        int id = size;
+        int offset = offset(id);
+        buffer.putLong(offset + BALANCE_OFFSET, balance);
+        buffer.putLong(offset + LIMIT_OFFSET, limit);
+        writeCurrency(offset, code);
+
+        // Publish the record only after it has been fully written
+        size = id + 1;
+        buffer.putInt(SIZE_OFFSET, size);
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /*
+     * Returns an IAccount view of the account with the given id
+     */
+    public AbstractMinorUnitAccount account(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No account with id " + id);
+        }
+        int offset = offset(id);
+        readCurrency(offset); // fails if the record's scale is not the currency's
+        return new View(offset);
+    }
+
+    /*
+     * Checkpoint: blocks until every update made so far has been written to disk
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private static int offset(int id) {
+        return HEADER_SIZE + id * RECORD_SIZE;
+    }
+
+    private void writeCurrency(int offset, CurrencyCode currency) {
+        buffer.putInt(offset + CURRENCY_OFFSET, packedCurrency(currency));
+    }
+
+    private CurrencyCode readCurrency(int offset) {
+        int packed = buffer.getInt(offset + CURRENCY_OFFSET);
+        for (int i = 0; i < PACKED_CODES.length; i++) {
+            if (PACKED_CODES[i] == packed >>> 8) {
+                CurrencyCode currency = CURRENCIES[i];
+                if ((packed & 0xFF) != currency.scale()) {
+                    throw new IllegalStateException("Ledger record at offset " + offset + " was written with scale "
+                            + (packed & 0xFF) + " but " + currency + " has scale " + currency.scale());
+                }
+                return currency;
+            }
+        }
+        throw new IllegalStateException("Corrupt ledger record: unknown currency at offset " + offset);
+    }
+
+    /*
+     * Writes redo entry slot: the complete new image of the record at the given offset
+     */
+    private void putRedo(int slot, int offset, long balance, long max_overdrawn, int packedCurrency) {
+        int entry = REDO_OFFSET + slot * REDO_ENTRY_SIZE;
+        buffer.putInt(entry, offset);
+        buffer.putLong(entry + 4 + BALANCE_OFFSET, balance);
+        buffer.putLong(entry + 4 + LIMIT_OFFSET, max_overdrawn);
+        buffer.putInt(entry + 4 + CURRENCY_OFFSET, packedCurrency);
+    }
+
+    /*
+     * Publishes the given number of redo entries, copies them into their records and
+     * clears the redo count again. A crash anywhere after the count is set is finished
+     * by recover().
+     */
+    private void commitRedo(int entries) {
+        buffer.putInt(REDO_COUNT_OFFSET, entries);
+        applyRedo();
+    }
+
+    private void applyRedo() {
+        int entries = buffer.getInt(REDO_COUNT_OFFSET);
+        for (int i = 0; i < entries; i++) {
+            int entry = REDO_OFFSET + i * REDO_ENTRY_SIZE;
+            int offset = buffer.getInt(entry);
+            buffer.putLong(offset + BALANCE_OFFSET, buffer.getLong(entry + 4 + BALANCE_OFFSET));
+            buffer.putLong(offset + LIMIT_OFFSET, buffer.getLong(entry + 4 + LIMIT_OFFSET));
+            buffer.putInt(offset + CURRENCY_OFFSET, buffer.getInt(entry + 4 + CURRENCY_OFFSET));
+        }
+        buffer.putInt(REDO_COUNT_OFFSET, 0);
+    }
+
+    /*
+     * IAccount over one record of the mapped file
+     */
+    private final class View extends AbstractMinorUnitAccount {
+
+        private final int offset;
+
+        View(int offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public long getBalanceMinor() {
+            return buffer.getLong(offset + BALANCE_OFFSET);
+        }
+
+        @Override
+        public long getMaxOverdrawnMinor() {
+            return buffer.getLong(offset + LIMIT_OFFSET);
+        }
+
+        @Override
+        public CurrencyCode getCurrencyCode() {
+            return readCurrency(offset);
+        }
+
+        @Override
+        protected void storeBalance(long balance) {
+            buffer.putLong(offset + BALANCE_OFFSET, balance);
+        }
+
+        @Override
+        protected void storeMaxOverdrawn(long max_overdrawn) {
+            buffer.putLong(offset + LIMIT_OFFSET, max_overdrawn);
+        }
+
+        @Override
+        protected void storeConversion(CurrencyCode currency, long balance, long max_overdrawn) {
+            putRedo(0, offset, balance, max_overdrawn, packedCurrency(currency));
+            commitRedo(1);
+        }
+
+        /*
+         * Both records of a transfer within this ledger are updated through the redo area
+         */
+        @Override
+        protected void storeTransfer(AbstractMinorUnitAccount to_account, long targetBalance, long balance) {
+            if (!(to_account instanceof View) || ((View) to_account).ledger() != ledger()) {
+                super.storeTransfer(to_account, targetBalance, balance);
+                return;
+            }
+            int target = ((View) to_account).offset;
+            putRedo(0, target, targetBalance, buffer.getLong(target + LIMIT_OFFSET),
+                    buffer.getInt(target + CURRENCY_OFFSET));
+            putRedo(1, offset, balance, buffer.getLong(offset + LIMIT_OFFSET), buffer.getInt(offset + CURRENCY_OFFSET));
+            commitRedo(2);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof View && ((View) other).offset == offset && ((View) other).ledger() == ledger();
+        }
+
+        @Override
+        public int hashCode() {
+            return offset;
+        }
+
+        private MappedAccountLedger ledger() {
+            return MappedAccountLedger.this;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+import java.math.BigDecimal;
+
+/*
+ * Conversions between BigDecimal amounts and scaled long "minor units"
+ * (e.g. 12.34 SEK <-> 1234 öre), used by the allocation-free account implementations.
+ */
+final class MinorUnits {
+
+    private MinorUnits() {
+    }
+
+    /*
+     * Converts an amount to minor units of the given scale.
+     * Throws ArithmeticException if the amount has more decimals than the scale allows
+     * or does not fit in a long, instead of silently rounding or wrapping.
+     */
+    static long toMinor(BigDecimal amount, int scale) {
+        return amount.movePointRight(scale).longValueExact();
+    }
+
+    static BigDecimal toDecimal(long minorUnits, int scale) {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * One deposit, withdrawal or transfer in a batch applied with AccountStore.applyBatch.
+ *
+ * Accounts are referred to by their AccountStore id, and amounts are in minor units
+ * of the account's currency (öre for SEK), like the store's columns.
+ */
+public final class Operation {
+
+    public enum Type {
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER
+    }
+
+    private final Type type;
+    private final int account;
+    private final int target;
+    private final long amount;
+
+    private Operation(Type type, int account, int target, long amount) {
+        this.type = type;
+        this.account = account;
+        this.target = target;
+        this.amount = amount;
+    }
+
+    public static Operation deposit(int account, long amount) {
+        return new Operation(Type.DEPOSIT, account, account, amount);
+    }
+
+    public static Operation withdraw(int account, long amount) {
+        return new Operation(Type.WITHDRAW, account, account, amount);
+    }
+
+    /*
+     * Moves the amount from one account to another holding the same currency.
+     * The sender follows the same overdraft rule as withdraw.
+     */
+    public static Operation transfer(int from, int to, long amount) {
+        return new Operation(Type.TRANSFER, from, to, amount);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /*
+     * The account deposited to, withdrawn from, or transferred from
+     */
+    public int getAccount() {
+        return account;
+    }
+
+    /*
+     * The receiving account of a transfer, the same as getAccount() otherwise
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Outcome of an account operation.
+ *
+ * The constants are preallocated, so reporting a result never allocates; BatchResult
+ * stores them as one byte per operation using their ordinal.
+ */
+public enum OperationStatus {
+    /**
+     * The operation was applied
+     */
+    OK,
+    /**
+     * The balance would have gone below -max_overdrawn, or there was nothing to transfer
+     */
+    INSUFFICIENT_FUNDS,
+    /**
+     * The two accounts of a transfer hold different currencies
+     */
+    CURRENCY_MISMATCH,
+    /**
+     * The amount was negative or would overflow the balance
+     */
+    INVALID_AMOUNT,
+    /**
+     * The operation referred to an account that does not exist
+     */
+    UNKNOWN_ACCOUNT;
+
+    private static final OperationStatus[] VALUES = values();
+
+    static OperationStatus ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
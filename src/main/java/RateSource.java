@@ -0,0 +1,15 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+
+/*
+ * Where ExchangeRates gets its quoted rates from.
+ */
+public interface RateSource {
+
+    /*
+     * Returns the quoted rates as from-currency -> to-currency -> rate, where
+     * 1 unit of the from-currency is worth rate units of the to-currency
+     * */
+    public abstract Map<String, Map<String, BigDecimal>> loadRates() throws IOException;
+}
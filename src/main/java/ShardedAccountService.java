@@ -0,0 +1,463 @@
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/*
+ * Asynchronous account service that spreads accounts over single-writer shards.
+ *
+ * Account ids are hashed to one of N shards. Each shard owns its accounts outright: only
+ * the shard's worker thread ever touches them, by draining the shard's queue of operations
+ * one at a time, so no operation has to wait for a lock held by another core. Callers get
+ * a CompletableFuture that the worker completes with the IAccount result. Operations on
+ * one account run in the order they were submitted from a given thread.
+ *
+ * A transfer between accounts on the same shard is a single IAccount.transfer. A transfer
+ * between shards is a two-phase hand-off:
+ *   1. the sender's shard moves the amount into an escrow account (with the sender's
+ *      overdraft rules) and passes the escrow to the receiver's shard;
+ *   2. the receiver's shard credits the receiver from escrow, or leaves the money in
+ *      escrow if the receiver does not exist or holds another currency, and passes the
+ *      escrow back;
+ *   3. the sender's shard refunds whatever is left in escrow and completes the future.
+ * Money in flight is therefore always held by exactly one escrow account. An account's
+ * currency can not be converted while it has outgoing transfers in flight, so a refund
+ * always matches the sender's currency. If crediting the receiver throws, the future
+ * fails with that exception once the sender has been refunded; if the refund itself is
+ * rejected, the future fails with IllegalStateException and the money stays in escrow.
+ *
+ * Each shard accepts at most queueCapacity operations from outside at a time; submitting
+ * more blocks the caller until the worker catches up. Hand-offs between shards, and
+ * operations submitted from a worker thread (e.g. by a callback of a completed future),
+ * bypass that limit so that workers never block on each other.
+ */
+public class ShardedAccountService implements Closeable {
+
+    /**
+     * Queued to stop a worker once everything before it has run
+     */
+    private static final Runnable STOP = () -> {
+    };
+
+    private final Shard[] shards;
+    private final long startNanos;
+    private volatile boolean closed;
+
+    /*
+     * One shard per available processor
+     */
+    public ShardedAccountService() {
+        this(Runtime.getRuntime().availableProcessors(), 1024);
+    }
+
+    public ShardedAccountService(int shardCount, int queueCapacity) {
+        if (shardCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("shardCount and queueCapacity must be positive");
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+        this.startNanos = System.nanoTime();
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /*
+     * Shard that owns the account with the given id
+     */
+    public int shardOf(long id) {
+        // Fibonacci hashing, so consecutive ids spread evenly over the shards
+        long hash = (id * 0x9E3779B97F4A7C15L) >>> 32;
+        return (int) ((hash * shards.length) >>> 32);
+    }
+
+    /*
+     * Hands the account over to the service under the given id. The caller must not use
+     * the account object directly afterwards. Fails with IllegalArgumentException if the
+     * id is already taken.
+     */
+    public CompletableFuture<Void> open(final long id, final IAccount account) {
+        final Shard shard = shards[shardOf(id)];
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        shard.submit(result, () -> {
+            if (shard.accounts.containsKey(id)) {
+                result.completeExceptionally(new IllegalArgumentException("Account " + id + " already exists"));
+            } else {
+                shard.accounts.put(id, new Slot(account));
+                result.complete(null);
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<BigDecimal> withdraw(long id, final BigDecimal amount) {
+        return apply(id, account -> account.withdraw(amount));
+    }
+
+    public CompletableFuture<BigDecimal> withdrawAll(long id) {
+        return apply(id, IAccount::withdrawAll);
+    }
+
+    public CompletableFuture<BigDecimal> deposit(long id, final BigDecimal amount) {
+        return apply(id, account -> account.deposit(amount));
+    }
+
+    public CompletableFuture<BigDecimal> getBalance(long id) {
+        return apply(id, IAccount::getBalance);
+    }
+
+    /*
+     * Fails with IllegalStateException while the account has outgoing transfers in flight
+     */
+    public CompletableFuture<Void> convertToCurrency(final long id, final String currency_code, final double rate) {
+        final Shard shard = shards[shardOf(id)];
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        shard.submit(result, () -> {
+            Slot slot = shard.accounts.get(id);
+            if (slot == null) {
+                result.completeExceptionally(unknownAccount(id));
+            } else if (slot.outgoing > 0) {
+                result.completeExceptionally(new IllegalStateException(
+                        "Account " + id + " has transfers in flight"));
+            } else {
+                slot.account.convertToCurrency(currency_code, rate);
+                result.complete(null);
+            }
+        });
+        return result;
+    }
+
+    /*
+     * Moves the amount between two accounts with the rules of IAccount.transfer.
+     * Completes with UNKNOWN_ACCOUNT if either account does not exist.
+     */
+    public CompletableFuture<OperationStatus> transfer(final long fromId, final long toId, final BigDecimal amount) {
+        final Shard from = shards[shardOf(fromId)];
+        final Shard to = shards[shardOf(toId)];
+        final CompletableFuture<OperationStatus> result = new CompletableFuture<>();
+        from.submit(result, () -> {
+            Slot sender = from.accounts.get(fromId);
+            if (sender == null) {
+                result.complete(OperationStatus.UNKNOWN_ACCOUNT);
+            } else if (from == to) {
+                Slot receiver = from.accounts.get(toId);
+                result.complete(receiver == null
+                        ? OperationStatus.UNKNOWN_ACCOUNT
+                        : sender.account.transfer(receiver.account, amount));
+            } else {
+                transferOut(from, sender, to, toId, amount, result);
+            }
+        });
+        return result;
+    }
+
+    /*
+     * Phase 1 of a cross-shard transfer, run by the sender's shard
+     */
+    private static void transferOut(final Shard from, final Slot sender, Shard to, final long toId,
+                                    final BigDecimal amount, final CompletableFuture<OperationStatus> result) {
+        final IAccount escrow = new Account(BigDecimal.ZERO, sender.account.getCurrency(), BigDecimal.ZERO);
+        OperationStatus status = sender.account.transfer(escrow, amount);
+        if (status != OperationStatus.OK) {
+            result.complete(status);
+            return;
+        }
+        sender.outgoing++;
+        from.transfersInFlight++;
+        to.handOff(result, () -> {
+            // Phase 2, run by the receiver's shard. If crediting the receiver throws, the
+            // money is still in escrow and is refunded like any other failed credit.
+            Slot receiver = to.accounts.get(toId);
+            OperationStatus outcome = OperationStatus.UNKNOWN_ACCOUNT;
+            RuntimeException failure = null;
+            if (receiver != null) {
+                try {
+                    outcome = escrow.transfer(receiver.account, amount);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            final OperationStatus credited = outcome;
+            final RuntimeException creditFailure = failure;
+            from.handOff(result, () -> {
+                // Phase 3, back on the sender's shard
+                try {
+                    if (credited != OperationStatus.OK || creditFailure != null) {
+                        refund(escrow, sender, amount);
+                    }
+                } finally {
+                    sender.outgoing--;
+                    from.transfersInFlight--;
+                }
+                if (creditFailure != null) {
+                    result.completeExceptionally(creditFailure);
+                } else {
+                    result.complete(credited);
+                }
+            });
+        });
+    }
+
+    /*
+     * Returns an uncredited transfer from escrow to the sender. The escrow holds exactly
+     * the amount in the sender's currency, which can not change while the transfer is in
+     * flight, so this only fails if the sender can no longer hold the amount (an overflow
+     * of a minor-unit account); the money then stays in escrow and the caller is told.
+     */
+    private static void refund(IAccount escrow, Slot sender, BigDecimal amount) {
+        OperationStatus refunded = escrow.transfer(sender.account, amount);
+        if (refunded != OperationStatus.OK) {
+            throw new IllegalStateException("Refund of " + amount + " " + escrow.getCurrency()
+                    + " to the sender failed with " + refunded + "; the amount is held in escrow");
+        }
+    }
+
+    /*
+     * Operations completed by each shard so far, indexed by shard
+     */
+    public long[] completedOperations() {
+        long[] completed = new long[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            completed[i] = shards[i].completed.get();
+        }
+        return completed;
+    }
+
+    /*
+     * Average throughput of each shard since the service was started, indexed by shard
+     */
+    public double[] operationsPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long[] completed = completedOperations();
+        double[] rates = new double[completed.length];
+        for (int i = 0; i < completed.length; i++) {
+            rates[i] = completed[i] / seconds;
+        }
+        return rates;
+    }
+
+    /*
+     * Stops accepting operations, waits until everything already submitted has completed,
+     * including transfers in flight between shards, and stops the workers.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Shard shard : shards) {
+            // After this no submission that missed the closed flag is still running
+            while (shard.submitting.get() > 0) {
+                Thread.yield();
+            }
+        }
+        // Every operation submitted so far is now queued ahead of the first barrier, so
+        // once no shard has transfers in flight no further hand-off can be created
+        while (barrier() > 0) {
+            Thread.yield();
+        }
+        for (Shard shard : shards) {
+            shard.queue.add(STOP);
+        }
+        boolean interrupted = false;
+        for (Shard shard : shards) {
+            while (shard.thread.isAlive()) {
+                try {
+                    shard.thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Runs a task through every shard and returns the number of transfers in flight
+     * that the shards reported
+     */
+    private int barrier() {
+        final CountDownLatch done = new CountDownLatch(shards.length);
+        final AtomicInteger inFlight = new AtomicInteger();
+        for (final Shard shard : shards) {
+            shard.handOff(() -> {
+                inFlight.addAndGet(shard.transfersInFlight);
+                done.countDown();
+            });
+        }
+        boolean interrupted = false;
+        while (done.getCount() > 0) {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return inFlight.get();
+    }
+
+    private <T> CompletableFuture<T> apply(final long id, final Function<IAccount, T> operation) {
+        final Shard shard = shards[shardOf(id)];
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        shard.submit(result, () -> {
+            Slot slot = shard.accounts.get(id);
+            if (slot == null) {
+                result.completeExceptionally(unknownAccount(id));
+            } else {
+                result.complete(operation.apply(slot.account));
+            }
+        });
+        return result;
+    }
+
+    private static IllegalArgumentException unknownAccount(long id) {
+        return new IllegalArgumentException("No account with id " + id);
+    }
+
+    private boolean isWorkerThread() {
+        Thread current = Thread.currentThread();
+        for (Shard shard : shards) {
+            if (shard.thread == current) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * An account together with its shard-local bookkeeping
+     */
+    private static final class Slot {
+        final IAccount account;
+        /**
+         * Cross-shard transfers from this account that have not completed yet
+         */
+        int outgoing;
+
+        Slot(IAccount account) {
+            this.account = account;
+        }
+    }
+
+    private final class Shard implements Runnable {
+
+        /**
+         * Accessed only by the worker thread
+         */
+        final Map<Long, Slot> accounts = new HashMap<>();
+        final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        /**
+         * One permit per operation that outside callers may have queued
+         */
+        final Semaphore permits;
+        /**
+         * Callers currently between checking the closed flag and queueing their operation
+         */
+        final AtomicInteger submitting = new AtomicInteger();
+        final AtomicLong completed = new AtomicLong();
+        final Thread thread;
+
+        /**
+         * Worker-local counters
+         */
+        long operations;
+        int transfersInFlight;
+
+        Shard(int index, int queueCapacity) {
+            this.permits = new Semaphore(queueCapacity);
+            this.thread = new Thread(this, "account-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        /*
+         * Queues an operation from a caller, failing its future if the operation throws
+         */
+        void submit(final CompletableFuture<?> result, final Runnable operation) {
+            final boolean fromWorker = isWorkerThread();
+            submitting.incrementAndGet();
+            try {
+                if (closed) {
+                    throw new IllegalStateException("Account service is closed");
+                }
+                if (!fromWorker) {
+                    permits.acquireUninterruptibly();
+                }
+                queue.add(() -> {
+                    if (!fromWorker) {
+                        permits.release();
+                    }
+                    try {
+                        operation.run();
+                    } catch (RuntimeException | Error e) {
+                        result.completeExceptionally(e);
+                    }
+                    completed.lazySet(++operations);
+                });
+            } finally {
+                submitting.decrementAndGet();
+            }
+        }
+
+        /*
+         * Queues work that is part of an operation already accepted by the service,
+         * failing its future if the work throws
+         */
+        void handOff(final CompletableFuture<?> result, final Runnable task) {
+            queue.add(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+
+        /*
+         * Queues internal work that has no future of its own
+         */
+        void handOff(Runnable task) {
+            queue.add(task);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    continue; // the worker only stops through close()
+                }
+                if (task == STOP) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException | Error e) {
+                    // Tasks report their own failures through their futures; this only
+                    // keeps one broken task from stopping the shard for everyone else
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        }
+    }
+}
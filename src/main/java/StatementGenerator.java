@@ -0,0 +1,393 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/*
+ * Writes one statement per account for everything recorded in a TransactionJournal file,
+ * without holding the operations in memory.
+ *
+ * The journal is read once, in order, and every entry is applied with JournalReplayer's
+ * apply, so every withdrawal is accepted or rejected by the same overdraft rule as when
+ * it was first applied, and an entry that threw then is shown as INVALID_AMOUNT. Each
+ * entry becomes a statement line for every account it touches, with its outcome and the
+ * running balance after it. Lines arrive interleaved across accounts, so they are
+ * grouped with an external merge sort: at most maxBufferedLines are kept in memory, each
+ * full buffer is sorted by account and sequence number and spilled to a temporary run
+ * file, and the runs are merged, at most 64 at a time, into the statements. Small
+ * journals never touch the disk.
+ *
+ * Memory therefore depends on the number of accounts (the live state of each one is
+ * needed to apply transfers between them) and on maxBufferedLines, but not on the number
+ * of operations.
+ *
+ * Statement format, one block per account in id order:
+ *
+ *   Statement for account 17
+ *   1    OPENED           100.00  OK                  100.00 SEK
+ *   5    WITHDRAW         500     INSUFFICIENT_FUNDS  100.00 SEK
+ *   9    TRANSFER_OUT 3   30      OK                  70.00 SEK
+ *   Closing balance 70.00 SEK
+ *
+ * with the columns separated by tabs: journal sequence number, operation (and the other
+ * account of a transfer), amount (the rate for CONVERT), outcome, balance after the line.
+ *
+ * Usage: java StatementGenerator <journal file> <output file>
+ */
+public class StatementGenerator {
+
+    public enum Kind {
+        OPENED, DEPOSIT, WITHDRAW, WITHDRAW_ALL, CONVERT, TRANSFER_OUT, TRANSFER_IN
+    }
+
+    private static final int DEFAULT_MAX_BUFFERED_LINES = 1 << 16;
+    private static final int MERGE_FAN_IN = 64;
+    private static final Kind[] KINDS = Kind.values();
+    private static final OperationStatus[] STATUSES = OperationStatus.values();
+
+    private static final Comparator<Line> BY_ACCOUNT = new Comparator<Line>() {
+        @Override
+        public int compare(Line a, Line b) {
+            int order = Long.compare(a.account, b.account);
+            return order != 0 ? order : Long.compare(a.sequence, b.sequence);
+        }
+    };
+
+    private final JournalReplayer.AccountFactory factory;
+    private final int maxBufferedLines;
+    private final Path tempDirectory;
+
+    public StatementGenerator() {
+        this(Account::new, DEFAULT_MAX_BUFFERED_LINES, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /*
+     * factory creates the accounts the journal opens, as in JournalReplayer.replay;
+     * run files are created in tempDirectory and deleted before generate returns
+     */
+    public StatementGenerator(JournalReplayer.AccountFactory factory, int maxBufferedLines, Path tempDirectory) {
+        if (maxBufferedLines < 1) {
+            throw new IllegalArgumentException("maxBufferedLines must be positive");
+        }
+        this.factory = factory;
+        this.maxBufferedLines = maxBufferedLines;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /*
+     * Writes the statements of every account in the journal and returns the number of
+     * statement lines written. Throws IOException if an entry refers to an account that
+     * has not been opened.
+     */
+    public long generate(Path journal, Writer out) throws IOException {
+        final Sorter sorter = new Sorter();
+        final Map<Long, IAccount> accounts = new HashMap<>();
+        final JournalReplayer.Applied applied = new JournalReplayer.Applied();
+        try {
+            JournalReplayer.read(journal, (sequence, entry) -> apply(sequence, entry, accounts, applied, sorter));
+            StatementWriter statements = new StatementWriter(out);
+            sorter.finish(statements);
+            statements.finish();
+            return statements.lines;
+        } finally {
+            sorter.deleteRuns();
+        }
+    }
+
+    private void apply(long sequence, ByteBuffer entry, Map<Long, IAccount> accounts, JournalReplayer.Applied applied,
+                       Sorter sorter) throws IOException {
+        JournalReplayer.apply(entry, accounts, factory, applied);
+        long id = applied.id;
+        switch (applied.type) {
+            case TransactionJournal.OPEN:
+                sorter.add(line(id, sequence, Kind.OPENED, applied, -1));
+                break;
+            case TransactionJournal.DEPOSIT:
+                sorter.add(line(id, sequence, Kind.DEPOSIT, applied, -1));
+                break;
+            case TransactionJournal.WITHDRAW:
+                sorter.add(line(id, sequence, Kind.WITHDRAW, applied, -1));
+                break;
+            case TransactionJournal.WITHDRAW_ALL:
+                sorter.add(line(id, sequence, Kind.WITHDRAW_ALL, applied, -1));
+                break;
+            case TransactionJournal.CONVERT:
+                sorter.add(line(id, sequence, Kind.CONVERT, applied, -1));
+                break;
+            default:
+                transferLines(sequence, applied, sorter);
+        }
+    }
+
+    /*
+     * The sender always gets a line; the receiver only if money actually arrived
+     */
+    private static void transferLines(long sequence, JournalReplayer.Applied applied, Sorter sorter) throws IOException {
+        long from = applied.id;
+        long to = applied.targetId;
+        sorter.add(line(from, sequence, Kind.TRANSFER_OUT, applied, to));
+        if (applied.status == OperationStatus.OK && from != to) {
+            sorter.add(new Line(to, sequence, Kind.TRANSFER_IN, from, applied.status, applied.amount.toPlainString(),
+                    applied.target.getBalance().toPlainString(), applied.target.getCurrency()));
+        }
+    }
+
+    /*
+     * Line on the statement of the entry's own account
+     */
+    private static Line line(long account, long sequence, Kind kind, JournalReplayer.Applied applied, long counterparty) {
+        return new Line(account, sequence, kind, counterparty, applied.status, applied.amount.toPlainString(),
+                applied.account.getBalance().toPlainString(), applied.account.getCurrency());
+    }
+
+    /*
+     * Receives statement lines in account order
+     */
+    private interface LineSink {
+        void accept(Line line) throws IOException;
+    }
+
+    /*
+     * External merge sort of the statement lines by account, then sequence number
+     */
+    private final class Sorter {
+
+        private final List<Line> buffer = new ArrayList<>();
+        private final List<Path> runs = new ArrayList<>();
+        private final List<Path> created = new ArrayList<>();
+
+        void add(Line line) throws IOException {
+            buffer.add(line);
+            if (buffer.size() >= maxBufferedLines) {
+                spill();
+            }
+        }
+
+        /*
+         * Sends every line added so far to the sink, in order
+         */
+        void finish(LineSink sink) throws IOException {
+            if (runs.isEmpty()) {
+                Collections.sort(buffer, BY_ACCOUNT);
+                for (Line line : buffer) {
+                    sink.accept(line);
+                }
+                buffer.clear();
+                return;
+            }
+            if (!buffer.isEmpty()) {
+                spill();
+            }
+            while (runs.size() > MERGE_FAN_IN) {
+                List<Path> group = new ArrayList<>(runs.subList(0, MERGE_FAN_IN));
+                runs.subList(0, MERGE_FAN_IN).clear();
+                Path merged = newRun();
+                try (RunWriter writer = new RunWriter(merged)) {
+                    merge(group, writer);
+                }
+                runs.add(merged);
+                for (Path run : group) {
+                    Files.deleteIfExists(run);
+                }
+            }
+            merge(runs, sink);
+        }
+
+        private void spill() throws IOException {
+            Collections.sort(buffer, BY_ACCOUNT);
+            Path run = newRun();
+            try (RunWriter writer = new RunWriter(run)) {
+                for (Line line : buffer) {
+                    writer.accept(line);
+                }
+            }
+            runs.add(run);
+            buffer.clear();
+        }
+
+        private Path newRun() throws IOException {
+            Path run = Files.createTempFile(tempDirectory, "statement-run", ".bin");
+            created.add(run);
+            return run;
+        }
+
+        private void merge(List<Path> inputs, LineSink sink) throws IOException {
+            PriorityQueue<RunReader> heads = new PriorityQueue<>(inputs.size(),
+                    (a, b) -> BY_ACCOUNT.compare(a.current, b.current));
+            try {
+                for (Path input : inputs) {
+                    RunReader reader = new RunReader(input);
+                    if (reader.advance()) {
+                        heads.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+                while (!heads.isEmpty()) {
+                    RunReader reader = heads.poll();
+                    sink.accept(reader.current);
+                    if (reader.advance()) {
+                        heads.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+            } finally {
+                for (RunReader reader : heads) {
+                    reader.close();
+                }
+            }
+        }
+
+        void deleteRuns() throws IOException {
+            for (Path run : created) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /*
+     * Run file: a sequence of records, each ending in a marker byte of 1; 0 ends the file
+     */
+    private static final class RunWriter implements LineSink, AutoCloseable {
+
+        private final DataOutputStream out;
+
+        RunWriter(Path file) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        }
+
+        @Override
+        public void accept(Line line) throws IOException {
+            out.writeByte(1);
+            out.writeLong(line.account);
+            out.writeLong(line.sequence);
+            out.writeByte(line.kind.ordinal());
+            out.writeLong(line.counterparty);
+            out.writeByte(line.status.ordinal());
+            out.writeUTF(line.amount);
+            out.writeUTF(line.balance);
+            out.writeUTF(line.currency);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeByte(0);
+            out.close();
+        }
+    }
+
+    private static final class RunReader implements AutoCloseable {
+
+        private final DataInputStream in;
+        Line current;
+
+        RunReader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+        }
+
+        boolean advance() throws IOException {
+            if (in.readByte() == 0) {
+                current = null;
+                return false;
+            }
+            current = new Line(in.readLong(), in.readLong(), KINDS[in.readByte()], in.readLong(),
+                    STATUSES[in.readByte()], in.readUTF(), in.readUTF(), in.readUTF());
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /*
+     * Formats the sorted lines into one statement per account
+     */
+    private static final class StatementWriter implements LineSink {
+
+        private final Writer out;
+        private Line previous;
+        private long lines;
+
+        StatementWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void accept(Line line) throws IOException {
+            if (previous == null || previous.account != line.account) {
+                finish();
+                out.write("Statement for account " + line.account + "\n");
+            }
+            out.write(line.sequence + "\t" + line.kind
+                    + (line.kind == Kind.TRANSFER_OUT || line.kind == Kind.TRANSFER_IN ? " " + line.counterparty : "")
+                    + "\t" + line.amount + "\t" + line.status + "\t" + line.balance + " " + line.currency + "\n");
+            previous = line;
+            lines++;
+        }
+
+        /*
+         * Closes the statement of the previous account, if any
+         */
+        void finish() throws IOException {
+            if (previous != null) {
+                out.write("Closing balance " + previous.balance + " " + previous.currency + "\n\n");
+            }
+            previous = null;
+        }
+    }
+
+    /*
+     * One entry on one account's statement, with decimals kept as their plain text
+     */
+    private static final class Line {
+
+        final long account;
+        final long sequence;
+        final Kind kind;
+        final long counterparty;
+        final OperationStatus status;
+        final String amount;
+        final String balance;
+        final String currency;
+
+        Line(long account, long sequence, Kind kind, long counterparty, OperationStatus status,
+             String amount, String balance, String currency) {
+            this.account = account;
+            this.sequence = sequence;
+            this.kind = kind;
+            this.counterparty = counterparty;
+            this.status = status;
+            this.amount = amount;
+            this.balance = balance;
+            this.currency = currency;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java StatementGenerator <journal file> <output file>");
+            System.exit(2);
+        }
+        try (Writer out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            long lines = new StatementGenerator().generate(Paths.get(args[0]), out);
+            System.out.println(lines + " statement lines written to " + args[1]);
+        }
+    }
+}
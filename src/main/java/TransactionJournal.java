@@ -0,0 +1,311 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/*
+ * Append-only binary write-ahead journal of account mutations.
+ *
+ * Writers append encoded entries to an in-memory batch and get back a sequence number.
+ * A single flusher thread repeatedly takes the whole batch, writes it to the file and
+ * fsyncs it once (group commit), so the cost of one fsync is shared by every entry that
+ * arrived while the previous one was running. awaitDurable(sequence) blocks until the
+ * entry with that sequence number is on disk.
+ *
+ * Entry layout (big-endian): payload length int, payload, CRC32 of the payload int.
+ * The payload starts with an entry type byte and the account id (long); see the
+ * append methods for the rest. JournalReplayer reads the file back and stops at the
+ * first incomplete or corrupt entry, which is where a crash interrupted a write. open()
+ * therefore cuts such a tail off before appending, or every later entry would be lost.
+ */
+public class TransactionJournal implements Closeable {
+
+    static final byte OPEN = 1;
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAW = 3;
+    static final byte WITHDRAW_ALL = 4;
+    static final byte CONVERT = 5;
+    static final byte TRANSFER = 6;
+    static final byte TRANSFER_AMOUNT = 7;
+
+    private static final int INITIAL_BATCH_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final Thread flusher;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Entries appended since the flusher last took a batch, guarded by this
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BATCH_SIZE);
+    /**
+     * Buffer being written by the flusher, swapped with pending for every batch
+     */
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BATCH_SIZE);
+
+    private long appendedSequence;
+    private long durableSequence;
+    private long batches;
+    private boolean closed;
+    private IOException failure;
+
+    private TransactionJournal(FileChannel channel, long sequence) {
+        this.channel = channel;
+        this.appendedSequence = sequence;
+        this.durableSequence = sequence;
+        this.flusher = new Thread(this::flushLoop, "transaction-journal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    /*
+     * Opens the journal file for appending, creating it if needed.
+     *
+     * An existing file is read through once to find the end of its last valid entry;
+     * anything after it (an entry a crash cut off or left with a bad checksum) is
+     * truncated, so new entries follow the valid ones. Sequence numbers continue from
+     * the number of valid entries, matching those JournalReplayer reports.
+     */
+    public static TransactionJournal open(Path file) throws IOException {
+        final long[] entries = new long[1];
+        long valid = Files.exists(file) ? JournalReplayer.read(file, (sequence, entry) -> entries[0] = sequence) : 0;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() > valid) {
+                channel.truncate(valid);
+                channel.force(false);
+            }
+            channel.position(valid);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        TransactionJournal journal = new TransactionJournal(channel, entries[0]);
+        journal.flusher.start();
+        return journal;
+    }
+
+    /*
+     * Records that an account was opened with the given state
+     */
+    public synchronized long appendOpen(long accountId, BigDecimal balance, String currency, BigDecimal max_overdrawn) {
+        int start = beginEntry(OPEN, accountId);
+        putDecimal(balance);
+        putDecimal(max_overdrawn);
+        putString(currency);
+        return endEntry(start);
+    }
+
+    public synchronized long appendDeposit(long accountId, BigDecimal amount) {
+        int start = beginEntry(DEPOSIT, accountId);
+        putDecimal(amount);
+        return endEntry(start);
+    }
+
+    public synchronized long appendWithdraw(long accountId, BigDecimal amount) {
+        int start = beginEntry(WITHDRAW, accountId);
+        putDecimal(amount);
+        return endEntry(start);
+    }
+
+    public synchronized long appendWithdrawAll(long accountId) {
+        return endEntry(beginEntry(WITHDRAW_ALL, accountId));
+    }
+
+    public synchronized long appendConvert(long accountId, String currencyCode, double rate) {
+        int start = beginEntry(CONVERT, accountId);
+        ensureCapacity(8);
+        pending.putDouble(rate);
+        putString(currencyCode);
+        return endEntry(start);
+    }
+
+    public synchronized long appendTransfer(long fromAccountId, long toAccountId) {
+        int start = beginEntry(TRANSFER, fromAccountId);
+        ensureCapacity(8);
+        pending.putLong(toAccountId);
+        return endEntry(start);
+    }
+
+    public synchronized long appendTransfer(long fromAccountId, long toAccountId, BigDecimal amount) {
+        int start = beginEntry(TRANSFER_AMOUNT, fromAccountId);
+        ensureCapacity(8);
+        pending.putLong(toAccountId);
+        putDecimal(amount);
+        return endEntry(start);
+    }
+
+    /*
+     * Blocks until the entry with the given sequence number has been written and fsynced
+     */
+    public synchronized void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (durableSequence < sequence) {
+            if (failure != null) {
+                throw new UncheckedIOException("Journal write failed", failure);
+            }
+            if (closed && !flusher.isAlive()) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Number of fsynced batches so far; appended entries / batches is the group commit factor
+     */
+    public synchronized long batchCount() {
+        return batches;
+    }
+
+    public synchronized long durableSequence() {
+        return durableSequence;
+    }
+
+    /*
+     * Flushes everything appended so far and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long batchEnd;
+            synchronized (this) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // only close() stops the flusher
+                    }
+                }
+                if (pending.position() == 0) {
+                    notifyAll();
+                    return; // closed and drained
+                }
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+                batchEnd = appendedSequence;
+            }
+
+            writing.flip();
+            try {
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    closed = true;
+                    notifyAll();
+                }
+                return;
+            }
+            writing.clear();
+
+            synchronized (this) {
+                durableSequence = batchEnd;
+                batches++;
+                notifyAll();
+            }
+        }
+    }
+
+    private int beginEntry(byte type, long accountId) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        ensureCapacity(4 + 1 + 8);
+        int start = pending.position();
+        pending.putInt(0); // length, filled in by endEntry
+        pending.put(type);
+        pending.putLong(accountId);
+        return start;
+    }
+
+    private long endEntry(int start) {
+        int payloadStart = start + 4;
+        int length = pending.position() - payloadStart;
+        pending.putInt(start, length);
+        crc.reset();
+        crc.update(pending.array(), payloadStart, length);
+        ensureCapacity(4);
+        pending.putInt((int) crc.getValue());
+        if (start == 0) {
+            notifyAll(); // first entry of a new batch, wake the flusher
+        }
+        return ++appendedSequence;
+    }
+
+    private void putDecimal(BigDecimal value) {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        ensureCapacity(4 + 4 + unscaled.length);
+        pending.putInt(value.scale());
+        pending.putInt(unscaled.length);
+        pending.put(unscaled);
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(4 + bytes.length);
+        pending.putInt(bytes.length);
+        pending.put(bytes);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    static BigDecimal getDecimal(ByteBuffer buffer) {
+        int scale = buffer.getInt();
+        byte[] unscaled = new byte[buffer.getInt()];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+import java.math.BigDecimal;
+import java.util.function.Supplier;
+
+/*
+ * Moves funds between two accounts.
+ *
+ * Each transfer goes through the sender's own TransferToAccount or transfer, so every
+ * implementation guards it with whatever protects its own state. Between two Account
+ * objects (or two EventSourcedAccount objects) the transfer is atomic: both accounts are
+ * locked on their own monitors, the same ones their methods synchronize on, before any
+ * money is moved, so no other thread can observe or change either balance half way
+ * through. Ordered locking means nothing for accounts that do not guard their state with
+ * their monitor (ConcurrentAccount, the minor-unit accounts, the wrappers), so towards
+ * those the sender is debited on its own and the target credited afterwards.
+ *
+ * To stay deadlock-free when A->B and B->A transfers run at the same time, lockInOrder
+ * always takes the two monitors in a global order based on System.identityHashCode,
+ * with a shared tie lock for the rare case where two distinct accounts hash to the
+ * same value.
+ */
+public class TransferEngine {
+
+    /**
+     * Taken first whenever two accounts have the same identity hash code
+     */
+    private static final Object TIE_LOCK = new Object();
+
+    /*
+     * Transfers all available funds from one account to another, with the same rules as
+     * IAccount.TransferToAccount
+     */
+    public void transfer(IAccount from, IAccount to) {
+        if (from == to) {
+            return; // transferring to itself would move nothing
+        }
+        from.TransferToAccount(to);
+    }
+
+    /*
+     * Moves the given amount from one account to another, with the same rules as
+     * IAccount.transfer
+     */
+    public OperationStatus transfer(IAccount from, IAccount to, BigDecimal amount) {
+        return from.transfer(to, amount);
+    }
+
+    /*
+     * Runs the action while holding the monitors of both objects, acquired in a
+     * globally consistent order. Locking the same object twice is allowed.
+     *
+     * Only useful for objects that guard all of their state with their own monitor;
+     * the action must not lock any other account, or the global order is lost.
+     */
+    static void lockInOrder(Object first, Object second, Runnable action) {
+        lockInOrder(first, second, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /*
+     * Same as above, for actions that produce a result
+     */
+    static <T> T lockInOrder(Object first, Object second, Supplier<T> action) {
+        int firstHash = System.identityHashCode(first);
+        int secondHash = System.identityHashCode(second);
+
+        if (firstHash < secondHash) {
+            synchronized (first) {
+                synchronized (second) {
+                    return action.get();
+                }
+            }
+        } else if (firstHash > secondHash) {
+            synchronized (second) {
+                synchronized (first) {
+                    return action.get();
+                }
+            }
+        } else {
+            synchronized (TIE_LOCK) {
+                synchronized (first) {
+                    synchronized (second) {
+                        return action.get();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import java.math.BigDecimal;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/*
+ * Request-per-operation front end that runs every IAccount operation on its own virtual
+ * thread (Java 21, built with the java21 profile).
+ *
+ * A blocked virtual thread only holds a small heap-allocated stack, not an OS thread, so a
+ * gateway can have hundreds of thousands of operations in flight while they wait for
+ * locks, I/O or a journal fsync. The number in flight is capped by a Semaphore: submitting
+ * blocks the caller while the limit is reached, which pushes back on the gateway instead
+ * of letting queued work grow without bound. Blocking there is cheap when the caller is
+ * itself a virtual thread.
+ *
+ * Account synchronizes its methods, and on Java 21 a virtual thread that blocks on a
+ * monitor pins its carrier thread. The critical sections are short, so this only limits
+ * parallelism under heavy contention on one account; ConcurrentAccount is lock-free.
+ */
+public class VirtualThreadAccountExecutor implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore limiter;
+    private final int maxInFlight;
+
+    public VirtualThreadAccountExecutor(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.limiter = new Semaphore(maxInFlight);
+    }
+
+    public CompletableFuture<BigDecimal> withdraw(IAccount account, BigDecimal amount) {
+        return submit(() -> account.withdraw(amount));
+    }
+
+    public CompletableFuture<BigDecimal> withdrawAll(IAccount account) {
+        return submit(account::withdrawAll);
+    }
+
+    public CompletableFuture<BigDecimal> deposit(IAccount account, BigDecimal amount) {
+        return submit(() -> account.deposit(amount));
+    }
+
+    public CompletableFuture<BigDecimal> getBalance(IAccount account) {
+        return submit(account::getBalance);
+    }
+
+    public CompletableFuture<Void> convertToCurrency(IAccount account, String currency_code, double rate) {
+        return submit(() -> {
+            account.convertToCurrency(currency_code, rate);
+            return null;
+        });
+    }
+
+    public CompletableFuture<OperationStatus> transfer(IAccount from, IAccount to, BigDecimal amount) {
+        return submit(() -> from.transfer(to, amount));
+    }
+
+    /*
+     * Runs any blocking request handler on its own virtual thread, e.g. one that validates
+     * a payment, journals it and then applies it. Blocks while maxInFlight operations are
+     * running; throws RejectedExecutionException if interrupted while waiting or closed.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> operation) {
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for capacity", e);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                T value;
+                try {
+                    value = operation.call();
+                } catch (Throwable e) {
+                    limiter.release();
+                    result.completeExceptionally(e);
+                    return;
+                }
+                // Release first, so the operation no longer counts once its result is seen
+                limiter.release();
+                result.complete(value);
+            });
+        } catch (RejectedExecutionException e) {
+            limiter.release();
+            throw e;
+        }
+        return result;
+    }
+
+    /*
+     * Operations submitted and not yet finished
+     */
+    public int inFlight() {
+        return maxInFlight - limiter.availablePermits();
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    /*
+     * Stops accepting operations and waits for the ones in flight to finish
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
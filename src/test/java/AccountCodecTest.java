@@ -0,0 +1,150 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class AccountCodecTest {
+
+    @Test
+    void testAccountRoundTrip() {
+        /*
+         * Expected behavior: Every account decodes to the same currency, balance and limit,
+         *                     whichever IAccount implementation it was encoded from.
+         */
+        AccountStore source = new AccountStore();
+        List<IAccount> accounts = Arrays.asList(
+                new Account(new BigDecimal("1234.50"), "SEK", new BigDecimal("500")),
+                new Account(new BigDecimal("-20"), "EUR", new BigDecimal("50")),
+                new FixedPointAccount(new BigDecimal("700"), "JPY", BigDecimal.ZERO),
+                new FixedPointAccount(new BigDecimal("-1.234"), "KWD", new BigDecimal("2")),
+                source.account(source.createMinor(Long.MIN_VALUE, CurrencyCode.USD, Long.MAX_VALUE)),
+                source.account(source.createMinor(Long.MAX_VALUE, CurrencyCode.CNY, 0)));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(accounts.size() * AccountCodec.MAX_ACCOUNT_SIZE);
+        for (IAccount account : accounts) {
+            AccountCodec.encodeAccount(account, buffer);
+        }
+        buffer.flip();
+        AccountStore store = new AccountStore();
+        for (IAccount account : accounts) {
+            ByteBuffer copy = buffer.duplicate();
+            Account decoded = AccountCodec.decodeAccount(buffer);
+            int id = AccountCodec.decodeAccount(copy, store);
+
+            assertEquals(account.getCurrencyCode(), decoded.getCurrencyCode());
+            assertEquals(0, account.getBalance().compareTo(decoded.getBalance()));
+            assertEquals(0, account.getMaxOverdrawn().compareTo(decoded.getMaxOverdrawn()));
+            assertEquals(account.getCurrencyCode(), store.currency(id));
+            assertEquals(0, account.getBalance().compareTo(store.account(id).getBalance()));
+            assertEquals(0, account.getMaxOverdrawn().compareTo(store.account(id).getMaxOverdrawn()));
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    void testEncodedSize() throws IOException {
+        /*
+         * Expected behavior: A typical account fits in a handful of bytes, far less than
+         *                     Java serialization of its BigDecimal and String fields.
+         */
+        ByteBuffer buffer = ByteBuffer.allocate(AccountCodec.MAX_ACCOUNT_SIZE);
+        Account account = new Account(new BigDecimal("1234.50"), "SEK", new BigDecimal("500"));
+        AccountCodec.encodeAccount(account, buffer);
+        assertEquals(8, buffer.position());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(account.getBalance());
+            out.writeObject(account.getCurrency());
+            out.writeObject(account.getMaxOverdrawn());
+        }
+        assertTrue(bytes.size() > 10 * buffer.position());
+
+        buffer.clear();
+        AccountCodec.encodeOperation(Operation.withdraw(5, 100), buffer);
+        assertEquals(4, buffer.position());
+    }
+
+    @Test
+    void testOperationsRoundTrip() {
+        /*
+         * Expected behavior: A decoded batch has the same operations as the original, and
+         *                     applying it to a store gives the same statuses and balances.
+         */
+        Random random = new Random(42);
+        List<Operation> operations = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            int account = random.nextInt(110) - 5; // some unknown ids, including negative ones
+            long amount = random.nextInt(10) == 0 ? random.nextLong() : random.nextInt(5_000) - 100;
+            switch (random.nextInt(3)) {
+                case 0:
+                    operations.add(Operation.deposit(account, amount));
+                    break;
+                case 1:
+                    operations.add(Operation.withdraw(account, amount));
+                    break;
+                default:
+                    operations.add(Operation.transfer(account, random.nextInt(100), amount));
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(operations.size() * AccountCodec.MAX_OPERATION_SIZE);
+        AccountCodec.encodeOperations(operations, buffer);
+        buffer.flip();
+        List<Operation> decoded = AccountCodec.decodeOperations(buffer);
+
+        assertEquals(operations.size(), decoded.size());
+        for (int i = 0; i < operations.size(); i++) {
+            assertEquals(operations.get(i).getType(), decoded.get(i).getType());
+            assertEquals(operations.get(i).getAccount(), decoded.get(i).getAccount());
+            assertEquals(operations.get(i).getTarget(), decoded.get(i).getTarget());
+            assertEquals(operations.get(i).getAmount(), decoded.get(i).getAmount());
+        }
+
+        AccountStore expected = new AccountStore();
+        AccountStore actual = new AccountStore();
+        for (int i = 0; i < 100; i++) {
+            expected.createMinor(10_000, CurrencyCode.SEK, 5_000);
+            actual.createMinor(10_000, CurrencyCode.SEK, 5_000);
+        }
+        BatchResult expectedResult = expected.applyBatch(operations);
+        BatchResult actualResult = actual.applyBatch(decoded);
+        for (int i = 0; i < operations.size(); i++) {
+            assertEquals(expectedResult.status(i), actualResult.status(i));
+        }
+        for (int id = 0; id < 100; id++) {
+            assertEquals(expected.balanceMinor(id), actual.balanceMinor(id));
+        }
+    }
+
+    @Test
+    void testRejectsMalformedInput() {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        AccountCodec.encodeAccount(CurrencyCode.SEK, 100, 0, buffer);
+        buffer.flip();
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.decodeOperation(buffer.duplicate()));
+
+        ByteBuffer truncated = (ByteBuffer) buffer.duplicate().limit(2);
+        assertThrows(BufferUnderflowException.class, () -> AccountCodec.decodeAccount(truncated));
+
+        buffer.put(0, (byte) (2 << 4)); // version 2
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.decodeAccount(buffer.duplicate()));
+
+        ByteBuffer overlong = ByteBuffer.wrap(new byte[]{0x11, 0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0});
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.decodeOperation(overlong));
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.encodeAccount(CurrencyCode.SEK, 0, -1, buffer));
+    }
+}
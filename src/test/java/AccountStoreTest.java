@@ -0,0 +1,267 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class AccountStoreTest {
+
+    @Test
+    void testCreateAndRead() {
+        AccountStore store = new AccountStore(1); // forces the columns to grow
+        int sek = store.create(new BigDecimal("12.34"), "SEK", new BigDecimal("100"));
+        int usd = store.create(new BigDecimal("5"), "USD", new BigDecimal("-1"));
+        int jpy = store.create(new BigDecimal("700"), "JPY", BigDecimal.ZERO);
+
+        assertEquals(3, store.size());
+        assertEquals(1234L, store.balanceMinor(sek));
+        assertEquals(10000L, store.maxOverdrawnMinor(sek));
+        assertEquals(0L, store.maxOverdrawnMinor(usd)); // max_overdrawn must be non-negative
+        assertEquals(CurrencyCode.USD, store.currency(usd));
+        assertEquals(700L, store.balanceMinor(jpy));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> store.account(3));
+    }
+
+    @Test
+    void testViewsWriteThroughToStore() {
+        /*
+         * Expected behavior: Operations on an account view follow Account's rules and
+         *                     update the underlying columns, visible from other views.
+         */
+        AccountStore store = new AccountStore();
+        int id = store.create(new BigDecimal("100"), "SEK", new BigDecimal("50"));
+        IAccount account = store.account(id);
+
+        assertEquals(0, account.withdraw(new BigDecimal("120")).compareTo(new BigDecimal("-20")));
+        assertEquals(0, account.withdraw(new BigDecimal("100")).compareTo(new BigDecimal("-20"))); // rejected
+        assertEquals(0, account.deposit(new BigDecimal("30.50")).compareTo(new BigDecimal("10.50")));
+        assertEquals(1050L, store.balanceMinor(id));
+        assertEquals(0, store.account(id).getBalance().compareTo(new BigDecimal("10.50")));
+
+        account.convertToCurrency("EUR", 0.1);
+        assertEquals(CurrencyCode.EUR, store.currency(id));
+        assertEquals(105L, store.balanceMinor(id));
+    }
+
+    @Test
+    void testTransferBetweenViews() {
+        AccountStore store = new AccountStore();
+        int a = store.create(new BigDecimal("10"), "SEK", BigDecimal.ZERO);
+        int b = store.create(new BigDecimal("5"), "SEK", BigDecimal.ZERO);
+        int c = store.create(new BigDecimal("5"), "EUR", BigDecimal.ZERO);
+
+        store.account(a).TransferToAccount(store.account(b));
+        assertEquals(0L, store.balanceMinor(a));
+        assertEquals(1500L, store.balanceMinor(b));
+
+        store.account(b).TransferToAccount(store.account(c)); // currency mismatch
+        assertEquals(1500L, store.balanceMinor(b));
+
+        store.account(b).TransferToAccount(store.account(b)); // same row through two views
+        assertEquals(1500L, store.balanceMinor(b));
+    }
+
+    @Test
+    void testBulkScans() {
+        AccountStore store = new AccountStore();
+        for (int i = 0; i < 10_000; i++) {
+            store.create(BigDecimal.valueOf(i % 2 == 0 ? 1 : -1), i % 3 == 0 ? "EUR" : "SEK", BigDecimal.ONE);
+        }
+        assertEquals(5_000, store.countOverdrawn());
+        assertEquals(0, store.totalBalance(CurrencyCode.EUR).compareTo(BigDecimal.ZERO));
+        assertEquals(0, store.totalBalance(CurrencyCode.SEK).compareTo(BigDecimal.ZERO));
+        assertEquals(0, store.totalBalance(CurrencyCode.USD).compareTo(BigDecimal.ZERO));
+    }
+
+    @Test
+    void testApplyBatch() {
+        /*
+         * Expected behavior: Every operation gets its own status; rejected operations
+         *                     leave balances untouched and later operations still run.
+         */
+        AccountStore store = new AccountStore();
+        int a = store.create(new BigDecimal("100"), "SEK", new BigDecimal("50"));
+        int b = store.create(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        int usd = store.create(BigDecimal.ZERO, "USD", BigDecimal.ZERO);
+
+        BatchResult result = store.applyBatch(Arrays.asList(
+                Operation.withdraw(a, 12000),      // 100 -> -20, within overdraft
+                Operation.withdraw(a, 10000),      // would reach -120, rejected
+                Operation.deposit(b, 500),
+                Operation.transfer(a, b, 3000),    // -20 -> -50, exact limit
+                Operation.transfer(b, usd, 100),   // currency mismatch
+                Operation.deposit(a, -1),          // negative amount
+                Operation.deposit(42, 1),          // no such account
+                Operation.transfer(b, a, 3500)));
+
+        assertEquals(8, result.size());
+        assertEquals(OperationStatus.OK, result.status(0));
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, result.status(1));
+        assertEquals(OperationStatus.OK, result.status(2));
+        assertEquals(OperationStatus.OK, result.status(3));
+        assertEquals(OperationStatus.CURRENCY_MISMATCH, result.status(4));
+        assertEquals(OperationStatus.INVALID_AMOUNT, result.status(5));
+        assertEquals(OperationStatus.UNKNOWN_ACCOUNT, result.status(6));
+        assertEquals(OperationStatus.OK, result.status(7));
+        assertEquals(4, result.count(OperationStatus.OK));
+
+        assertEquals(-1500L, store.balanceMinor(a));
+        assertEquals(0L, store.balanceMinor(b));
+        assertEquals(0L, store.balanceMinor(usd));
+    }
+
+    @Test
+    void testParallelBatchMatchesSequential() {
+        /*
+         * Expected behavior: Applying the same random batch sequentially and on a
+         *                     ForkJoinPool gives the same statuses and balances.
+         */
+        AccountStore sequential = new AccountStore();
+        AccountStore parallel = new AccountStore();
+        for (int i = 0; i < 1_000; i++) {
+            String currency = i % 10 == 0 ? "EUR" : "SEK";
+            sequential.create(BigDecimal.valueOf(i % 50), currency, BigDecimal.TEN);
+            parallel.create(BigDecimal.valueOf(i % 50), currency, BigDecimal.TEN);
+        }
+
+        Random random = new Random(42);
+        List<Operation> operations = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            int account = random.nextInt(1_000);
+            long amount = random.nextInt(3_000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    operations.add(Operation.deposit(account, amount));
+                    break;
+                case 1:
+                    operations.add(Operation.withdraw(account, amount));
+                    break;
+                default:
+                    operations.add(Operation.transfer(account, random.nextInt(1_000), amount));
+            }
+        }
+
+        BatchResult expected = sequential.applyBatch(operations);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BatchResult actual = parallel.applyBatch(operations, pool);
+            for (int i = 0; i < operations.size(); i++) {
+                assertEquals(expected.status(i), actual.status(i));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        for (int id = 0; id < 1_000; id++) {
+            assertEquals(sequential.balanceMinor(id), parallel.balanceMinor(id));
+        }
+        assertTrue(expected.count(OperationStatus.INSUFFICIENT_FUNDS) > 0);
+        assertTrue(expected.count(OperationStatus.CURRENCY_MISMATCH) > 0);
+    }
+
+    @Test
+    void testConvertAllRoundsExactly() {
+        /*
+         * Expected behavior: Every account of the from-currency gets the exact converted
+         *                     balance rounded half-even to the new minor unit and its limit
+         *                     truncated; other currencies are untouched, and an account
+         *                     whose result does not fit stays as it was.
+         */
+        AccountStore store = new AccountStore();
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            String currency = i % 4 == 0 ? "EUR" : "SEK";
+            store.create(BigDecimal.valueOf(random.nextInt(2_000_000) - 1_000_000, 2), currency,
+                    BigDecimal.valueOf(random.nextInt(100_000), 2));
+        }
+        int huge = store.create(BigDecimal.valueOf(Long.MAX_VALUE / 10, 2), "SEK", BigDecimal.ZERO);
+        AccountStore before = copy(store);
+
+        BigDecimal rate = new BigDecimal("14.3859");
+        int converted = store.convertAll(CurrencyCode.SEK, CurrencyCode.KWD, rate);
+
+        assertEquals(before.size() - 2_500 - 1, converted);
+        for (int id = 0; id < store.size(); id++) {
+            if (before.currency(id) != CurrencyCode.SEK || id == huge) {
+                assertEquals(before.currency(id), store.currency(id));
+                assertEquals(before.balanceMinor(id), store.balanceMinor(id));
+                continue;
+            }
+            BigDecimal balance = before.account(id).getBalance().multiply(rate).setScale(3, RoundingMode.HALF_EVEN);
+            BigDecimal limit = before.account(id).getMaxOverdrawn().multiply(rate).setScale(3, RoundingMode.DOWN);
+            assertEquals(CurrencyCode.KWD, store.currency(id));
+            assertEquals(balance.unscaledValue().longValueExact(), store.balanceMinor(id));
+            assertEquals(limit.unscaledValue().longValueExact(), store.maxOverdrawnMinor(id));
+        }
+
+
+        AccountStore ties = new AccountStore();
+        for (String balance : new String[]{"-0.25", "0.25", "0.35", "-0.35", "123456.78"}) {
+            ties.create(new BigDecimal(balance), "SEK", BigDecimal.ZERO);
+        }
+        assertEquals(5, ties.convertAll(CurrencyCode.SEK, CurrencyCode.EUR, new BigDecimal("0.5")));
+        assertEquals(-12L, ties.balanceMinor(0)); // -0.125 -> -0.12
+        assertEquals(12L, ties.balanceMinor(1));
+        assertEquals(18L, ties.balanceMinor(2)); // 0.175 -> 0.18
+        assertEquals(-18L, ties.balanceMinor(3));
+        assertEquals(5, ties.convertAll(CurrencyCode.EUR, CurrencyCode.JPY, new BigDecimal("1E-20"))); // BigDecimal path
+        assertEquals(0L, ties.balanceMinor(4));
+        assertThrows(IllegalArgumentException.class, () -> store.convertAll(CurrencyCode.EUR, CurrencyCode.SEK, BigDecimal.ZERO));
+    }
+
+    @Test
+    void testParallelConvertAllMatchesSequential() {
+        /*
+         * Expected behavior: Converting on a ForkJoinPool gives the same balances as the
+         *                     sequential version, from one thread up to the number of
+         *                     available processors.
+         */
+        final int accounts = 100_000;
+        AccountStore expected = randomStore(accounts);
+        int expectedConverted = expected.convertAll(CurrencyCode.SEK, CurrencyCode.EUR, new BigDecimal("0.087123"));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads = threads == cores ? cores + 1 : Math.min(threads * 2, cores)) {
+            AccountStore store = randomStore(accounts);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                assertEquals(expectedConverted,
+                        store.convertAll(CurrencyCode.SEK, CurrencyCode.EUR, new BigDecimal("0.087123"), pool));
+            } finally {
+                pool.shutdown();
+            }
+            for (int id = 0; id < accounts; id++) {
+                assertEquals(expected.currency(id), store.currency(id));
+                assertEquals(expected.balanceMinor(id), store.balanceMinor(id));
+                assertEquals(expected.maxOverdrawnMinor(id), store.maxOverdrawnMinor(id));
+            }
+        }
+    }
+
+    private static AccountStore randomStore(int accounts) {
+        AccountStore store = new AccountStore(accounts);
+        Random random = new Random(42);
+        for (int i = 0; i < accounts; i++) {
+            store.create(BigDecimal.valueOf(random.nextInt(), 2), i % 10 == 0 ? "USD" : "SEK",
+                    BigDecimal.valueOf(random.nextInt(100_000), 2));
+        }
+        return store;
+    }
+
+    private static AccountStore copy(AccountStore store) {
+        AccountStore copy = new AccountStore(store.size());
+        for (int id = 0; id < store.size(); id++) {
+            copy.create(store.account(id).getBalance(), store.currency(id).name(), store.account(id).getMaxOverdrawn());
+        }
+        return copy;
+    }
+}
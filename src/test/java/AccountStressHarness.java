@@ -0,0 +1,392 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Concurrency stress and linearizability checker for any thread-safe IAccount
+ * implementation, created through a JournalReplayer.AccountFactory.
+ *
+ * The stress phase runs threads doing a random mix of withdraw, deposit, withdrawAll,
+ * transfer, TransferToAccount and getBalance on a few shared SEK accounts, and checks:
+ *  - no balance ever observed, and no final balance, is below -max_overdrawn;
+ *  - money is conserved. Deposits and withdrawAll report exactly what came in and went
+ *    out. A plain withdraw does not say whether it was accepted, so every withdraw asks
+ *    for the same WITHDRAW_UNIT while every other amount has odd cents: the missing
+ *    money must then be a whole number of units, at most one per withdraw, and a lost
+ *    deposit or transfer shows up as a remainder.
+ *
+ * The linearizability phase runs many tiny histories (a few threads, a few operations
+ * each, on two fresh accounts), records when every call started and returned, and
+ * searches for an order of the calls that respects real time and gives every call its
+ * observed result under the single-threaded rules of Account (Wing and Gong). Histories
+ * are small enough for the search to be exhaustive.
+ *
+ * Every thread draws its operations from a Random seeded from the harness seed, so a
+ * failure can be rerun with the same operations; the interleaving itself is up to the
+ * scheduler.
+ */
+final class AccountStressHarness {
+
+    static final BigDecimal WITHDRAW_UNIT = new BigDecimal("10.00");
+
+    private static final BigDecimal STARTING_BALANCE = new BigDecimal("1000.00");
+    private static final BigDecimal MAX_OVERDRAWN = new BigDecimal("500.00");
+    private static final int HISTORY_THREADS = 3;
+    private static final int HISTORY_OPERATIONS = 3;
+
+    private final JournalReplayer.AccountFactory factory;
+    private final int threads;
+    private final int accounts;
+    private final int operationsPerThread;
+    private final int histories;
+    private final long seed;
+
+    AccountStressHarness(JournalReplayer.AccountFactory factory, int threads, int accounts, int operationsPerThread,
+                         int histories, long seed) {
+        this.factory = factory;
+        this.threads = threads;
+        this.accounts = accounts;
+        this.operationsPerThread = operationsPerThread;
+        this.histories = histories;
+        this.seed = seed;
+    }
+
+    Report run() throws Exception {
+        Report report = new Report();
+        stress(report);
+        for (int h = 0; h < histories && report.violations.isEmpty(); h++) {
+            checkHistory(h, report);
+        }
+        return report;
+    }
+
+    private void stress(Report report) throws Exception {
+        final IAccount[] shared = new IAccount[accounts];
+        for (int i = 0; i < accounts; i++) {
+            shared[i] = factory.create(STARTING_BALANCE, "SEK", MAX_OVERDRAWN);
+        }
+        final BigDecimal floor = MAX_OVERDRAWN.negate();
+        List<Callable<Flows>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(seed * 1_000_003 + t);
+            tasks.add(() -> {
+                Flows flows = new Flows();
+                for (int i = 0; i < operationsPerThread; i++) {
+                    IAccount account = shared[random.nextInt(accounts)];
+                    IAccount other = shared[random.nextInt(accounts)];
+                    int choice = random.nextInt(100);
+                    BigDecimal observed;
+                    if (choice < 30) {
+                        BigDecimal amount = oddCents(random);
+                        observed = account.deposit(amount);
+                        flows.deposited = flows.deposited.add(amount);
+                    } else if (choice < 60) {
+                        observed = account.withdraw(WITHDRAW_UNIT);
+                        flows.withdrawals++;
+                    } else if (choice < 85) {
+                        account.transfer(other, oddCents(random));
+                        observed = account.getBalance();
+                    } else if (choice < 90) {
+                        account.TransferToAccount(other);
+                        observed = other.getBalance();
+                    } else if (choice < 92) {
+                        flows.withdrawnAll = flows.withdrawnAll.add(account.withdrawAll());
+                        observed = account.getBalance();
+                    } else {
+                        observed = account.getBalance();
+                    }
+                    if (observed.compareTo(floor) < 0) {
+                        flows.floorViolations++;
+                    }
+                }
+                return flows;
+            });
+        }
+
+        long start = System.nanoTime();
+        List<Flows> results = runConcurrently(tasks);
+        long elapsed = System.nanoTime() - start;
+        report.operations = (long) threads * operationsPerThread;
+        report.operationsPerSecond = report.operations / (elapsed / 1e9);
+
+        BigDecimal expected = STARTING_BALANCE.multiply(BigDecimal.valueOf(accounts));
+        long withdrawals = 0;
+        for (Flows flows : results) {
+            expected = expected.add(flows.deposited).subtract(flows.withdrawnAll);
+            withdrawals += flows.withdrawals;
+            if (flows.floorViolations > 0) {
+                report.violations.add(flows.floorViolations + " balances observed below -max_overdrawn");
+            }
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (IAccount account : shared) {
+            total = total.add(account.getBalance());
+            if (account.getBalance().compareTo(floor) < 0) {
+                report.violations.add("Final balance " + account.getBalance() + " below -max_overdrawn");
+            }
+        }
+        BigDecimal[] units = expected.subtract(total).divideAndRemainder(WITHDRAW_UNIT);
+        if (units[1].signum() != 0 || units[0].signum() < 0 || units[0].compareTo(BigDecimal.valueOf(withdrawals)) > 0) {
+            report.violations.add("Money not conserved: total " + total + ", expected " + expected
+                    + " minus up to " + withdrawals + " withdrawals of " + WITHDRAW_UNIT);
+        }
+        report.acceptedWithdrawals = units[0].longValue();
+    }
+
+    /*
+     * Amounts between 0.01 and 50.00 with an odd number of cents, never a multiple of
+     * WITHDRAW_UNIT
+     */
+    private static BigDecimal oddCents(Random random) {
+        return BigDecimal.valueOf(random.nextInt(2_500) * 2 + 1, 2);
+    }
+
+    private void checkHistory(int index, Report report) throws Exception {
+        final IAccount[] pair = {
+                factory.create(new BigDecimal("20.00"), "SEK", new BigDecimal("10.00")),
+                factory.create(new BigDecimal("5.00"), "SEK", BigDecimal.ZERO)};
+        final BigDecimal[] initial = {new BigDecimal("20.00"), new BigDecimal("5.00")};
+        final BigDecimal[] limits = {new BigDecimal("10.00"), BigDecimal.ZERO};
+        final AtomicLong clock = new AtomicLong();
+        final Random random = new Random(seed * 31 + index);
+
+        List<Callable<List<Call>>> tasks = new ArrayList<>();
+        for (int t = 0; t < HISTORY_THREADS; t++) {
+            final List<Call> planned = new ArrayList<>();
+            for (int i = 0; i < HISTORY_OPERATIONS; i++) {
+                planned.add(Call.random(random));
+            }
+            tasks.add(() -> {
+                for (Call call : planned) {
+                    call.invoked = clock.incrementAndGet();
+                    call.result = call.apply(pair);
+                    call.returned = clock.incrementAndGet();
+                }
+                return planned;
+            });
+        }
+        List<Call> history = new ArrayList<>();
+        for (List<Call> calls : runConcurrently(tasks)) {
+            history.addAll(calls);
+        }
+        BigDecimal[] observedFinal = {pair[0].getBalance(), pair[1].getBalance()};
+        report.histories++;
+        if (!isLinearizable(history, initial, limits, observedFinal)) {
+            report.violations.add("History " + index + " is not linearizable: " + history
+                    + ", final balances " + Arrays.toString(observedFinal));
+        }
+    }
+
+    /*
+     * Wing and Gong search: true if the calls can be put in an order that respects real
+     * time (a call that returned before another was invoked comes first) in which each
+     * gives its recorded result under the rules of Account, ending in the final balances
+     */
+    static boolean isLinearizable(List<Call> history, BigDecimal[] initial, BigDecimal[] limits,
+                                  BigDecimal[] finalBalances) {
+        if (history.size() > 30) {
+            throw new IllegalArgumentException("History too long for an exhaustive search");
+        }
+        return search(history, 0, initial.clone(), limits, finalBalances, new HashSet<String>());
+    }
+
+    private static boolean search(List<Call> history, int done, BigDecimal[] balances, BigDecimal[] limits,
+                                  BigDecimal[] finalBalances, Set<String> failed) {
+        if (done == (1 << history.size()) - 1) {
+            return balances[0].compareTo(finalBalances[0]) == 0 && balances[1].compareTo(finalBalances[1]) == 0;
+        }
+        String key = done + ":" + balances[0].stripTrailingZeros() + ":" + balances[1].stripTrailingZeros();
+        if (failed.contains(key)) {
+            return false;
+        }
+        for (int i = 0; i < history.size(); i++) {
+            if ((done & 1 << i) != 0 || !isMinimal(history, done, i)) {
+                continue;
+            }
+            BigDecimal[] next = balances.clone();
+            if (history.get(i).matchesModel(next, limits)
+                    && search(history, done | 1 << i, next, limits, finalBalances, failed)) {
+                return true;
+            }
+        }
+        failed.add(key);
+        return false;
+    }
+
+    /*
+     * True if no pending call returned before call i was invoked
+     */
+    private static boolean isMinimal(List<Call> history, int done, int i) {
+        for (int j = 0; j < history.size(); j++) {
+            if ((done & 1 << j) == 0 && history.get(j).returned < history.get(i).invoked) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> List<T> runConcurrently(List<Callable<T>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (final Callable<T> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(120, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static final class Flows {
+        BigDecimal deposited = BigDecimal.ZERO;
+        BigDecimal withdrawnAll = BigDecimal.ZERO;
+        long withdrawals;
+        long floorViolations;
+    }
+
+    /*
+     * One call in a recorded history; invoked and returned are ticks of a shared counter
+     */
+    static final class Call {
+
+        enum Kind {
+            WITHDRAW, DEPOSIT, TRANSFER, TRANSFER_ALL, GET_BALANCE
+        }
+
+        final Kind kind;
+        final int account;
+        final int target;
+        final BigDecimal amount;
+        long invoked;
+        long returned;
+        Object result;
+
+        Call(Kind kind, int account, int target, BigDecimal amount) {
+            this.kind = kind;
+            this.account = account;
+            this.target = target;
+            this.amount = amount;
+        }
+
+        static Call random(Random random) {
+            Kind kind = Kind.values()[random.nextInt(Kind.values().length)];
+            int account = random.nextInt(2);
+            BigDecimal amount = BigDecimal.valueOf(5 * (1 + random.nextInt(4)));
+            return new Call(kind, account, 1 - account, amount);
+        }
+
+        Object apply(IAccount[] accounts) {
+            IAccount account = accounts[this.account];
+            switch (kind) {
+                case WITHDRAW:
+                    return account.withdraw(amount);
+                case DEPOSIT:
+                    return account.deposit(amount);
+                case TRANSFER:
+                    return account.transfer(accounts[target], amount);
+                case TRANSFER_ALL:
+                    account.TransferToAccount(accounts[target]);
+                    return null;
+                case GET_BALANCE:
+                default:
+                    return account.getBalance();
+            }
+        }
+
+        /*
+         * Applies the call to the model balances with the rules of Account and returns
+         * whether the recorded result is what the model gives
+         */
+        boolean matchesModel(BigDecimal[] balances, BigDecimal[] limits) {
+            BigDecimal balance = balances[account];
+            switch (kind) {
+                case WITHDRAW:
+                    if (balance.subtract(amount).compareTo(limits[account].negate()) >= 0) {
+                        balances[account] = balance.subtract(amount);
+                    }
+                    return sameAmount(balances[account]);
+                case DEPOSIT:
+                    if (amount.signum() >= 0) {
+                        balances[account] = balance.add(amount);
+                    }
+                    return sameAmount(balances[account]);
+                case TRANSFER:
+                    OperationStatus status = OperationStatus.OK;
+                    if (amount.signum() <= 0) {
+                        status = OperationStatus.INVALID_AMOUNT;
+                    } else if (balance.subtract(amount).compareTo(limits[account].negate()) < 0) {
+                        status = OperationStatus.INSUFFICIENT_FUNDS;
+                    } else {
+                        balances[account] = balance.subtract(amount);
+                        balances[target] = balances[target].add(amount);
+                    }
+                    return status == result;
+                case TRANSFER_ALL:
+                    if (balance.signum() > 0) {
+                        balances[account] = BigDecimal.ZERO;
+                        balances[target] = balances[target].add(balance);
+                    }
+                    return true;
+                case GET_BALANCE:
+                default:
+                    return sameAmount(balance);
+            }
+        }
+
+        private boolean sameAmount(BigDecimal expected) {
+            return result instanceof BigDecimal && ((BigDecimal) result).compareTo(expected) == 0;
+        }
+
+        @Override
+        public String toString() {
+            return kind + "(" + account + (kind == Kind.TRANSFER || kind == Kind.TRANSFER_ALL ? "->" + target : "")
+                    + (kind == Kind.TRANSFER_ALL || kind == Kind.GET_BALANCE ? "" : ", " + amount.toPlainString())
+                    + ")=" + result + " @" + invoked + "-" + returned;
+        }
+    }
+
+    /*
+     * Outcome of a run: passed() if no invariant was broken and every history was
+     * linearizable
+     */
+    static final class Report {
+
+        final List<String> violations = new ArrayList<>();
+        long operations;
+        double operationsPerSecond;
+        long acceptedWithdrawals;
+        int histories;
+
+        boolean passed() {
+            return violations.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d operations, %.0f ops/sec, %d withdrawals accepted, %d histories checked%s",
+                    passed() ? "PASSED" : "FAILED", operations, operationsPerSecond, acceptedWithdrawals, histories,
+                    passed() ? "" : "\n  " + String.join("\n  ", violations));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class AccountStressHarnessTest {
+
+    private static final int THREADS = 4;
+    private static final int ACCOUNTS = 4;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+    private static final int HISTORIES = 50;
+    private static final long SEED = 42;
+
+    private static void assertPasses(String name, JournalReplayer.AccountFactory factory) throws Exception {
+        AccountStressHarness.Report report = new AccountStressHarness(factory, THREADS, ACCOUNTS,
+                OPERATIONS_PER_THREAD, HISTORIES, SEED).run();
+        assertTrue(report.passed(), name + ": " + report);
+    }
+
+    @Test
+    void testAccountPassesStressAndLinearizability() throws Exception {
+        /*
+         * Expected behavior: Under concurrent withdraws, deposits and transfers no balance
+         *                     goes below -max_overdrawn, no money is created or lost, and
+         *                     every recorded history has a valid sequential order.
+         */
+        assertPasses("Account", Account::new);
+    }
+
+    @Test
+    void testConcurrentAccountPassesStressAndLinearizability() throws Exception {
+        assertPasses("ConcurrentAccount", ConcurrentAccount::new);
+    }
+
+    @Test
+    void testEventSourcedAccountPassesStressAndLinearizability() throws Exception {
+        assertPasses("EventSourcedAccount", EventSourcedAccount::new);
+    }
+
+    @Test
+    void testMeteredAccountPassesStressAndLinearizability() throws Exception {
+        /*
+         * Expected behavior: Wrapping Account in MeteredAccount keeps it linearizable.
+         */
+        final AccountMetrics metrics = new AccountMetrics();
+        assertPasses("MeteredAccount", (balance, currency, max_overdrawn) ->
+                new MeteredAccount(new Account(balance, currency, max_overdrawn), metrics));
+    }
+
+    @Test
+    void testCheckerRejectsLostUpdate() {
+        /*
+         * Expected behavior: Two overlapping deposits of 5 that both return 25 on an account
+         *                     holding 20 are a lost update; no sequential order gives that,
+         *                     so the checker rejects the history. The same deposits returning
+         *                     25 and 30 are accepted in either order.
+         */
+        BigDecimal[] initial = {new BigDecimal("20"), new BigDecimal("5")};
+        BigDecimal[] limits = {new BigDecimal("10"), BigDecimal.ZERO};
+
+        List<AccountStressHarness.Call> lost = Arrays.asList(
+                deposit(1, 3, new BigDecimal("25")),
+                deposit(2, 4, new BigDecimal("25")));
+        assertFalse(AccountStressHarness.isLinearizable(lost, initial, limits,
+                new BigDecimal[]{new BigDecimal("25"), new BigDecimal("5")}));
+
+        List<AccountStressHarness.Call> overlapping = Arrays.asList(
+                deposit(1, 4, new BigDecimal("30")),
+                deposit(2, 3, new BigDecimal("25")));
+        assertTrue(AccountStressHarness.isLinearizable(overlapping, initial, limits,
+                new BigDecimal[]{new BigDecimal("30"), new BigDecimal("5")}));
+
+        // Not overlapping: the call that returned 30 finished before the other started
+        List<AccountStressHarness.Call> ordered = Arrays.asList(
+                deposit(1, 2, new BigDecimal("30")),
+                deposit(3, 4, new BigDecimal("25")));
+        assertFalse(AccountStressHarness.isLinearizable(ordered, initial, limits,
+                new BigDecimal[]{new BigDecimal("30"), new BigDecimal("5")}));
+    }
+
+    private static AccountStressHarness.Call deposit(long invoked, long returned, BigDecimal result) {
+        AccountStressHarness.Call call = new AccountStressHarness.Call(AccountStressHarness.Call.Kind.DEPOSIT, 0, 1,
+                new BigDecimal("5"));
+        call.invoked = invoked;
+        call.returned = returned;
+        call.result = result;
+        return call;
+    }
+}
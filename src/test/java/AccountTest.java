@@ -3,6 +3,7 @@ import org.junit.jupiter.api.Test;
 import java.math.BigDecimal;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 
@@ -53,6 +54,21 @@ class AccountTest {
         assertEquals("SEK", myTestAccount.getCurrency());
     }
 
+    @Test
+    void testSetCurrencyRejectsInvalidCode() {
+        /*
+         * Expected behavior: Codes that are not in the CurrencyCode registry are rejected
+         *                     and the account keeps its currency.
+         */
+        Account myTestAccount = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        assertThrows(IllegalArgumentException.class, () -> myTestAccount.setCurrency("XYZ"));
+        assertThrows(IllegalArgumentException.class, () -> myTestAccount.convertToCurrency("sek", 1.0));
+        assertEquals("SEK", myTestAccount.getCurrency());
+        assertEquals(CurrencyCode.SEK, myTestAccount.getCurrencyCode());
+
+        assertThrows(IllegalArgumentException.class, () -> new Account(BigDecimal.ZERO, "Kronor", BigDecimal.ZERO));
+    }
+
     @Test
     void testGetBalance() {
         Account myTestAccount = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
@@ -281,4 +297,109 @@ class AccountTest {
         assertEquals(new BigDecimal("0"), acc3.getBalance());
         assertEquals(new BigDecimal("0"), withdrawn3);
     }
+
+    @Test
+    void testTransfer() {
+        /*
+         * Expected behavior: Only the requested amount is moved, the sender may go into
+         *                     the red down to -max_overdrawn, and every rejection is
+         *                     reported as a status with both balances unchanged.
+         */
+        Account sender = new Account(new BigDecimal("10"), "SEK", new BigDecimal("5"));
+        Account receiver = new Account(new BigDecimal("1"), "SEK", BigDecimal.ZERO);
+        Account usd = new Account(BigDecimal.ZERO, "USD", BigDecimal.ZERO);
+
+        assertEquals(OperationStatus.OK, sender.transfer(receiver, new BigDecimal("12")));
+        assertEquals(new BigDecimal("-2"), sender.getBalance());
+        assertEquals(new BigDecimal("13"), receiver.getBalance());
+
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, sender.transfer(receiver, new BigDecimal("3.01")));
+        assertEquals(OperationStatus.CURRENCY_MISMATCH, receiver.transfer(usd, BigDecimal.ONE));
+        assertEquals(OperationStatus.INVALID_AMOUNT, receiver.transfer(sender, BigDecimal.ZERO));
+        assertEquals(OperationStatus.INVALID_AMOUNT, receiver.transfer(sender, new BigDecimal("-1")));
+        assertEquals(OperationStatus.OK, receiver.transfer(receiver, BigDecimal.ONE));
+        assertEquals(new BigDecimal("-2"), sender.getBalance());
+        assertEquals(new BigDecimal("13"), receiver.getBalance());
+        assertEquals(BigDecimal.ZERO, usd.getBalance());
+
+        // A target that can not hold the amount rejects it before the sender is debited
+        FixedPointAccount fixed = new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        assertEquals(OperationStatus.INVALID_AMOUNT, receiver.transfer(fixed, new BigDecimal("0.001")));
+        assertEquals(new BigDecimal("13"), receiver.getBalance());
+        assertEquals(0L, fixed.getBalanceMinor());
+    }
+
+    @Test
+    void testTransferRefundsWhenTargetThrows() {
+        /*
+         * Expected behavior: Whatever the deposit of a target of another type throws, the
+         *                     sender keeps its money. Anything but ArithmeticException is
+         *                     rethrown after the refund.
+         */
+        Account sender = new Account(new BigDecimal("10"), "SEK", BigDecimal.ZERO);
+        ConcurrentAccount failing = new ConcurrentAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO) {
+            @Override
+            public BigDecimal deposit(BigDecimal amount_to_deposit) {
+                throw new IllegalStateException("deposit failed");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> sender.transfer(failing, new BigDecimal("4")));
+        assertEquals(new BigDecimal("10"), sender.getBalance());
+        assertEquals(BigDecimal.ZERO, failing.getBalance());
+    }
+
+    @Test
+    void testStatusReturningWithdrawAndTransferAll() {
+        /*
+         * Expected behavior: tryWithdraw and tryTransferToAccount apply the same rules as
+         *                     withdraw and TransferToAccount and report the outcome.
+         */
+        Account sender = new Account(new BigDecimal("10"), "SEK", new BigDecimal("5"));
+        Account receiver = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        Account usd = new Account(BigDecimal.ONE, "USD", BigDecimal.ZERO);
+
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, sender.tryWithdraw(new BigDecimal("15.01")));
+        assertEquals(new BigDecimal("10"), sender.getBalance());
+        assertEquals(OperationStatus.OK, sender.tryWithdraw(new BigDecimal("4")));
+        assertEquals(new BigDecimal("6"), sender.getBalance());
+
+        assertEquals(OperationStatus.CURRENCY_MISMATCH, sender.tryTransferToAccount(usd));
+        assertEquals(OperationStatus.OK, sender.tryTransferToAccount(receiver));
+        assertEquals(new BigDecimal("6"), receiver.getBalance());
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, sender.tryTransferToAccount(receiver));
+        assertEquals(BigDecimal.ZERO, sender.getBalance());
+    }
+
+    @Test
+    void testTransferToAccountOfAnotherType() {
+        /*
+         * Expected behavior: The whole balance moves to any IAccount holding the same
+         *                     currency. If the target can not hold it, or its deposit
+         *                     throws, the sender keeps its money.
+         */
+        Account sender = new Account(new BigDecimal("100"), "SEK", BigDecimal.ZERO);
+        ConcurrentAccount concurrent = new ConcurrentAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        assertEquals(OperationStatus.OK, sender.tryTransferToAccount(concurrent));
+        assertEquals(BigDecimal.ZERO, sender.getBalance());
+        assertEquals(new BigDecimal("100"), concurrent.getBalance());
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, sender.tryTransferToAccount(concurrent));
+        assertEquals(OperationStatus.CURRENCY_MISMATCH,
+                concurrent.tryTransferToAccount(new Account(BigDecimal.ZERO, "EUR", BigDecimal.ZERO)));
+
+        Account fine = new Account(new BigDecimal("10.005"), "SEK", BigDecimal.ZERO);
+        FixedPointAccount fixed = new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        assertEquals(OperationStatus.INVALID_AMOUNT, fine.tryTransferToAccount(fixed));
+        assertEquals(new BigDecimal("10.005"), fine.getBalance());
+        assertEquals(0L, fixed.getBalanceMinor());
+
+        ConcurrentAccount failing = new ConcurrentAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO) {
+            @Override
+            public BigDecimal deposit(BigDecimal amount_to_deposit) {
+                throw new IllegalStateException("deposit failed");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> fine.tryTransferToAccount(failing));
+        assertEquals(new BigDecimal("10.005"), fine.getBalance());
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, fine.tryTransferToAccount(fine));
+    }
 }
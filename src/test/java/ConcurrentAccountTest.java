@@ -0,0 +1,217 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ConcurrentAccountTest {
+
+    private static final int OPS_PER_THREAD = 20_000;
+
+    /*
+     * Runs the given task on the given number of threads, all released at the same time,
+     * and returns the sum of the values the tasks returned.
+     */
+    private static long runConcurrently(int threads, final Callable<Long> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        start.await();
+                        return task.call();
+                    }
+                }));
+            }
+            start.countDown();
+            long sum = 0;
+            for (Future<Long> result : results) {
+                sum += result.get(60, TimeUnit.SECONDS);
+            }
+            return sum;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static int threadCount() {
+        return Math.max(4, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    void testSingleThreadedBehaviorMatchesAccount() {
+        /*
+         * Expected behavior: Same results as Account for the single-threaded cases
+         *                     covered in AccountTest.
+         */
+        ConcurrentAccount account = new ConcurrentAccount(new BigDecimal("100"), "SEK", new BigDecimal("50"));
+        assertEquals(new BigDecimal("-20"), account.withdraw(new BigDecimal("120")));
+        assertEquals(new BigDecimal("-20"), account.withdraw(new BigDecimal("100"))); // rejected
+        assertEquals(new BigDecimal("30"), account.deposit(new BigDecimal("50")));
+        assertEquals(new BigDecimal("30"), account.deposit(new BigDecimal("-10"))); // ignored
+        assertEquals(new BigDecimal("30"), account.withdrawAll());
+        assertEquals(BigDecimal.ZERO, account.getBalance());
+
+        account.setMaxOverdrawn(new BigDecimal("-5"));
+        assertEquals(BigDecimal.ZERO, account.getMaxOverdrawn());
+
+        account.setBalance(new BigDecimal("-1"));
+        assertEquals(BigDecimal.ZERO, account.getBalance()); // beyond overdraft, rejected
+
+        ConcurrentAccount usd = new ConcurrentAccount(new BigDecimal("100"), "USD", BigDecimal.ZERO);
+        usd.convertToCurrency("EUR", 0.92);
+        assertEquals("EUR", usd.getCurrency());
+        assertEquals(0, usd.getBalance().compareTo(new BigDecimal("92.00")));
+    }
+
+    @Test
+    void testTransferToAccount() {
+        ConcurrentAccount sender = new ConcurrentAccount(new BigDecimal("10"), "SEK", BigDecimal.ZERO);
+        Account receiver = new Account(new BigDecimal("10"), "SEK", BigDecimal.ZERO);
+        sender.TransferToAccount(receiver);
+        assertEquals(BigDecimal.ZERO, sender.getBalance());
+        assertEquals(new BigDecimal("20"), receiver.getBalance());
+
+        // Mismatched currency, no money moved
+        ConcurrentAccount usd = new ConcurrentAccount(new BigDecimal("10"), "USD", BigDecimal.ZERO);
+        usd.TransferToAccount(receiver);
+        assertEquals(new BigDecimal("10"), usd.getBalance());
+        assertEquals(new BigDecimal("20"), receiver.getBalance());
+    }
+
+    @Test
+    void testTransfer() {
+        /*
+         * Expected behavior: Same result codes as Account.transfer; if the target rejects
+         *                     the deposit, the debit is refunded.
+         */
+        ConcurrentAccount sender = new ConcurrentAccount(new BigDecimal("10"), "SEK", new BigDecimal("5"));
+        Account receiver = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+
+        assertEquals(OperationStatus.OK, sender.transfer(receiver, new BigDecimal("15")));
+        assertEquals(0, sender.getBalance().compareTo(new BigDecimal("-5")));
+        assertEquals(0, receiver.getBalance().compareTo(new BigDecimal("15")));
+
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, sender.transfer(receiver, new BigDecimal("0.01")));
+        assertEquals(OperationStatus.CURRENCY_MISMATCH,
+                sender.transfer(new Account(BigDecimal.ZERO, "EUR", BigDecimal.ZERO), new BigDecimal("0.01")));
+        assertEquals(OperationStatus.INVALID_AMOUNT, sender.transfer(receiver, BigDecimal.ZERO));
+
+        ConcurrentAccount rich = new ConcurrentAccount(new BigDecimal("10"), "SEK", BigDecimal.ZERO);
+        FixedPointAccount fixed = new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        assertEquals(OperationStatus.INVALID_AMOUNT, rich.transfer(fixed, new BigDecimal("0.001")));
+        assertEquals(0, rich.getBalance().compareTo(BigDecimal.TEN));
+        assertEquals(0L, fixed.getBalanceMinor());
+    }
+
+    @Test
+    void testTransfersRefundWhenTargetThrows() {
+        /*
+         * Expected behavior: Whatever the target's deposit throws, the sender keeps its
+         *                     money. ArithmeticException is reported as INVALID_AMOUNT,
+         *                     anything else is rethrown after the refund.
+         */
+        ConcurrentAccount sender = new ConcurrentAccount(new BigDecimal("10.005"), "SEK", BigDecimal.ZERO);
+        FixedPointAccount fixed = new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        assertEquals(OperationStatus.INVALID_AMOUNT, sender.tryTransferToAccount(fixed));
+        assertEquals(new BigDecimal("10.005"), sender.getBalance());
+        assertEquals(0L, fixed.getBalanceMinor());
+
+        Account failing = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO) {
+            @Override
+            public BigDecimal deposit(BigDecimal amount_to_deposit) {
+                throw new IllegalStateException("deposit failed");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> sender.tryTransferToAccount(failing));
+        assertEquals(new BigDecimal("10.005"), sender.getBalance());
+        assertThrows(IllegalStateException.class, () -> sender.transfer(failing, new BigDecimal("5")));
+        assertEquals(new BigDecimal("10.005"), sender.getBalance());
+        assertEquals(BigDecimal.ZERO, failing.getBalance());
+
+        // Transferring everything to the account itself moves nothing
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, sender.tryTransferToAccount(sender));
+        assertEquals(new BigDecimal("10.005"), sender.getBalance());
+    }
+
+    @Test
+    void testConcurrentDepositsAreNotLost() throws Exception {
+        /*
+         * Expected behavior: N threads each depositing 1 OPS_PER_THREAD times end with
+         *                     a balance of exactly N * OPS_PER_THREAD.
+         */
+        final ConcurrentAccount account = new ConcurrentAccount();
+        int threads = threadCount();
+        runConcurrently(threads, new Callable<Long>() {
+            @Override
+            public Long call() {
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    account.deposit(BigDecimal.ONE);
+                }
+                return 0L;
+            }
+        });
+        assertEquals(BigDecimal.valueOf((long) threads * OPS_PER_THREAD), account.getBalance());
+    }
+
+    @Test
+    void testConcurrentWithdrawalsRespectOverdraftFloor() throws Exception {
+        /*
+         * Expected behavior: With balance 0 and max_overdrawn 1000, exactly 1000
+         *                     withdrawals of 1 succeed no matter how many threads race,
+         *                     and the balance ends at exactly -1000.
+         */
+        final ConcurrentAccount account = new ConcurrentAccount(BigDecimal.ZERO, "SEK", new BigDecimal("1000"));
+        runConcurrently(threadCount(), new Callable<Long>() {
+            @Override
+            public Long call() {
+                for (int i = 0; i < 1_000; i++) {
+                    account.withdraw(BigDecimal.ONE);
+                    assertTrue(account.getBalance().compareTo(new BigDecimal("-1000")) >= 0);
+                }
+                return 0L;
+            }
+        });
+        assertEquals(new BigDecimal("-1000"), account.getBalance());
+    }
+
+    @Test
+    void testMixedDepositsAndWithdrawalsUnderContention() throws Exception {
+        /*
+         * Expected behavior: Every thread deposits 2 and withdraws 1 per iteration,
+         *                     with an overdraft large enough that no withdrawal is rejected,
+         *                     so the final balance equals threads * iterations exactly,
+         *                     from 1 thread up to the core count.
+         */
+        int maxThreads = threadCount();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            final ConcurrentAccount account = new ConcurrentAccount(BigDecimal.ZERO, "SEK",
+                    BigDecimal.valueOf((long) maxThreads * OPS_PER_THREAD));
+            runConcurrently(threads, new Callable<Long>() {
+                @Override
+                public Long call() {
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        account.withdraw(BigDecimal.ONE);
+                        account.deposit(BigDecimal.valueOf(2));
+                    }
+                    return 0L;
+                }
+            });
+            assertEquals(BigDecimal.valueOf((long) threads * OPS_PER_THREAD), account.getBalance());
+        }
+    }
+}
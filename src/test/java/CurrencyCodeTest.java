@@ -0,0 +1,45 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class CurrencyCodeTest {
+
+    @Test
+    void testLookup() {
+        assertSame(CurrencyCode.SEK, CurrencyCode.of("SEK"));
+        assertSame(CurrencyCode.USD, CurrencyCode.ofOrdinal(CurrencyCode.USD.ordinal()));
+
+        assertThrows(IllegalArgumentException.class, () -> CurrencyCode.of("sek"));
+        assertThrows(IllegalArgumentException.class, () -> CurrencyCode.of(""));
+        assertThrows(IllegalArgumentException.class, () -> CurrencyCode.of(null));
+        assertThrows(IllegalArgumentException.class, () -> CurrencyCode.ofOrdinal(-1));
+        assertThrows(IllegalArgumentException.class, () -> CurrencyCode.ofOrdinal(CurrencyCode.values().length));
+    }
+
+    @Test
+    void testScalesMatchIso4217() {
+        for (CurrencyCode currency : CurrencyCode.values()) {
+            assertEquals(Currency.getInstance(currency.name()).getDefaultFractionDigits(), currency.scale(),
+                    currency.name());
+        }
+    }
+
+    @Test
+    void testTransfersCompareCurrencyCodes() {
+        Account sek = new Account(BigDecimal.TEN, "SEK", BigDecimal.ZERO);
+        FixedPointAccount fixedSek = new FixedPointAccount(BigDecimal.ONE, "SEK", BigDecimal.ZERO);
+        ConcurrentAccount eur = new ConcurrentAccount(BigDecimal.ONE, "EUR", BigDecimal.ZERO);
+
+        fixedSek.TransferToAccount(sek);
+        assertEquals(0, sek.getBalance().compareTo(new BigDecimal("11")));
+
+        eur.TransferToAccount(sek); // currency mismatch
+        assertEquals(0, eur.getBalance().compareTo(BigDecimal.ONE));
+    }
+}
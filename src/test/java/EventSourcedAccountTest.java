@@ -0,0 +1,143 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class EventSourcedAccountTest {
+
+    @Test
+    void testBalanceAtPastTimes() {
+        /*
+         * Expected behavior: Same rules as Account for the current state, and every past
+         *                     state can be queried; rejected operations leave no event.
+         */
+        ManualClock clock = new ManualClock();
+        clock.advance(Duration.ofHours(9));
+        EventSourcedAccount account = new EventSourcedAccount(new BigDecimal("100"), "SEK", new BigDecimal("50"), clock, 4);
+        Instant opened = clock.instant();
+
+        clock.advance(Duration.ofHours(1));
+        account.withdraw(new BigDecimal("120"));
+        account.withdraw(new BigDecimal("100")); // rejected
+        account.deposit(new BigDecimal("-5")); // ignored
+        Instant tenOClock = clock.instant();
+
+        clock.advance(Duration.ofHours(4));
+        account.deposit(new BigDecimal("45.5"));
+        account.setMaxOverdrawn(BigDecimal.ZERO);
+        Instant twoOClock = clock.instant();
+
+        clock.advance(Duration.ofMinutes(30));
+        account.convertToCurrency("EUR", 0.5);
+        account.withdrawAll();
+
+        assertEquals(BigDecimal.ZERO, account.getBalance());
+        assertEquals(5, account.getEvents().size() - 1);
+        assertEquals(AccountEvent.Type.OPENED, account.getEvents().get(0).getType());
+
+        assertThrows(IllegalArgumentException.class, () -> account.balanceAt(opened.minusMillis(1)));
+        assertEquals(new BigDecimal("100"), account.balanceAt(opened));
+        assertEquals(new BigDecimal("100"), account.balanceAt(tenOClock.minusMillis(1)));
+        assertEquals(new BigDecimal("-20"), account.balanceAt(tenOClock));
+        assertEquals(new BigDecimal("25.5"), account.balanceAt(twoOClock));
+        assertEquals(0, account.stateAt(twoOClock).getMaxOverdrawn().signum());
+        assertEquals(CurrencyCode.SEK, account.stateAt(twoOClock).getCurrency());
+        assertEquals(CurrencyCode.EUR, account.stateAt(clock.instant()).getCurrency());
+        assertEquals(0, account.balanceAt(clock.instant()).signum());
+        assertEquals(1, account.snapshotCount());
+    }
+
+    @Test
+    void testTransfersRecordBothSides() {
+        ManualClock clock = new ManualClock();
+        EventSourcedAccount a = new EventSourcedAccount(new BigDecimal("10"), "SEK", new BigDecimal("5"), clock, 64);
+        EventSourcedAccount b = new EventSourcedAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO, clock, 64);
+        Account plain = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        Instant before = clock.instant();
+        clock.advance(Duration.ofSeconds(1));
+
+        assertEquals(OperationStatus.OK, a.transfer(b, new BigDecimal("12")));
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, a.transfer(b, new BigDecimal("4")));
+        assertEquals(OperationStatus.CURRENCY_MISMATCH, b.transfer(new Account(BigDecimal.ZERO, "EUR", BigDecimal.ZERO), BigDecimal.ONE));
+        b.TransferToAccount(plain);
+
+        assertEquals(new BigDecimal("-2"), a.getBalance());
+        assertEquals(BigDecimal.ZERO, b.getBalance());
+        assertEquals(new BigDecimal("12"), plain.getBalance());
+        assertEquals(AccountEvent.Type.TRANSFERRED_IN, b.getEvents().get(1).getType());
+        assertEquals(AccountEvent.Type.TRANSFERRED_OUT, b.getEvents().get(2).getType());
+        assertEquals(new BigDecimal("10"), a.balanceAt(before));
+        assertEquals(new BigDecimal("-2"), a.balanceAt(clock.instant()));
+    }
+
+    @Test
+    void testTransfersRefundWhenTargetThrows() {
+        /*
+         * Expected behavior: Whatever the deposit of a target of another type throws, the
+         *                     sender gets its money back through a TRANSFERRED_IN event.
+         *                     Anything but ArithmeticException is rethrown after the refund.
+         */
+        ManualClock clock = new ManualClock();
+        EventSourcedAccount sender = new EventSourcedAccount(new BigDecimal("10"), "SEK", BigDecimal.ZERO, clock, 64);
+        Account failing = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO) {
+            @Override
+            public BigDecimal deposit(BigDecimal amount_to_deposit) {
+                throw new IllegalStateException("deposit failed");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> sender.transfer(failing, new BigDecimal("4")));
+        assertThrows(IllegalStateException.class, () -> sender.tryTransferToAccount(failing));
+        assertEquals(new BigDecimal("10"), sender.getBalance());
+        assertEquals(BigDecimal.ZERO, failing.getBalance());
+
+        FixedPointAccount fixed = new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        assertEquals(OperationStatus.INVALID_AMOUNT, sender.transfer(fixed, new BigDecimal("0.001")));
+        assertEquals(new BigDecimal("10.000"), sender.getBalance());
+        assertEquals(AccountEvent.Type.TRANSFERRED_IN, sender.getEvents().get(sender.getEvents().size() - 1).getType());
+    }
+
+    @Test
+    void testQueriesReplayOnlyFromNearestSnapshot() {
+        /*
+         * Expected behavior: With a long history, every historical balance matches the
+         *                     balance that was current at that time, and one snapshot is
+         *                     kept per snapshotInterval events.
+         */
+        final int operations = 20_000;
+        final int interval = 64;
+        ManualClock clock = new ManualClock();
+        EventSourcedAccount account = new EventSourcedAccount(new BigDecimal("1000"), "SEK", new BigDecimal("1000"), clock, interval);
+        List<Instant> times = new ArrayList<>();
+        List<BigDecimal> expected = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < operations; i++) {
+            clock.advance(Duration.ofMillis(random.nextInt(3))); // several events may share a millisecond
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(10_000), 2);
+            if (random.nextBoolean()) {
+                account.deposit(amount);
+            } else {
+                account.withdraw(amount);
+            }
+            times.add(clock.instant());
+            expected.add(account.getBalance());
+        }
+        assertEquals(account.getEvents().size() / interval, account.snapshotCount());
+
+        for (int i = 0; i < operations; i++) {
+            // Later operations in the same millisecond are also included
+            int last = i;
+            while (last + 1 < operations && times.get(last + 1).equals(times.get(i))) {
+                last++;
+            }
+            assertEquals(expected.get(last), account.balanceAt(times.get(i)));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class ExchangeRatesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeRates(String... lines) throws IOException {
+        Path file = tempDir.resolve("rates.properties");
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    void testQuotedInverseAndCrossRates() throws IOException {
+        /*
+         * Expected behavior:
+         *   - Quoted rates are returned exactly as written in the file.
+         *   - Inverse rates are derived from the quote in the other direction.
+         *   - Cross rates go through the pivot currency (SEK -> EUR -> USD).
+         *   - Derived rates are memoized, so the same instance is returned again.
+         */
+        Path file = writeRates("EUR/SEK=10", "EUR/USD=1.08");
+        ExchangeRates rates = new ExchangeRates(new FileRateSource(file), "EUR", 60_000);
+
+        assertEquals(new BigDecimal("10"), rates.rate("EUR", "SEK"));
+        assertEquals(BigDecimal.ONE, rates.rate("SEK", "SEK"));
+        assertEquals(0, rates.rate("SEK", "EUR").compareTo(new BigDecimal("0.1")));
+        assertEquals(0, rates.rate("SEK", "USD").compareTo(new BigDecimal("0.108")));
+        assertSame(rates.rate("SEK", "USD"), rates.rate("SEK", "USD"));
+
+        assertThrows(IllegalArgumentException.class, () -> rates.rate("SEK", "JPY"));
+    }
+
+    @Test
+    void testConvertRoundsToMinorUnit() throws IOException {
+        Path file = writeRates("USD/EUR=0.923456", "EUR/JPY=163.5");
+        ExchangeRates rates = new ExchangeRates(new FileRateSource(file), "EUR", 60_000);
+
+        assertEquals(new BigDecimal("92.35"), rates.convert(new BigDecimal("100"), "USD", "EUR"));
+        assertEquals(new BigDecimal("15099"), rates.convert(new BigDecimal("100"), "USD", "JPY"));
+    }
+
+    @Test
+    void testRatesAreRefreshedAfterTtl() throws IOException {
+        /*
+         * Expected behavior: New quotes in the file are picked up only once the table is
+         *                     older than the TTL, and a broken file keeps the old rates.
+         */
+        Path file = writeRates("EUR/SEK=10");
+        ManualClock clock = new ManualClock();
+        ExchangeRates rates = new ExchangeRates(new FileRateSource(file), "EUR", 1_000, clock);
+        assertEquals(0, rates.rate("SEK", "EUR").compareTo(new BigDecimal("0.1")));
+
+        writeRates("EUR/SEK=20");
+        assertEquals(new BigDecimal("10"), rates.rate("EUR", "SEK")); // still fresh
+
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(new BigDecimal("20"), rates.rate("EUR", "SEK"));
+        assertEquals(0, rates.rate("SEK", "EUR").compareTo(new BigDecimal("0.05"))); // not the memoized old inverse
+
+        writeRates("EUR/SEK=not a number");
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(new BigDecimal("20"), rates.rate("EUR", "SEK"));
+    }
+
+    @Test
+    void testAccountConversionUsesCachedRates() throws IOException {
+        Path file = writeRates("USD/EUR=0.92");
+        ExchangeRates rates = new ExchangeRates(new FileRateSource(file), "EUR", 60_000);
+
+        Account account = new Account(new BigDecimal("100"), "USD", new BigDecimal("100"));
+        account.convertToCurrency("EUR", rates);
+        assertEquals("EUR", account.getCurrency());
+        assertEquals(new BigDecimal("92.00"), account.getBalance());
+
+        ConcurrentAccount concurrent = new ConcurrentAccount(new BigDecimal("100"), "USD", BigDecimal.ZERO);
+        concurrent.convertToCurrency("EUR", rates);
+        assertEquals("EUR", concurrent.getCurrency());
+        assertEquals(new BigDecimal("92.00"), concurrent.getBalance());
+
+        FixedPointAccount fixed = new FixedPointAccount(new BigDecimal("92"), "EUR", BigDecimal.ZERO);
+        fixed.convertToCurrency("USD", rates);
+        assertEquals("USD", fixed.getCurrency());
+        assertEquals(10000L, fixed.getBalanceMinor());
+    }
+}
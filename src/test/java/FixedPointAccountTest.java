@@ -0,0 +1,200 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class FixedPointAccountTest {
+
+    @Test
+    void testBalanceIsStoredInMinorUnits() {
+        FixedPointAccount account = new FixedPointAccount(new BigDecimal("12.34"), "SEK", new BigDecimal("50"));
+        assertEquals(1234L, account.getBalanceMinor());
+        assertEquals(5000L, account.getMaxOverdrawnMinor());
+        assertEquals(new BigDecimal("12.34"), account.getBalance());
+
+        FixedPointAccount yen = new FixedPointAccount(new BigDecimal("500"), "JPY", BigDecimal.ZERO);
+        assertEquals(0, yen.getScale());
+        assertEquals(500L, yen.getBalanceMinor());
+
+        // max_overdrawn must be non-negative
+        FixedPointAccount negativeLimit = new FixedPointAccount(BigDecimal.ZERO, "SEK", new BigDecimal("-1"));
+        assertEquals(0L, negativeLimit.getMaxOverdrawnMinor());
+    }
+
+    @Test
+    void testWithdraw() {
+        /*
+         * Expected behavior: Same rules as Account.withdraw — balance may go down to
+         *                     -max_overdrawn but never below.
+         */
+        FixedPointAccount account = new FixedPointAccount(new BigDecimal("100"), "SEK", new BigDecimal("50"));
+        assertEquals(0, account.withdraw(new BigDecimal("120")).compareTo(new BigDecimal("-20")));
+        assertEquals(0, account.withdraw(new BigDecimal("100")).compareTo(new BigDecimal("-20"))); // rejected
+        assertEquals(0, account.withdraw(new BigDecimal("30")).compareTo(new BigDecimal("-50"))); // exact limit
+        assertEquals(-5000L, account.withdrawMinor(1)); // rejected
+    }
+
+    @Test
+    void testDeposit() {
+        FixedPointAccount account = new FixedPointAccount(new BigDecimal("100"), "SEK", BigDecimal.ZERO);
+        assertEquals(0, account.deposit(new BigDecimal("50.25")).compareTo(new BigDecimal("150.25")));
+        assertEquals(0, account.deposit(new BigDecimal("-10")).compareTo(new BigDecimal("150.25"))); // ignored
+        assertEquals(15026L, account.depositMinor(1));
+        assertEquals(15026L, account.depositMinor(-1)); // ignored
+    }
+
+    @Test
+    void testRejectsAmountsFinerThanMinorUnit() {
+        FixedPointAccount account = new FixedPointAccount(new BigDecimal("100"), "SEK", BigDecimal.ZERO);
+        assertThrows(ArithmeticException.class, () -> account.deposit(new BigDecimal("0.001")));
+        assertEquals(10000L, account.getBalanceMinor());
+    }
+
+    @Test
+    void testOverflowIsDetected() {
+        /*
+         * Expected behavior: Arithmetic beyond the range of a long throws instead of
+         *                     wrapping around, and the balance is left unchanged.
+         */
+        FixedPointAccount account = new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        account.depositMinor(Long.MAX_VALUE - 1);
+        assertThrows(ArithmeticException.class, () -> account.depositMinor(2));
+        assertEquals(Long.MAX_VALUE - 1, account.getBalanceMinor());
+
+        assertThrows(ArithmeticException.class, () -> account.withdrawMinor(Long.MIN_VALUE));
+        assertEquals(Long.MAX_VALUE - 1, account.getBalanceMinor());
+
+        assertThrows(ArithmeticException.class, () -> account.convertToCurrency("SEK", 10));
+        assertEquals(Long.MAX_VALUE - 1, account.getBalanceMinor());
+        assertEquals("SEK", account.getCurrency());
+    }
+
+    @Test
+    void testConvertToCurrency() {
+        FixedPointAccount usd = new FixedPointAccount(new BigDecimal("100"), "USD", new BigDecimal("10.50"));
+        usd.convertToCurrency("EUR", 0.92);
+        assertEquals("EUR", usd.getCurrency());
+        assertEquals(9200L, usd.getBalanceMinor());
+
+        // Rounded half-even to the new minor unit, limit truncated
+        usd.convertToCurrency("JPY", 163.337);
+        assertEquals("JPY", usd.getCurrency());
+        assertEquals(15027L, usd.getBalanceMinor());
+        assertEquals(10L, usd.getMaxOverdrawnMinor());
+
+        // Invalid rate, no change
+        usd.convertToCurrency("SEK", 0.0);
+        assertEquals("JPY", usd.getCurrency());
+        assertEquals(15027L, usd.getBalanceMinor());
+    }
+
+    @Test
+    void testTransferToAccount() {
+        FixedPointAccount sender = new FixedPointAccount(new BigDecimal("10"), "SEK", new BigDecimal("100"));
+        FixedPointAccount receiver = new FixedPointAccount(new BigDecimal("10"), "SEK", new BigDecimal("100"));
+        sender.TransferToAccount(receiver);
+        assertEquals(0L, sender.getBalanceMinor());
+        assertEquals(2000L, receiver.getBalanceMinor());
+
+        // Also works towards other IAccount implementations
+        Account account = new Account(new BigDecimal("1"), "SEK", BigDecimal.ZERO);
+        receiver.TransferToAccount(account);
+        assertEquals(0, account.getBalance().compareTo(new BigDecimal("21")));
+
+        // Mismatched currency or non-positive balance, no transfer
+        FixedPointAccount usd = new FixedPointAccount(new BigDecimal("5"), "USD", BigDecimal.ZERO);
+        usd.TransferToAccount(sender);
+        assertEquals(500L, usd.getBalanceMinor());
+        sender.TransferToAccount(receiver);
+        assertEquals(0L, receiver.getBalanceMinor());
+    }
+
+    @Test
+    void testTransferToAccountReportsTargetThatCanNotHoldTheBalance() {
+        /*
+         * Expected behavior: An overflow in the target, or a target whose deposit throws
+         *                     ArithmeticException, is reported as INVALID_AMOUNT with both
+         *                     accounts unchanged.
+         */
+        FixedPointAccount sender = new FixedPointAccount(new BigDecimal("10"), "SEK", BigDecimal.ZERO);
+        FixedPointAccount full = new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        full.depositMinor(Long.MAX_VALUE);
+        assertEquals(OperationStatus.INVALID_AMOUNT, sender.tryTransferToAccount(full));
+        assertEquals(1000L, sender.getBalanceMinor());
+        assertEquals(Long.MAX_VALUE, full.getBalanceMinor());
+
+        Account rejecting = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO) {
+            @Override
+            public BigDecimal deposit(BigDecimal amount_to_deposit) {
+                throw new ArithmeticException("Overflow");
+            }
+        };
+        assertEquals(OperationStatus.INVALID_AMOUNT, sender.tryTransferToAccount(rejecting));
+        assertEquals(1000L, sender.getBalanceMinor());
+        assertEquals(BigDecimal.ZERO, rejecting.getBalance());
+    }
+
+    @Test
+    void testWithdrawAll() {
+        FixedPointAccount account = new FixedPointAccount(new BigDecimal("10.50"), "SEK", new BigDecimal("100"));
+        assertEquals(0, account.withdrawAll().compareTo(new BigDecimal("10.50")));
+        assertEquals(0L, account.getBalanceMinor());
+
+        FixedPointAccount negative = new FixedPointAccount(new BigDecimal("-10"), "SEK", new BigDecimal("100"));
+        assertEquals(BigDecimal.ZERO, negative.withdrawAll());
+        assertEquals(-1000L, negative.getBalanceMinor());
+    }
+
+    @Test
+    void testTransfer() {
+        FixedPointAccount sender = new FixedPointAccount(new BigDecimal("10"), "SEK", new BigDecimal("5"));
+        FixedPointAccount receiver = new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+
+        assertEquals(OperationStatus.OK, sender.transfer(receiver, new BigDecimal("14.99")));
+        assertEquals(-499L, sender.getBalanceMinor());
+        assertEquals(1499L, receiver.getBalanceMinor());
+
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, sender.transferMinor(receiver, 2L));
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, sender.transferMinor(receiver, Long.MAX_VALUE));
+        assertEquals(OperationStatus.INVALID_AMOUNT, receiver.transfer(sender, new BigDecimal("0.001")));
+        assertEquals(OperationStatus.INVALID_AMOUNT, receiver.transferMinor(sender, 0L));
+        assertEquals(OperationStatus.CURRENCY_MISMATCH,
+                receiver.transfer(new FixedPointAccount(BigDecimal.ZERO, "EUR", BigDecimal.ZERO), BigDecimal.ONE));
+        assertEquals(-499L, sender.getBalanceMinor());
+        assertEquals(1499L, receiver.getBalanceMinor());
+
+        // Overflow in the target leaves both accounts unchanged
+        FixedPointAccount full = new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        full.depositMinor(Long.MAX_VALUE);
+        assertEquals(OperationStatus.INVALID_AMOUNT, receiver.transferMinor(full, 1L));
+        assertEquals(1499L, receiver.getBalanceMinor());
+
+        // Also works towards other IAccount implementations
+        Account account = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        assertEquals(OperationStatus.OK, receiver.transfer(account, new BigDecimal("4.99")));
+        assertEquals(0, account.getBalance().compareTo(new BigDecimal("4.99")));
+        assertEquals(1000L, receiver.getBalanceMinor());
+    }
+
+    @Test
+    void testTransferLeavesSenderUntouchedWhenTargetThrows() {
+        /*
+         * Expected behavior: The target is credited before the sender is debited, so
+         *                     whatever its deposit throws, the sender keeps its money.
+         *                     Anything but ArithmeticException is rethrown.
+         */
+        FixedPointAccount sender = new FixedPointAccount(new BigDecimal("10"), "SEK", BigDecimal.ZERO);
+        Account failing = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO) {
+            @Override
+            public BigDecimal deposit(BigDecimal amount_to_deposit) {
+                throw new IllegalStateException("deposit failed");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> sender.transfer(failing, new BigDecimal("4")));
+        assertEquals(1000L, sender.getBalanceMinor());
+        assertEquals(BigDecimal.ZERO, failing.getBalance());
+    }
+}
@@ -0,0 +1,125 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class HeadroomIndexTest {
+
+    @Test
+    void testQueriesFollowEveryChange() {
+        /*
+         * Expected behavior: withdraw, deposit, setMaxOverdrawn and conversions through
+         *                     account views move the accounts within the index right away.
+         */
+        AccountStore store = new AccountStore();
+        int a = store.create(new BigDecimal("100"), "SEK", new BigDecimal("50"));  // headroom 150
+        int b = store.create(new BigDecimal("10"), "SEK", BigDecimal.ZERO);        // headroom 10
+        int c = store.create(new BigDecimal("-5"), "SEK", new BigDecimal("20"));   // headroom 15
+        int d = store.create(new BigDecimal("1"), "EUR", BigDecimal.ZERO);         // headroom 1
+        HeadroomIndex index = store.headroomIndex();
+
+        assertArrayEquals(new int[]{b, c}, index.withinHeadroom(CurrencyCode.SEK, new BigDecimal("20")));
+        assertArrayEquals(new int[]{b}, index.closestToLimit(CurrencyCode.SEK, 1));
+        assertArrayEquals(new int[]{c}, index.overdrawn(CurrencyCode.SEK));
+        assertArrayEquals(new int[]{d}, index.withinHeadroom(CurrencyCode.EUR, BigDecimal.TEN));
+
+        store.account(a).withdraw(new BigDecimal("145"));  // headroom 5, balance -45
+        store.account(c).deposit(new BigDecimal("10"));    // headroom 25, balance 5
+        store.account(b).setMaxOverdrawn(new BigDecimal("30"));  // headroom 40
+        assertArrayEquals(new int[]{a, c, b}, index.closestToLimit(CurrencyCode.SEK, 10));
+        assertArrayEquals(new int[]{a}, index.overdrawn(CurrencyCode.SEK));
+        assertArrayEquals(new int[]{c, b}, index.headroomBetween(CurrencyCode.SEK, new BigDecimal("24.999"), new BigDecimal("40")));
+        assertArrayEquals(new int[0], index.headroomBetween(CurrencyCode.SEK, new BigDecimal("6"), new BigDecimal("5")));
+
+        store.account(b).TransferToAccount(store.account(c)); // headroom b: 0 + 30, c: 15 + 20
+        assertArrayEquals(new int[]{a, b, c}, index.closestToLimit(CurrencyCode.SEK, 3));
+
+        store.account(c).convertToCurrency("EUR", 0.1); // balance 1.50, limit keeps 20.00
+        assertEquals(2, index.size(CurrencyCode.SEK));
+        assertArrayEquals(new int[]{d, c}, index.withinHeadroom(CurrencyCode.EUR, new BigDecimal("21.5")));
+        assertArrayEquals(new int[]{d}, index.withinHeadroom(CurrencyCode.EUR, new BigDecimal("21.49")));
+    }
+
+    @Test
+    void testIndexMatchesFullScan() {
+        /*
+         * Expected behavior: After random view operations, batches and bulk conversions,
+         *                     every query returns the same accounts as a scan of the store.
+         */
+        final int accounts = 100_000;
+        AccountStore store = new AccountStore();
+        Random random = new Random(42);
+        for (int i = 0; i < accounts; i++) {
+            store.create(BigDecimal.valueOf(random.nextInt(100_000), 2), i % 5 == 0 ? "EUR" : "SEK",
+                    BigDecimal.valueOf(random.nextInt(50_000), 2));
+        }
+        HeadroomIndex index = store.headroomIndex();
+
+        for (int i = 0; i < 50_000; i++) {
+            AbstractMinorUnitAccount account = store.account(random.nextInt(accounts));
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(100_000), 2);
+            switch (random.nextInt(3)) {
+                case 0:
+                    account.withdraw(amount);
+                    break;
+                case 1:
+                    account.deposit(amount);
+                    break;
+                default:
+                    account.setMaxOverdrawn(amount);
+            }
+        }
+        List<Operation> batch = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            batch.add(Operation.transfer(random.nextInt(accounts), random.nextInt(accounts), random.nextInt(50_000)));
+        }
+        store.applyBatch(batch.subList(0, 25_000));
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            store.applyBatch(batch.subList(25_000, 50_000), pool);
+        } finally {
+            pool.shutdown();
+        }
+        store.convertAll(CurrencyCode.EUR, CurrencyCode.USD, new BigDecimal("1.0843"));
+
+        assertEquals(0, index.size(CurrencyCode.EUR));
+        assertEquals(accounts / 5, index.size(CurrencyCode.USD));
+        for (CurrencyCode currency : new CurrencyCode[]{CurrencyCode.SEK, CurrencyCode.USD}) {
+            assertArrayEquals(scanWithin(store, currency, 1_000), index.withinHeadroom(currency, BigDecimal.TEN));
+            assertArrayEquals(scanOverdrawn(store, currency), index.overdrawn(currency));
+        }
+    }
+
+    /*
+     * Ids with headroom <= max, sorted by headroom then id, found by scanning every account
+     */
+    private static int[] scanWithin(AccountStore store, CurrencyCode currency, long max) {
+        List<long[]> found = new ArrayList<>();
+        for (int id = 0; id < store.size(); id++) {
+            long headroom = store.balanceMinor(id) + store.maxOverdrawnMinor(id);
+            if (store.currency(id) == currency && headroom <= max) {
+                found.add(new long[]{headroom, id});
+            }
+        }
+        found.sort((x, y) -> x[0] != y[0] ? Long.compare(x[0], y[0]) : Long.compare(x[1], y[1]));
+        return found.stream().mapToInt(entry -> (int) entry[1]).toArray();
+    }
+
+    private static int[] scanOverdrawn(AccountStore store, CurrencyCode currency) {
+        List<long[]> found = new ArrayList<>();
+        for (int id = 0; id < store.size(); id++) {
+            if (store.currency(id) == currency && store.balanceMinor(id) < 0) {
+                found.add(new long[]{store.balanceMinor(id), id});
+            }
+        }
+        found.sort((x, y) -> x[0] != y[0] ? Long.compare(x[0], y[0]) : Long.compare(x[1], y[1]));
+        return found.stream().mapToInt(entry -> (int) entry[1]).toArray();
+    }
+}
@@ -0,0 +1,146 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class IdempotencyCacheTest {
+
+    @Test
+    void testReplayReturnsFirstResult() {
+        IdempotencyCache cache = new IdempotencyCache(100, 60_000);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertEquals(1, (int) cache.execute("a", "request", runs::incrementAndGet));
+        assertEquals(1, (int) cache.execute("a", "request", runs::incrementAndGet));
+        assertEquals(2, (int) cache.execute("b", "request", runs::incrementAndGet));
+        assertEquals(2, runs.get());
+        assertThrows(IllegalArgumentException.class, () -> cache.execute("a", "other", runs::incrementAndGet));
+    }
+
+    @Test
+    void testFailedOperationIsNotRemembered() {
+        IdempotencyCache cache = new IdempotencyCache(100, 60_000);
+
+        assertThrows(IllegalStateException.class, () -> cache.execute("a", "request", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals("ok", cache.execute("a", "request", () -> "ok"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testSizeAndTimeEviction() {
+        /*
+         * Expected behavior: No more than maxKeys keys are remembered, the oldest going
+         *                     first, and a key is forgotten once its time-to-live has passed.
+         */
+        ManualClock clock = new ManualClock();
+        IdempotencyCache cache = new IdempotencyCache(1_000, 10_000, clock);
+        AtomicInteger runs = new AtomicInteger();
+        for (int i = 0; i < 5_000; i++) {
+            cache.execute("key-" + i, "request", runs::incrementAndGet);
+        }
+        assertEquals(1_000, cache.size());
+        assertEquals(5_000, (int) cache.execute("key-4999", "request", runs::incrementAndGet));
+        assertEquals(5_001, (int) cache.execute("key-0", "request", runs::incrementAndGet)); // evicted, runs again
+
+        clock.advance(Duration.ofSeconds(5));
+        cache.execute("late", "request", runs::incrementAndGet);
+        clock.advance(Duration.ofSeconds(5));
+        assertEquals(5_003, (int) cache.execute("key-4999", "request", runs::incrementAndGet)); // expired
+        assertEquals(5_002, (int) cache.execute("late", "request", runs::incrementAndGet));
+        assertEquals(2, cache.size()); // the rest expired and was evicted by the last insert
+    }
+
+    @Test
+    void testRunningOperationDoesNotExpire() throws Exception {
+        /*
+         * Expected behavior: A retry arriving after the time-to-live while the first call
+         *                     is still running waits for it instead of running the operation
+         *                     again; the time-to-live counts from when the operation returned.
+         */
+        ManualClock clock = new ManualClock();
+        final IdempotencyCache cache = new IdempotencyCache(1_000, 10_000, clock);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> first = executor.submit(() -> cache.execute("slow", "request", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return runs.incrementAndGet();
+            }));
+            started.await();
+            clock.advance(Duration.ofSeconds(30));
+            Future<Integer> retry = executor.submit(() -> cache.execute("slow", "request", runs::incrementAndGet));
+            Thread.sleep(50);
+            release.countDown();
+            assertEquals(1, (int) first.get());
+            assertEquals(1, (int) retry.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, runs.get());
+
+        clock.advance(Duration.ofSeconds(9));
+        assertEquals(1, (int) cache.execute("slow", "request", runs::incrementAndGet));
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(2, (int) cache.execute("slow", "request", runs::incrementAndGet));
+    }
+
+    @Test
+    void testRacingDuplicatesRunOnce() throws Exception {
+        /*
+         * Expected behavior: When several threads deliver the same keys at the same time,
+         *                     each operation runs exactly once and every caller gets its
+         *                     result.
+         */
+        final int threads = 8;
+        final int keys = 10_000;
+        final IdempotencyCache cache = new IdempotencyCache(keys, 60_000);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long sum = 0;
+                    for (int i = 0; i < keys; i++) {
+                        final int value = i;
+                        sum += cache.execute("key-" + i, "request", () -> {
+                            runs.incrementAndGet();
+                            return value;
+                        });
+                    }
+                    return sum;
+                }));
+            }
+            start.countDown();
+            for (Future<Long> result : results) {
+                assertEquals((long) keys * (keys - 1) / 2, (long) result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(keys, runs.get());
+        assertTrue(cache.size() <= keys);
+    }
+}
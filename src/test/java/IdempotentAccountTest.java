@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class IdempotentAccountTest {
+
+    @Test
+    void testRetriedOperationsApplyOnce() {
+        /*
+         * Expected behavior: A retry with the same key returns the original result and
+         *                     does not charge the account again; a new key does.
+         */
+        IdempotencyCache cache = new IdempotencyCache(1_000, 60_000);
+        IdempotentAccount account = new IdempotentAccount(new Account(new BigDecimal("100"), "SEK", BigDecimal.ZERO), cache);
+        IdempotentAccount other = new IdempotentAccount(new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO), cache);
+
+        assertEquals(new BigDecimal("70"), account.withdraw("w-1", new BigDecimal("30")));
+        assertEquals(new BigDecimal("70"), account.withdraw("w-1", new BigDecimal("30.00"))); // same request
+        assertEquals(new BigDecimal("40"), account.withdraw("w-2", new BigDecimal("30")));
+        assertEquals(new BigDecimal("45"), account.deposit("d-1", new BigDecimal("5")));
+        assertEquals(new BigDecimal("45"), account.deposit("d-1", new BigDecimal("5")));
+        assertEquals(OperationStatus.OK, account.transfer("t-1", other, new BigDecimal("40")));
+        assertEquals(OperationStatus.OK, account.transfer("t-1", other, new BigDecimal("40")));
+        assertEquals(new BigDecimal("40"), other.withdrawAll("a-1"));
+        assertEquals(new BigDecimal("40"), other.withdrawAll("a-1"));
+
+        assertEquals(new BigDecimal("5"), account.getBalance());
+        assertEquals(BigDecimal.ZERO, other.getBalance());
+    }
+
+    @Test
+    void testKeyReuseIsRejected() {
+        IdempotencyCache cache = new IdempotencyCache(1_000, 60_000);
+        IdempotentAccount a = new IdempotentAccount(new Account(new BigDecimal("100"), "SEK", BigDecimal.ZERO), cache);
+        IdempotentAccount b = new IdempotentAccount(new Account(new BigDecimal("100"), "SEK", BigDecimal.ZERO), cache);
+        a.withdraw("k", BigDecimal.ONE);
+
+        assertThrows(IllegalArgumentException.class, () -> a.withdraw("k", BigDecimal.TEN));
+        assertThrows(IllegalArgumentException.class, () -> a.deposit("k", BigDecimal.ONE));
+        assertThrows(IllegalArgumentException.class, () -> b.withdraw("k", BigDecimal.ONE));
+        assertEquals(new BigDecimal("99"), a.getBalance());
+        assertEquals(new BigDecimal("100"), b.getBalance());
+    }
+
+    @Test
+    void testConcurrentRetriesChargeOnce() throws Exception {
+        /*
+         * Expected behavior: Every request is delivered by several threads at once, as
+         *                     retrying upstreams do; each one is still applied exactly once.
+         */
+        final int threads = 4;
+        final int requests = 20_000;
+        IdempotencyCache cache = new IdempotencyCache(requests, 60_000);
+        final IdempotentAccount account = new IdempotentAccount(new ConcurrentAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO), cache);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < requests; i++) {
+                        account.deposit("deposit-" + i, new BigDecimal("1.25"));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, account.getBalance().compareTo(new BigDecimal("1.25").multiply(BigDecimal.valueOf(requests))));
+    }
+}
@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketsCoverEveryValue() {
+        /*
+         * Expected behavior: Every value falls into a bucket whose bounds contain it, and
+         *                     buckets are at most 12.5% wide relative to their start.
+         */
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 100, 1_000, 123_456_789L, 1L << 40, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.lowerBound(bucket) <= value, "value " + value);
+            assertTrue(LatencyHistogram.upperBound(bucket) >= value, "value " + value);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        for (int bucket = 8; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+            long lower = LatencyHistogram.lowerBound(bucket);
+            assertEquals(lower + 1 + LatencyHistogram.upperBound(bucket) - lower, LatencyHistogram.lowerBound(bucket + 1));
+            assertTrue(LatencyHistogram.upperBound(bucket) - lower < lower / 8 + 1, "bucket " + bucket);
+        }
+    }
+
+    @Test
+    void testPercentiles() {
+        /*
+         * Expected behavior: Percentiles are within one bucket of the exact value and the
+         *                     maximum is exact.
+         */
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5); // counted as 0
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_001, snapshot.count());
+        assertEquals(10_000, snapshot.max());
+        assertEquals(10_000, snapshot.valueAtPercentile(100));
+        assertEquals(0, snapshot.valueAtPercentile(0));
+        long median = snapshot.valueAtPercentile(50);
+        assertTrue(median >= 5_000 && median <= 5_000 * 1.125, "median " + median);
+        long p99 = snapshot.valueAtPercentile(99);
+        assertTrue(p99 >= 9_900 && p99 <= 10_000, "p99 " + p99);
+        assertTrue(Math.abs(snapshot.mean() - 5_000) < 5_000 * 0.125);
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().count());
+        assertEquals(0, histogram.snapshot().valueAtPercentile(99));
+    }
+}
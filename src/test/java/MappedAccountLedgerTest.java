@@ -0,0 +1,137 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class MappedAccountLedgerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testAccountsSurviveReopen() throws IOException {
+        /*
+         * Expected behavior: Accounts created and updated before close() are all there,
+         *                     with the same balances, limits and currencies, after reopening.
+         */
+        Path file = tempDir.resolve("accounts.ledger");
+        try (MappedAccountLedger ledger = MappedAccountLedger.open(file, 2)) {
+            int sek = ledger.create(new BigDecimal("100"), "SEK", new BigDecimal("50"));
+            int eur = ledger.create(new BigDecimal("7.25"), "EUR", BigDecimal.ZERO);
+            int jpy = ledger.create(new BigDecimal("900"), "JPY", BigDecimal.ZERO); // grows the file
+
+            ledger.account(sek).withdraw(new BigDecimal("120"));
+            ledger.account(eur).deposit(new BigDecimal("2.75"));
+            ledger.account(jpy).convertToCurrency("USD", 0.0067);
+            assertEquals(3, ledger.size());
+        }
+
+        try (MappedAccountLedger ledger = MappedAccountLedger.open(file, 2)) {
+            assertEquals(3, ledger.size());
+            assertEquals(4, ledger.capacity());
+
+            IAccount sek = ledger.account(0);
+            assertEquals(0, sek.getBalance().compareTo(new BigDecimal("-20")));
+            assertEquals(0, sek.getMaxOverdrawn().compareTo(new BigDecimal("50")));
+            assertEquals("SEK", sek.getCurrency());
+
+            assertEquals(0, ledger.account(1).getBalance().compareTo(new BigDecimal("10")));
+            assertEquals("USD", ledger.account(2).getCurrency());
+            assertEquals(0, ledger.account(2).getBalance().compareTo(new BigDecimal("6.03")));
+        }
+    }
+
+    @Test
+    void testViewsFollowAccountRules() throws IOException {
+        try (MappedAccountLedger ledger = MappedAccountLedger.open(tempDir.resolve("rules.ledger"), 16)) {
+            int a = ledger.create(new BigDecimal("100"), "SEK", new BigDecimal("50"));
+            int b = ledger.create(new BigDecimal("5"), "SEK", BigDecimal.ZERO);
+
+            AbstractMinorUnitAccount account = ledger.account(a);
+            assertEquals(0, account.withdraw(new BigDecimal("150")).compareTo(new BigDecimal("-50")));
+            assertEquals(-5000L, account.withdrawMinor(1)); // beyond overdraft, rejected
+            account.deposit(new BigDecimal("60"));
+
+            account.TransferToAccount(ledger.account(b));
+            assertEquals(0L, ledger.account(a).getBalanceMinor());
+            assertEquals(1500L, ledger.account(b).getBalanceMinor());
+
+            ledger.force();
+        }
+    }
+
+    @Test
+    void testRejectsFilesThatAreNotLedgers() throws IOException {
+        Path file = tempDir.resolve("garbage.ledger");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> MappedAccountLedger.open(file, 16));
+    }
+
+    @Test
+    void testInterruptedTransferIsFinishedOnOpen() throws IOException {
+        /*
+         * Expected behavior: A process that dies after publishing a transfer's redo entries
+         *                     but before updating both records leaves a file in which only
+         *                     the receiver was credited; reopening it completes the
+         *                     transfer, so no money is created or lost.
+         */
+        Path file = tempDir.resolve("crash.ledger");
+        try (MappedAccountLedger ledger = MappedAccountLedger.open(file, 4)) {
+            int a = ledger.create(new BigDecimal("100"), "SEK", BigDecimal.ZERO);
+            int b = ledger.create(new BigDecimal("5"), "SEK", BigDecimal.ZERO);
+            assertEquals(OperationStatus.OK, ledger.account(a).transfer(ledger.account(b), new BigDecimal("30")));
+        }
+
+        // The redo entries stay in the header after the update; put the file back into
+        // the state it had half way through: count published, sender not yet debited
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        bytes.putInt(MappedAccountLedger.REDO_COUNT_OFFSET, 2);
+        bytes.putLong(MappedAccountLedger.HEADER_SIZE + MappedAccountLedger.BALANCE_OFFSET, 10000L);
+        Files.write(file, bytes.array());
+
+        try (MappedAccountLedger ledger = MappedAccountLedger.open(file, 4)) {
+            assertEquals(7000L, ledger.account(0).getBalanceMinor());
+            assertEquals(3500L, ledger.account(1).getBalanceMinor());
+        }
+        assertEquals(0, ByteBuffer.wrap(Files.readAllBytes(file)).getInt(MappedAccountLedger.REDO_COUNT_OFFSET));
+    }
+
+    @Test
+    void testLedgerCanOnlyBeOpenedOnce() throws IOException {
+        Path file = tempDir.resolve("locked.ledger");
+        try (MappedAccountLedger ledger = MappedAccountLedger.open(file, 4)) {
+            ledger.create(BigDecimal.ONE, "SEK", BigDecimal.ZERO);
+            assertThrows(IOException.class, () -> MappedAccountLedger.open(file, 4));
+        }
+        try (MappedAccountLedger ledger = MappedAccountLedger.open(file, 4)) {
+            assertEquals(1, ledger.size());
+        }
+    }
+
+    @Test
+    void testRejectsRecordsWrittenWithAnotherScale() throws IOException {
+        /*
+         * Expected behavior: A record whose stored minor unit differs from its currency's
+         *                     is refused instead of having its balance read at the wrong scale.
+         */
+        Path file = tempDir.resolve("scale.ledger");
+        try (MappedAccountLedger ledger = MappedAccountLedger.open(file, 4)) {
+            ledger.create(new BigDecimal("12.34"), "SEK", BigDecimal.ZERO);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[MappedAccountLedger.HEADER_SIZE + MappedAccountLedger.SCALE_OFFSET] = 3;
+        Files.write(file, bytes);
+
+        try (MappedAccountLedger ledger = MappedAccountLedger.open(file, 4)) {
+            assertThrows(IllegalStateException.class, () -> ledger.account(0));
+        }
+    }
+}
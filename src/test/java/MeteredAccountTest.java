@@ -0,0 +1,138 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class MeteredAccountTest {
+
+    @Test
+    void testOutcomesAreCounted() {
+        /*
+         * Expected behavior: Each call is counted once, under OK or the reason it was
+         *                     rejected, and the wrapped account behaves exactly as before.
+         */
+        AccountMetrics metrics = new AccountMetrics(1);
+        MeteredAccount sek = new MeteredAccount(new Account(new BigDecimal("100"), "SEK", new BigDecimal("10")), metrics);
+        MeteredAccount other = new MeteredAccount(new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO), metrics);
+        MeteredAccount usd = new MeteredAccount(new FixedPointAccount(new BigDecimal("5"), "USD", BigDecimal.ZERO), metrics);
+
+        assertEquals(new BigDecimal("-10"), sek.withdraw(new BigDecimal("110")));
+        assertEquals(new BigDecimal("-10"), sek.withdraw(BigDecimal.ONE)); // overdraft floor
+        usd.withdraw(BigDecimal.TEN); // overdraft floor
+        sek.deposit(new BigDecimal("-1"));
+        sek.deposit(new BigDecimal("20"));
+        sek.TransferToAccount(usd); // currency mismatch
+        sek.TransferToAccount(other);
+        sek.TransferToAccount(other); // nothing left
+        assertEquals(new BigDecimal("10"), other.getBalance());
+        assertEquals(OperationStatus.OK, other.transfer(sek, new BigDecimal("4")));
+        assertEquals(OperationStatus.CURRENCY_MISMATCH, other.transfer(usd, BigDecimal.ONE));
+        assertEquals(0, usd.withdrawAll().compareTo(new BigDecimal("5")));
+        assertEquals(BigDecimal.ZERO, usd.withdrawAll());
+        usd.convertToCurrency("EUR", 0);
+        assertThrows(IllegalArgumentException.class, () -> usd.convertToCurrency("XYZ", 1.0));
+
+        AccountMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.count(AccountMetrics.Op.WITHDRAW, OperationStatus.OK));
+        assertEquals(2, snapshot.count(AccountMetrics.Op.WITHDRAW, OperationStatus.INSUFFICIENT_FUNDS));
+        assertEquals(2.0 / 3, snapshot.rejectionRate(AccountMetrics.Op.WITHDRAW), 1e-9);
+        assertEquals(1, snapshot.count(AccountMetrics.Op.DEPOSIT, OperationStatus.INVALID_AMOUNT));
+        assertEquals(1, snapshot.count(AccountMetrics.Op.DEPOSIT, OperationStatus.OK));
+        assertEquals(1, snapshot.count(AccountMetrics.Op.TRANSFER_ALL, OperationStatus.OK));
+        assertEquals(1, snapshot.count(AccountMetrics.Op.TRANSFER_ALL, OperationStatus.CURRENCY_MISMATCH));
+        assertEquals(1, snapshot.count(AccountMetrics.Op.TRANSFER_ALL, OperationStatus.INSUFFICIENT_FUNDS));
+        assertEquals(1, snapshot.count(AccountMetrics.Op.TRANSFER, OperationStatus.OK));
+        assertEquals(1, snapshot.count(AccountMetrics.Op.TRANSFER, OperationStatus.CURRENCY_MISMATCH));
+        assertEquals(1, snapshot.count(AccountMetrics.Op.WITHDRAW_ALL, OperationStatus.OK));
+        assertEquals(1, snapshot.count(AccountMetrics.Op.WITHDRAW_ALL, OperationStatus.INSUFFICIENT_FUNDS));
+        assertEquals(1, snapshot.count(AccountMetrics.Op.CONVERT, OperationStatus.INVALID_AMOUNT));
+        assertEquals(1, snapshot.errors(AccountMetrics.Op.CONVERT));
+        assertEquals(2, snapshot.count(AccountMetrics.Op.CONVERT));
+
+        // Every call was timed with a sample interval of 1
+        assertEquals(3, snapshot.latency(AccountMetrics.Op.WITHDRAW).count());
+        assertEquals(1, snapshot.latency(AccountMetrics.Op.CONVERT).count());
+
+        String exported = snapshot.export();
+        assertTrue(exported.contains("account_operations_total{operation=\"withdraw\",status=\"INSUFFICIENT_FUNDS\"} 2\n"));
+        assertTrue(exported.contains("account_operations_total{operation=\"convert\",status=\"ERROR\"} 1\n"));
+        assertTrue(exported.contains("account_operation_latency_nanos_count{operation=\"withdraw\"} 3\n"));
+
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().count(AccountMetrics.Op.WITHDRAW));
+    }
+
+    @Test
+    void testConcurrentRecordingIsExact() throws Exception {
+        /*
+         * Expected behavior: Threads calling tryWithdraw(1) on an account that allows
+         *                     exactly 1000 withdrawals see 1000 counted as OK and all others
+         *                     as rejected; latency is sampled for about 1 in 16 calls.
+         */
+        AccountMetrics metrics = new AccountMetrics(16);
+        final MeteredAccount account = new MeteredAccount(
+                new Account(BigDecimal.ZERO, "SEK", new BigDecimal("1000")), metrics);
+        final int threads = 4;
+        final int perThread = 2_000;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < perThread; n++) {
+                        account.tryWithdraw(BigDecimal.ONE);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        AccountMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1_000, snapshot.count(AccountMetrics.Op.WITHDRAW, OperationStatus.OK));
+        assertEquals(threads * perThread - 1_000, snapshot.count(AccountMetrics.Op.WITHDRAW, OperationStatus.INSUFFICIENT_FUNDS));
+        long sampled = snapshot.latency(AccountMetrics.Op.WITHDRAW).count();
+        assertTrue(sampled > 0 && sampled < threads * perThread / 4, "sampled " + sampled);
+    }
+
+    @Test
+    void testLatencyIsOffByDefault() {
+        /*
+         * Expected behavior: Without a latencySampleInterval only outcomes are counted;
+         *                     an interval that is neither 0 nor a power of two is rejected.
+         */
+        AccountMetrics metrics = new AccountMetrics();
+        MeteredAccount account = new MeteredAccount(new Account(BigDecimal.TEN, "SEK", BigDecimal.ZERO), metrics);
+        for (int n = 0; n < 100; n++) {
+            account.tryWithdraw(BigDecimal.ONE);
+        }
+
+        AccountMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(10, snapshot.count(AccountMetrics.Op.WITHDRAW, OperationStatus.OK));
+        assertEquals(90, snapshot.count(AccountMetrics.Op.WITHDRAW, OperationStatus.INSUFFICIENT_FUNDS));
+        assertEquals(0, snapshot.latency(AccountMetrics.Op.WITHDRAW).count());
+        assertTrue(!snapshot.export().contains("account_operation_latency_nanos{"));
+
+        assertThrows(IllegalArgumentException.class, () -> new AccountMetrics(-1));
+        assertThrows(IllegalArgumentException.class, () -> new AccountMetrics(12));
+    }
+}
@@ -0,0 +1,252 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ShardedAccountServiceTest {
+
+    private static final int ACCOUNTS = 64;
+    private static final int TRANSFERS_PER_THREAD = 20_000;
+
+    @Test
+    void testOperationsFollowIAccountRules() throws Exception {
+        /*
+         * Expected behavior: Every operation completes with the same result as calling the
+         *                     account directly; unknown ids fail instead of being created.
+         */
+        try (ShardedAccountService service = new ShardedAccountService(4, 16)) {
+            service.open(1, new Account(new BigDecimal("100"), "SEK", new BigDecimal("50"))).get();
+
+            assertEquals(new BigDecimal("-20"), service.withdraw(1, new BigDecimal("120")).get());
+            assertEquals(new BigDecimal("-20"), service.withdraw(1, new BigDecimal("31")).get()); // rejected
+            assertEquals(new BigDecimal("10"), service.deposit(1, new BigDecimal("30")).get());
+            service.convertToCurrency(1, "EUR", 0.5).get();
+            assertEquals(0, service.getBalance(1).get().compareTo(new BigDecimal("5")));
+            assertEquals(0, service.withdrawAll(1).get().compareTo(new BigDecimal("5")));
+
+            ExecutionException duplicate = assertThrows(ExecutionException.class, () -> service.open(1, new Account()).get());
+            assertTrue(duplicate.getCause() instanceof IllegalArgumentException);
+            ExecutionException unknown = assertThrows(ExecutionException.class, () -> service.deposit(2, BigDecimal.ONE).get());
+            assertTrue(unknown.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    void testTransfersWithinAndAcrossShards() throws Exception {
+        /*
+         * Expected behavior: Transfers report the IAccount.transfer status whether or not
+         *                     both accounts live on the same shard, and a rejected
+         *                     cross-shard transfer refunds the sender.
+         */
+        try (ShardedAccountService service = new ShardedAccountService(4, 16)) {
+            long a = 0;
+            long sameShard = 1;
+            while (service.shardOf(sameShard) != service.shardOf(a)) {
+                sameShard++;
+            }
+            long otherShard = 1;
+            while (service.shardOf(otherShard) == service.shardOf(a)) {
+                otherShard++;
+            }
+            long euro = otherShard + 1;
+            while (service.shardOf(euro) == service.shardOf(a) || euro == sameShard) {
+                euro++;
+            }
+            assertNotEquals(service.shardOf(a), service.shardOf(otherShard));
+
+            service.open(a, new Account(new BigDecimal("100"), "SEK", BigDecimal.ZERO));
+            service.open(sameShard, new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO));
+            service.open(otherShard, new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO));
+            service.open(euro, new Account(BigDecimal.ZERO, "EUR", BigDecimal.ZERO));
+
+            assertEquals(OperationStatus.OK, service.transfer(a, sameShard, new BigDecimal("10")).get());
+            assertEquals(OperationStatus.OK, service.transfer(a, otherShard, new BigDecimal("20")).get());
+            assertEquals(OperationStatus.INSUFFICIENT_FUNDS, service.transfer(a, otherShard, new BigDecimal("71")).get());
+            assertEquals(OperationStatus.CURRENCY_MISMATCH, service.transfer(a, euro, new BigDecimal("5")).get());
+            assertEquals(OperationStatus.INVALID_AMOUNT, service.transfer(a, otherShard, new BigDecimal("0.001")).get());
+            assertEquals(OperationStatus.UNKNOWN_ACCOUNT, service.transfer(a, 1_000_000, BigDecimal.ONE).get());
+            assertEquals(OperationStatus.UNKNOWN_ACCOUNT, service.transfer(1_000_000, a, BigDecimal.ONE).get());
+
+            assertEquals(0, service.getBalance(a).get().compareTo(new BigDecimal("70")));
+            assertEquals(0, service.getBalance(sameShard).get().compareTo(new BigDecimal("10")));
+            assertEquals(0, service.getBalance(otherShard).get().compareTo(new BigDecimal("20")));
+            assertEquals(0, service.getBalance(euro).get().compareTo(BigDecimal.ZERO));
+        }
+    }
+
+    @Test
+    void testConcurrentTransfersConserveMoney() throws Exception {
+        /*
+         * Expected behavior: Many threads moving money between random accounts on all
+         *                     shards neither create nor lose money, no account goes below
+         *                     -max_overdrawn, and close() waits for transfers in flight.
+         */
+        final int shards = Math.max(2, Runtime.getRuntime().availableProcessors());
+        final ShardedAccountService service = new ShardedAccountService(shards, 256);
+        List<Account> accounts = new ArrayList<>();
+        for (long id = 0; id < ACCOUNTS; id++) {
+            Account account = new Account(new BigDecimal("100"), "SEK", new BigDecimal("10"));
+            accounts.add(account);
+            service.open(id, account);
+        }
+
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            Thread producer = new Thread(() -> {
+                long state = seed * 7919L + 1;
+                for (int n = 0; n < TRANSFERS_PER_THREAD; n++) {
+                    state = state * 6364136223846793005L + 1442695040888963407L;
+                    long from = (state >>> 33) % ACCOUNTS;
+                    long to = (state >>> 17) % ACCOUNTS;
+                    service.transfer(from, to, new BigDecimal("3"));
+                }
+            });
+            producers.add(producer);
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join(TimeUnit.SECONDS.toMillis(120));
+        }
+        service.close();
+
+        long[] completed = service.completedOperations();
+        double[] rates = service.operationsPerSecond();
+        long total = 0;
+        for (int i = 0; i < completed.length; i++) {
+            total += completed[i];
+            assertTrue(rates[i] >= 0, "shard " + i + " rate " + rates[i]);
+        }
+        assertEquals(shards, rates.length);
+        assertEquals(ACCOUNTS + (long) threads * TRANSFERS_PER_THREAD, total);
+
+        assertThrows(IllegalStateException.class, () -> service.getBalance(0));
+
+        // The workers have stopped, so the accounts can be read directly
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Account account : accounts) {
+            assertTrue(account.getBalance().compareTo(new BigDecimal("-10")) >= 0);
+            sum = sum.add(account.getBalance());
+        }
+        assertEquals(0, sum.compareTo(BigDecimal.valueOf(100L * ACCOUNTS)));
+    }
+
+    @Test
+    void testRejectedTransfersAreRefunded() {
+        /*
+         * Expected behavior: With accounts in two currencies, every transfer has either
+         *                     been credited or refunded by the time close() returns, so the
+         *                     sum per currency is unchanged.
+         */
+        int shards = 4;
+        ShardedAccountService service = new ShardedAccountService(shards, 64);
+        List<Account> accounts = new ArrayList<>();
+        for (long id = 0; id < ACCOUNTS; id++) {
+            Account account = new Account(new BigDecimal("100"), id % 5 == 0 ? "EUR" : "SEK", new BigDecimal("10"));
+            accounts.add(account);
+            service.open(id, account);
+        }
+        List<CompletableFuture<OperationStatus>> results = new ArrayList<>();
+        for (int n = 0; n < 50_000; n++) {
+            results.add(service.transfer(n % ACCOUNTS, (n * 31L + 7) % ACCOUNTS, new BigDecimal("7")));
+        }
+        service.close();
+
+        for (CompletableFuture<OperationStatus> result : results) {
+            assertTrue(result.isDone());
+        }
+        BigDecimal sek = BigDecimal.ZERO;
+        BigDecimal eur = BigDecimal.ZERO;
+        for (Account account : accounts) {
+            assertTrue(account.getBalance().compareTo(new BigDecimal("-10")) >= 0);
+            if (account.getCurrency().equals("EUR")) {
+                eur = eur.add(account.getBalance());
+            } else {
+                sek = sek.add(account.getBalance());
+            }
+        }
+        assertEquals(0, eur.compareTo(new BigDecimal("1300")));
+        assertEquals(0, sek.compareTo(new BigDecimal("5100")));
+    }
+
+    @Test
+    void testFailuresDuringHandOffCompleteTheFuture() throws Exception {
+        /*
+         * Expected behavior: A receiver that throws while being credited fails that
+         *                     transfer's future and the sender is refunded; a refund the
+         *                     sender can no longer hold fails the future with
+         *                     IllegalStateException. Both shards keep serving operations.
+         */
+        try (ShardedAccountService service = new ShardedAccountService(4, 16)) {
+            final long sender = 0;
+            long other = 1;
+            while (service.shardOf(other) == service.shardOf(sender)) {
+                other++;
+            }
+            final long receiver = other;
+            long missing = receiver + 1;
+            while (service.shardOf(missing) != service.shardOf(receiver)) {
+                missing++;
+            }
+
+            // A journaled account whose journal is closed throws on every deposit
+            Path file = Files.createTempFile("sharded", ".journal");
+            TransactionJournal journal = TransactionJournal.open(file);
+            JournaledAccount broken = JournaledAccount.open(7, new Account(), journal);
+            journal.close();
+            Files.delete(file);
+
+            service.open(sender, new FixedPointAccount(new BigDecimal("100"), "SEK", BigDecimal.ZERO)).get();
+            service.open(receiver, broken).get();
+            ExecutionException thrown = assertThrows(ExecutionException.class,
+                    () -> service.transfer(sender, receiver, new BigDecimal("10")).get(10, TimeUnit.SECONDS));
+            assertTrue(thrown.getCause() instanceof IllegalStateException);
+            assertEquals(0, service.getBalance(sender).get(10, TimeUnit.SECONDS).compareTo(new BigDecimal("100")));
+
+            // Hold the receiver's shard so that the sender is filled up while 50 is in
+            // escrow, then let the transfer fail and try to refund
+            final CountDownLatch release = new CountDownLatch(1);
+            long blocker = missing + 1;
+            while (service.shardOf(blocker) != service.shardOf(receiver)) {
+                blocker++;
+            }
+            service.open(blocker, new Account() {
+                @Override
+                public BigDecimal getBalance() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.getBalance();
+                }
+            }).get();
+            service.getBalance(blocker);
+            CompletableFuture<OperationStatus> stranded = service.transfer(sender, missing, new BigDecimal("50"));
+            service.deposit(sender, BigDecimal.valueOf(Long.MAX_VALUE - 9_000, 2)).get(10, TimeUnit.SECONDS);
+            release.countDown();
+
+            ExecutionException refund = assertThrows(ExecutionException.class, () -> stranded.get(10, TimeUnit.SECONDS));
+            assertTrue(refund.getCause() instanceof IllegalStateException);
+            assertEquals(0, service.getBalance(sender).get(10, TimeUnit.SECONDS)
+                    .compareTo(BigDecimal.valueOf(Long.MAX_VALUE - 4_000, 2)));
+            assertEquals(0, service.getBalance(blocker).get(10, TimeUnit.SECONDS).signum());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class StatementGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testStatementShowsRunningBalances() throws IOException {
+        /*
+         * Expected behavior: Each account gets its lines in journal order with the outcome
+         *                     and balance after each one; rejected withdrawals leave the
+         *                     balance unchanged and transfers appear on both statements.
+         */
+        Path file = tempDir.resolve("accounts.journal");
+        try (TransactionJournal journal = TransactionJournal.open(file)) {
+            JournaledAccount b = JournaledAccount.open(2, new Account(new BigDecimal("10"), "SEK", BigDecimal.ZERO), journal);
+            JournaledAccount a = JournaledAccount.open(1, new Account(new BigDecimal("100"), "SEK", new BigDecimal("50")), journal);
+            a.withdraw(new BigDecimal("120"));
+            a.withdraw(new BigDecimal("100")); // rejected
+            b.deposit(new BigDecimal("5.5"));
+            b.transfer(a, new BigDecimal("15.5"));
+            a.TransferToAccount(b); // balance is negative, nothing moves
+        }
+
+        StringWriter out = new StringWriter();
+        long lines = new StatementGenerator(Account::new, 2, tempDir).generate(file, out);
+
+        assertEquals(8, lines);
+        assertEquals("Statement for account 1\n"
+                + "2\tOPENED\t100\tOK\t100 SEK\n"
+                + "3\tWITHDRAW\t120\tOK\t-20 SEK\n"
+                + "4\tWITHDRAW\t100\tINSUFFICIENT_FUNDS\t-20 SEK\n"
+                + "6\tTRANSFER_IN 2\t15.5\tOK\t-4.5 SEK\n"
+                + "7\tTRANSFER_OUT 2\t0.0\tINSUFFICIENT_FUNDS\t-4.5 SEK\n"
+                + "Closing balance -4.5 SEK\n"
+                + "\n"
+                + "Statement for account 2\n"
+                + "1\tOPENED\t10\tOK\t10 SEK\n"
+                + "5\tDEPOSIT\t5.5\tOK\t15.5 SEK\n"
+                + "6\tTRANSFER_OUT 1\t15.5\tOK\t0.0 SEK\n"
+                + "Closing balance 0.0 SEK\n"
+                + "\n", out.toString());
+    }
+
+    @Test
+    void testEntryThatThrewIsShownAsInvalidAmount() throws IOException {
+        /*
+         * Expected behavior: A deposit that overflowed a FixedPointAccount, journaled before
+         *                     it threw, appears as INVALID_AMOUNT with the balance unchanged,
+         *                     and the entries after it are still applied.
+         */
+        Path file = tempDir.resolve("throwing.journal");
+        try (TransactionJournal journal = TransactionJournal.open(file)) {
+            final JournaledAccount account = JournaledAccount.open(1, new FixedPointAccount(
+                    new BigDecimal("90000000000000000"), "SEK", BigDecimal.ZERO), journal);
+            assertThrows(ArithmeticException.class, () -> account.deposit(new BigDecimal("90000000000000000")));
+            account.withdraw(new BigDecimal("0.5"));
+        }
+
+        StringWriter out = new StringWriter();
+        long lines = new StatementGenerator(FixedPointAccount::new, 16, tempDir).generate(file, out);
+
+        assertEquals(3, lines);
+        assertEquals("Statement for account 1\n"
+                + "1\tOPENED\t90000000000000000.00\tOK\t90000000000000000.00 SEK\n"
+                + "2\tDEPOSIT\t90000000000000000\tINVALID_AMOUNT\t90000000000000000.00 SEK\n"
+                + "3\tWITHDRAW\t0.5\tOK\t89999999999999999.50 SEK\n"
+                + "Closing balance 89999999999999999.50 SEK\n"
+                + "\n", out.toString());
+    }
+
+    @Test
+    void testBoundedBufferGivesSameStatements() throws IOException {
+        /*
+         * Expected behavior: With a buffer far smaller than the journal, so that hundreds
+         *                     of runs are spilled and merged in several passes, the output is
+         *                     the same as with everything in memory, every closing balance
+         *                     matches a full replay, and no run files are left behind.
+         */
+        final int accounts = 500;
+        final int operations = 20_000;
+        Path file = tempDir.resolve("large.journal");
+        Random random = new Random(42);
+        try (TransactionJournal journal = TransactionJournal.open(file)) {
+            JournaledAccount[] opened = new JournaledAccount[accounts];
+            for (int i = 0; i < accounts; i++) {
+                opened[i] = JournaledAccount.open(i, new Account(BigDecimal.valueOf(random.nextInt(10_000), 2),
+                        i % 7 == 0 ? "EUR" : "SEK", BigDecimal.valueOf(random.nextInt(5_000), 2)), journal);
+            }
+            for (int i = 0; i < operations; i++) {
+                JournaledAccount account = opened[random.nextInt(accounts)];
+                BigDecimal amount = BigDecimal.valueOf(random.nextInt(10_000), 2);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        account.deposit(amount);
+                        break;
+                    case 1:
+                        account.withdraw(amount);
+                        break;
+                    case 2:
+                        account.transfer(opened[random.nextInt(accounts)], amount);
+                        break;
+                    default:
+                        if (random.nextInt(10) == 0) {
+                            account.TransferToAccount(opened[random.nextInt(accounts)]);
+                        } else {
+                            account.deposit(amount);
+                        }
+                }
+            }
+        }
+
+        Path runs = Files.createDirectory(tempDir.resolve("runs"));
+        StringWriter inMemory = new StringWriter();
+        new StatementGenerator(Account::new, Integer.MAX_VALUE, runs).generate(file, inMemory);
+        StringWriter spilled = new StringWriter();
+        long lines = new StatementGenerator(Account::new, 100, runs).generate(file, spilled);
+
+        assertEquals(inMemory.toString(), spilled.toString());
+        try (Stream<Path> left = Files.list(runs)) {
+            assertEquals(0, left.count());
+        }
+
+        Map<Long, String> closing = new HashMap<>();
+        long current = -1;
+        for (String line : spilled.toString().split("\n")) {
+            if (line.startsWith("Statement for account ")) {
+                current = Long.parseLong(line.substring("Statement for account ".length()));
+            } else if (line.startsWith("Closing balance ")) {
+                closing.put(current, line.substring("Closing balance ".length()));
+            }
+        }
+        Map<Long, IAccount> replayed = JournalReplayer.replay(file, Account::new);
+        assertEquals(accounts, closing.size());
+        for (Map.Entry<Long, IAccount> entry : replayed.entrySet()) {
+            IAccount account = entry.getValue();
+            assertEquals(account.getBalance().toPlainString() + " " + account.getCurrency(), closing.get(entry.getKey()));
+        }
+        assertTrue(lines > operations);
+    }
+}
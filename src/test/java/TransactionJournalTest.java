@@ -0,0 +1,208 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class TransactionJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReplayRebuildsAccountState() throws IOException {
+        /*
+         * Expected behavior: Replaying the journal produces the same balances and
+         *                     currencies as the live accounts, including rejected
+         *                     withdrawals and failed transfers.
+         */
+        Path file = tempDir.resolve("accounts.journal");
+        JournaledAccount a;
+        JournaledAccount b;
+        JournaledAccount c;
+        try (TransactionJournal journal = TransactionJournal.open(file)) {
+            a = JournaledAccount.open(1, new Account(new BigDecimal("100"), "SEK", new BigDecimal("50")), journal);
+            b = JournaledAccount.open(2, new Account(new BigDecimal("10"), "SEK", BigDecimal.ZERO), journal);
+            c = JournaledAccount.open(3, new Account(new BigDecimal("10"), "USD", BigDecimal.ZERO), journal);
+
+            a.withdraw(new BigDecimal("120"));
+            a.withdraw(new BigDecimal("100")); // rejected
+            a.deposit(new BigDecimal("45.5"));
+            a.TransferToAccount(b);
+            b.TransferToAccount(c); // currency mismatch
+            c.convertToCurrency("EUR", 0.5);
+            c.withdrawAll();
+            assertEquals(OperationStatus.OK, b.transfer(a, new BigDecimal("20.25")));
+            assertEquals(OperationStatus.INSUFFICIENT_FUNDS, b.transfer(a, new BigDecimal("100")));
+
+            assertThrows(IllegalArgumentException.class, () -> a.TransferToAccount(new Account()));
+            assertThrows(IllegalArgumentException.class, () -> a.transfer(new Account(), BigDecimal.ONE));
+        }
+
+        Map<Long, IAccount> replayed = JournalReplayer.replay(file, Account::new);
+        assertEquals(3, replayed.size());
+        for (JournaledAccount live : new JournaledAccount[]{a, b, c}) {
+            IAccount copy = replayed.get(live.getId());
+            assertEquals(0, live.getBalance().compareTo(copy.getBalance()));
+            assertEquals(live.getCurrency(), copy.getCurrency());
+            assertEquals(0, live.getMaxOverdrawn().compareTo(copy.getMaxOverdrawn()));
+        }
+        assertEquals(0, replayed.get(2L).getBalance().compareTo(new BigDecimal("15.25")));
+        assertEquals("EUR", replayed.get(3L).getCurrency());
+    }
+
+    @Test
+    void testReplayStopsAtTornTail() throws IOException {
+        /*
+         * Expected behavior: An entry cut off by a crash is ignored, everything before it
+         *                     is still replayed.
+         */
+        Path file = tempDir.resolve("torn.journal");
+        try (TransactionJournal journal = TransactionJournal.open(file)) {
+            journal.appendOpen(7, new BigDecimal("1"), "SEK", BigDecimal.ZERO);
+            journal.appendDeposit(7, new BigDecimal("2"));
+            journal.awaitDurable(journal.appendDeposit(7, new BigDecimal("4")));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        Map<Long, IAccount> replayed = JournalReplayer.replay(file, Account::new);
+        assertEquals(0, replayed.get(7L).getBalance().compareTo(new BigDecimal("3")));
+    }
+
+    @Test
+    void testReopenCutsOffTornTail() throws IOException {
+        /*
+         * Expected behavior: Entries appended after reopening a journal whose last entry
+         *                     was cut off by a crash follow the valid entries, so they are
+         *                     replayed instead of being hidden behind the broken one.
+         */
+        Path file = tempDir.resolve("reopened.journal");
+        try (TransactionJournal journal = TransactionJournal.open(file)) {
+            JournaledAccount.open(1, new Account(BigDecimal.ONE, "SEK", BigDecimal.ZERO), journal);
+        }
+        long valid = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, TransactionJournal.DEPOSIT, 0, 0}));
+        }
+
+        try (TransactionJournal journal = TransactionJournal.open(file)) {
+            assertEquals(valid, Files.size(file));
+            assertEquals(1, journal.durableSequence());
+            JournaledAccount account = JournaledAccount.open(1, JournalReplayer.replay(file, Account::new).get(1L), journal);
+            account.deposit(new BigDecimal("100"));
+        }
+
+        Map<Long, IAccount> replayed = JournalReplayer.replay(file, Account::new);
+        assertEquals(0, replayed.get(1L).getBalance().compareTo(new BigDecimal("101")));
+    }
+
+    @Test
+    void testOperationsThatThrowDoNotBreakReplay() throws IOException {
+        /*
+         * Expected behavior: An unknown currency is rejected before it is journaled, and a
+         *                     deposit that overflows a FixedPointAccount, which can only be
+         *                     journaled before it throws, is skipped on replay like any
+         *                     rejected operation; the entries after it are still replayed.
+         */
+        Path file = tempDir.resolve("throwing.journal");
+        final JournaledAccount account;
+        try (TransactionJournal journal = TransactionJournal.open(file)) {
+            account = JournaledAccount.open(1, new FixedPointAccount(new BigDecimal("90000000000000000"), "SEK",
+                    BigDecimal.ZERO), journal);
+            assertThrows(IllegalArgumentException.class, () -> account.convertToCurrency("XYZ", 2.0));
+            assertEquals(1, journal.durableSequence());
+            assertThrows(ArithmeticException.class, () -> account.deposit(new BigDecimal("90000000000000000")));
+            account.withdraw(new BigDecimal("0.5"));
+        }
+
+        Map<Long, IAccount> replayed = JournalReplayer.replay(file, FixedPointAccount::new);
+        assertEquals(0, replayed.get(1L).getBalance().compareTo(account.getBalance()));
+        assertEquals(0, replayed.get(1L).getBalance().compareTo(new BigDecimal("89999999999999999.50")));
+    }
+
+    @Test
+    void testFailedTransferReplaysToTheJournaledState() throws IOException {
+        /*
+         * Expected behavior: A transfer whose target can not hold the amount leaves the
+         *                     sender as it was, both when journaled and when replayed, so
+         *                     replay ends with the same balances as the live accounts.
+         */
+        Path file = tempDir.resolve("failed-transfer.journal");
+        JournaledAccount sender;
+        JournaledAccount target;
+        try (TransactionJournal journal = TransactionJournal.open(file)) {
+            sender = JournaledAccount.open(1, new ConcurrentAccount(new BigDecimal("10.005"), "SEK", BigDecimal.ZERO),
+                    journal);
+            target = JournaledAccount.open(2, new FixedPointAccount(BigDecimal.ZERO, "SEK", BigDecimal.ZERO), journal);
+            assertEquals(OperationStatus.INVALID_AMOUNT, sender.tryTransferToAccount(target));
+            assertEquals(OperationStatus.INVALID_AMOUNT, sender.transfer(target, new BigDecimal("0.005")));
+            sender.deposit(new BigDecimal("0.005"));
+            assertEquals(OperationStatus.OK, sender.tryTransferToAccount(target));
+        }
+
+        // Accounts opened with more decimals than SEK has were ConcurrentAccounts
+        Map<Long, IAccount> replayed = JournalReplayer.replay(file, (balance, currency, max_overdrawn) ->
+                balance.scale() > 2 ? new ConcurrentAccount(balance, currency, max_overdrawn)
+                        : new FixedPointAccount(balance, currency, max_overdrawn));
+        assertEquals(0, replayed.get(1L).getBalance().compareTo(sender.getBalance()));
+        assertEquals(0, replayed.get(2L).getBalance().compareTo(target.getBalance()));
+        assertEquals(0, replayed.get(2L).getBalance().compareTo(new BigDecimal("10.01")));
+    }
+
+    @Test
+    void testConcurrentWritersShareFsyncs() throws Exception {
+        /*
+         * Expected behavior: Concurrent writers share fsyncs, so there are far fewer
+         *                     batches than entries and every entry is replayed.
+         */
+        final int threads = 4;
+        final int entriesPerThread = 10_000;
+        Path file = tempDir.resolve("bench.journal");
+        final TransactionJournal journal = TransactionJournal.open(file);
+        journal.awaitDurable(journal.appendOpen(0, BigDecimal.ZERO, "SEK", BigDecimal.ZERO));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                long sequence = 0;
+                for (int i = 0; i < entriesPerThread; i++) {
+                    sequence = journal.appendDeposit(0, BigDecimal.ONE);
+                }
+                journal.awaitDurable(sequence);
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        long batches = journal.batchCount();
+        journal.close();
+
+        long entries = (long) threads * entriesPerThread;
+        assertTrue(batches < entries);
+        assertTrue(Files.size(file) > 0);
+
+        Map<Long, IAccount> replayed = JournalReplayer.replay(file, Account::new);
+        assertEquals(BigDecimal.valueOf(entries), replayed.get(0L).getBalance());
+    }
+}
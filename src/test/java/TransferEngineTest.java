@@ -0,0 +1,208 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class TransferEngineTest {
+
+    private static final int TRANSFERS_PER_THREAD = 20_000;
+
+    @Test
+    void testTransfer() {
+        /*
+         * Expected behavior: Same rules as Account.TransferToAccount — whole balance is
+         *                     moved only when currencies match and the sender is positive.
+         */
+        TransferEngine engine = new TransferEngine();
+        Account a = new Account(new BigDecimal("10"), "SEK", BigDecimal.ZERO);
+        Account b = new Account(new BigDecimal("5"), "SEK", BigDecimal.ZERO);
+        Account usd = new Account(new BigDecimal("7"), "USD", BigDecimal.ZERO);
+
+        engine.transfer(a, b);
+        assertEquals(BigDecimal.ZERO, a.getBalance());
+        assertEquals(new BigDecimal("15"), b.getBalance());
+
+        engine.transfer(b, usd); // currency mismatch
+        assertEquals(new BigDecimal("15"), b.getBalance());
+        assertEquals(new BigDecimal("7"), usd.getBalance());
+
+        engine.transfer(b, b); // transfer to itself must not lose money
+        assertEquals(new BigDecimal("15"), b.getBalance());
+    }
+
+    @Test
+    void testOppositeTransfersDoNotDeadlockOrLoseMoney() throws Exception {
+        /*
+         * Expected behavior: Threads transferring A->B and B->A at the same time, while
+         *                     other threads deposit into both, finish without deadlock and
+         *                     the total amount of money equals the starting total plus
+         *                     everything deposited.
+         */
+        final Account a = new Account(new BigDecimal("1000"), "SEK", BigDecimal.ZERO);
+        final Account b = new Account(new BigDecimal("1000"), "SEK", BigDecimal.ZERO);
+        final TransferEngine engine = new TransferEngine();
+        int pairs = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        ExecutorService pool = Executors.newFixedThreadPool(pairs * 2 + 1);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < pairs; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < TRANSFERS_PER_THREAD; n++) {
+                        engine.transfer(a, b);
+                    }
+                    return null;
+                }));
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < TRANSFERS_PER_THREAD; n++) {
+                        b.TransferToAccount(a); // direct calls use the same lock order
+                    }
+                    return null;
+                }));
+            }
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int n = 0; n < TRANSFERS_PER_THREAD; n++) {
+                    a.deposit(BigDecimal.ONE);
+                    b.deposit(BigDecimal.ONE);
+                }
+                return null;
+            }));
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS); // a deadlock would time out here
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BigDecimal expectedTotal = new BigDecimal("2000").add(BigDecimal.valueOf(2L * TRANSFERS_PER_THREAD));
+        assertEquals(expectedTotal, a.getBalance().add(b.getBalance()));
+    }
+
+    @Test
+    void testConcurrentPartialTransfersKeepTotalAndFloor() throws Exception {
+        /*
+         * Expected behavior: Threads moving small amounts A->B and B->A never take either
+         *                     account below -max_overdrawn, no money is created or lost,
+         *                     and the net movement matches the transfers reported OK.
+         */
+        final Account a = new Account(new BigDecimal("100"), "SEK", new BigDecimal("50"));
+        final Account b = new Account(new BigDecimal("100"), "SEK", new BigDecimal("50"));
+        final TransferEngine engine = new TransferEngine();
+        final BigDecimal amount = new BigDecimal("7");
+        int pairs = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        ExecutorService pool = Executors.newFixedThreadPool(pairs * 2);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> towardsB = new ArrayList<>();
+        List<Future<Long>> towardsA = new ArrayList<>();
+        try {
+            for (int i = 0; i < pairs; i++) {
+                towardsB.add(pool.submit(() -> {
+                    start.await();
+                    long ok = 0;
+                    for (int n = 0; n < TRANSFERS_PER_THREAD; n++) {
+                        if (engine.transfer(a, b, amount) == OperationStatus.OK) {
+                            ok++;
+                        }
+                    }
+                    return ok;
+                }));
+                towardsA.add(pool.submit(() -> {
+                    start.await();
+                    long ok = 0;
+                    for (int n = 0; n < TRANSFERS_PER_THREAD; n++) {
+                        if (b.transfer(a, amount) == OperationStatus.OK) {
+                            ok++;
+                        }
+                    }
+                    return ok;
+                }));
+            }
+
+            start.countDown();
+            long net = 0;
+            for (Future<Long> future : towardsB) {
+                net += future.get(120, TimeUnit.SECONDS);
+            }
+            for (Future<Long> future : towardsA) {
+                net -= future.get(120, TimeUnit.SECONDS);
+            }
+            assertEquals(new BigDecimal("100").subtract(amount.multiply(BigDecimal.valueOf(net))), a.getBalance());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(new BigDecimal("200"), a.getBalance().add(b.getBalance()));
+        assertTrue(a.getBalance().compareTo(new BigDecimal("-50")) >= 0);
+        assertTrue(b.getBalance().compareTo(new BigDecimal("-50")) >= 0);
+    }
+
+    @Test
+    void testTransfersBetweenImplementationsDoNotDeadlockOrLoseMoney() throws Exception {
+        /*
+         * Expected behavior: Transfers in both directions between an Account, a
+         *                     ConcurrentAccount and an EventSourcedAccount, which guard
+         *                     their state in different ways, finish without deadlock and
+         *                     without creating or losing money.
+         */
+        final IAccount[] accounts = {
+                new Account(new BigDecimal("100"), "SEK", new BigDecimal("50")),
+                new ConcurrentAccount(new BigDecimal("100"), "SEK", new BigDecimal("50")),
+                new EventSourcedAccount(new BigDecimal("100"), "SEK", new BigDecimal("50"))};
+        final TransferEngine engine = new TransferEngine();
+
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int from = 0; from < 3; from++) {
+                for (int to = 0; to < 3; to++) {
+                    if (from == to) {
+                        continue;
+                    }
+                    final IAccount sender = accounts[from];
+                    final IAccount receiver = accounts[to];
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        for (int n = 0; n < TRANSFERS_PER_THREAD / 10; n++) {
+                            engine.transfer(sender, receiver, new BigDecimal("3"));
+                            if (n % 100 == 0) {
+                                engine.transfer(sender, receiver);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS); // a deadlock would time out here
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (IAccount account : accounts) {
+            total = total.add(account.getBalance());
+            assertTrue(account.getBalance().compareTo(new BigDecimal("-50")) >= 0);
+        }
+        assertEquals(0, new BigDecimal("300").compareTo(total));
+    }
+}
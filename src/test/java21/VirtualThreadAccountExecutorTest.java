@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class VirtualThreadAccountExecutorTest {
+
+    private static final int IN_FLIGHT = 100_000;
+    private static final int ACCOUNTS = 100;
+
+    @Test
+    void testHundredThousandOperationsInFlight() throws Exception {
+        /*
+         * Expected behavior: 100k operations are all running at the same time (each one
+         *                     waits until every other one has started, as if blocked on
+         *                     I/O), then all deposit and withdraw against shared Account
+         *                     instances without losing money.
+         */
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO));
+        }
+        CountDownLatch allStarted = new CountDownLatch(IN_FLIGHT);
+        List<CompletableFuture<BigDecimal>> results = new ArrayList<>(IN_FLIGHT);
+
+        try (VirtualThreadAccountExecutor executor = new VirtualThreadAccountExecutor(IN_FLIGHT)) {
+            for (int n = 0; n < IN_FLIGHT; n++) {
+                Account account = accounts.get(n % ACCOUNTS);
+                results.add(executor.submit(() -> {
+                    allStarted.countDown();
+                    if (!allStarted.await(120, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Not all operations got a thread");
+                    }
+                    account.deposit(new BigDecimal("2"));
+                    return account.withdraw(BigDecimal.ONE);
+                }));
+            }
+            assertTrue(allStarted.await(120, TimeUnit.SECONDS));
+            for (CompletableFuture<BigDecimal> result : results) {
+                result.get(120, TimeUnit.SECONDS);
+            }
+            assertEquals(0, executor.inFlight());
+        }
+
+        BigDecimal expected = BigDecimal.valueOf(IN_FLIGHT / ACCOUNTS);
+        for (Account account : accounts) {
+            assertEquals(expected, account.getBalance());
+        }
+    }
+
+    @Test
+    void testLimiterBoundsOperationsInFlight() throws Exception {
+        /*
+         * Expected behavior: No more than maxInFlight operations ever run at once, and
+         *                     transfers report their IAccount.transfer status.
+         */
+        final int limit = 16;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        Account a = new Account(new BigDecimal("1000"), "SEK", BigDecimal.ZERO);
+        Account b = new Account(BigDecimal.ZERO, "SEK", BigDecimal.ZERO);
+        List<CompletableFuture<OperationStatus>> results = new ArrayList<>();
+
+        try (VirtualThreadAccountExecutor executor = new VirtualThreadAccountExecutor(limit)) {
+            for (int n = 0; n < 2_000; n++) {
+                results.add(executor.submit(() -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(1);
+                        return a.transfer(b, BigDecimal.ONE);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }));
+            }
+            assertEquals(OperationStatus.INSUFFICIENT_FUNDS, executor.transfer(b, a, new BigDecimal("5000")).get());
+        }
+
+        int ok = 0;
+        for (CompletableFuture<OperationStatus> result : results) {
+            if (result.get() == OperationStatus.OK) {
+                ok++;
+            }
+        }
+        assertEquals(1_000, ok);
+        assertEquals(BigDecimal.ZERO, a.getBalance());
+        assertEquals(new BigDecimal("1000"), b.getBalance());
+        assertTrue(peak.get() <= limit, "peak " + peak.get());
+    }
+}